@@ -20,7 +20,7 @@ interface UserProfile {
 }
 
 function Profile() {
-  const { user, updateUser } = useAuth();
+  const { user, updateUser, logout } = useAuth();
   const [profile, setProfile] = useState<UserProfile | null>(null);
   const [isEditing, setIsEditing] = useState(false);
   const [email, setEmail] = useState('');
@@ -217,11 +217,16 @@ function Profile() {
 
     try {
       await userService.changePassword(currentPassword, newPassword);
-      setPasswordSuccess('Password changed successfully');
+      setPasswordSuccess('Password changed successfully. Please log in again.');
       setCurrentPassword('');
       setNewPassword('');
       setConfirmPassword('');
       setIsChangingPassword(false);
+      // Смена пароля завершает все сессии, включая текущую
+      setTimeout(() => {
+        logout();
+        window.location.href = '/login';
+      }, 1500);
     } catch (err: any) {
       setPasswordError(err.response?.data?.message || 'Failed to change password');
     }
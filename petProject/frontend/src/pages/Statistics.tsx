@@ -1,7 +1,7 @@
 import { useState, useEffect } from 'react';
 import { useNavigate } from 'react-router-dom';
 import { statisticsService } from '../services/api';
-import type { Statistics } from '../services/api';
+import type { AgeDistribution, Statistics, StatisticsDelta } from '../services/api';
 
 const typeEmojis: Record<string, string> = {
   DOG: '🐕',
@@ -16,18 +16,32 @@ const typeEmojis: Record<string, string> = {
 function StatisticsPage() {
   const navigate = useNavigate();
   const [statistics, setStatistics] = useState<Statistics | null>(null);
+  const [ages, setAges] = useState<AgeDistribution | null>(null);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState<string | null>(null);
 
   useEffect(() => {
     loadStatistics();
+    const unsubscribe = statisticsService.subscribe(setStatistics, (delta: StatisticsDelta) =>
+      setStatistics((current) => current && {
+        ...current,
+        ...delta,
+        petsByType: { ...current.petsByType, ...delta.petsByType },
+        ownersByPetType: { ...current.ownersByPetType, ...delta.ownersByPetType },
+      })
+    );
+    return unsubscribe;
   }, []);
 
   const loadStatistics = async () => {
     try {
       setLoading(true);
-      const response = await statisticsService.getStatistics();
+      const [response, agesResponse] = await Promise.all([
+        statisticsService.getStatistics(),
+        statisticsService.getAges(),
+      ]);
       setStatistics(response.data);
+      setAges(agesResponse.data);
       setError(null);
     } catch (err: any) {
       setError(err.response?.data?.message || 'Failed to load statistics');
@@ -101,6 +115,38 @@ function StatisticsPage() {
           ))}
         </div>
       </div>
+
+      {ages && (
+        <div className="bg-white dark:bg-gray-800 p-6 rounded-lg shadow-md mt-8">
+          <h2 className="text-2xl font-semibold text-gray-900 dark:text-white mb-4">
+            Age Percentiles (years)
+          </h2>
+          <table className="w-full text-left text-gray-700 dark:text-gray-300">
+            <thead>
+              <tr className="border-b border-gray-200 dark:border-gray-700">
+                <th className="py-2">Type</th>
+                <th className="py-2">Pets</th>
+                <th className="py-2">p50</th>
+                <th className="py-2">p90</th>
+                <th className="py-2">p99</th>
+              </tr>
+            </thead>
+            <tbody>
+              {Object.entries(ages.byType)
+                .filter(([, stats]) => stats.count > 0)
+                .map(([type, stats]) => (
+                  <tr key={type} className="border-b border-gray-100 dark:border-gray-700">
+                    <td className="py-2">{typeEmojis[type] || '🐾'} {type}</td>
+                    <td className="py-2">{stats.count}</td>
+                    <td className="py-2">{stats.p50}</td>
+                    <td className="py-2">{stats.p90}</td>
+                    <td className="py-2">{stats.p99}</td>
+                  </tr>
+                ))}
+            </tbody>
+          </table>
+        </div>
+      )}
     </div>
   );
 }
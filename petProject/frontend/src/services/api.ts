@@ -12,10 +12,36 @@ const api = axios.create({
   },
 });
 
+// Access-токен живет 15 минут; параллельные запросы ждут одно общее обновление
+let refreshPromise: Promise<string | null> | null = null;
+
+const refreshAccessToken = (): Promise<string | null> => {
+  if (!refreshPromise) {
+    refreshPromise = authService.refresh().finally(() => {
+      refreshPromise = null;
+    });
+  }
+  return refreshPromise;
+};
+
+const isExpiring = (token: string): boolean => {
+  try {
+    const payload = JSON.parse(atob(token.split('.')[1].replace(/-/g, '+').replace(/_/g, '/')));
+    return payload.exp * 1000 - Date.now() < 30_000;
+  } catch {
+    return false;
+  }
+};
+
+const isAuthRequest = (url?: string): boolean => !!url && url.startsWith('/auth/');
+
 // Add JWT token to requests
 api.interceptors.request.use(
-  (config) => {
-    const token = authService.getToken();
+  async (config) => {
+    let token = authService.getToken();
+    if (token && !isAuthRequest(config.url) && isExpiring(token)) {
+      token = (await refreshAccessToken()) ?? token;
+    }
     if (token) {
       config.headers.Authorization = `Bearer ${token}`;
     }
@@ -35,7 +61,16 @@ api.interceptors.request.use(
 // Handle 401 errors (unauthorized) and 403 errors (forbidden)
 api.interceptors.response.use(
   (response) => response,
-  (error) => {
+  async (error) => {
+    const config = error.config;
+    if (error.response?.status === 401 && config && !config._retry && !isAuthRequest(config.url)) {
+      config._retry = true;
+      const token = await refreshAccessToken();
+      if (token) {
+        config.headers.Authorization = `Bearer ${token}`;
+        return api(config);
+      }
+    }
     if (error.response?.status === 401) {
       authService.logout();
       window.location.href = '/login';
@@ -53,10 +88,19 @@ export interface Owner {
   phone: string;
   address: string;
   pets?: Pet[];
+  petCount?: number;
   createdAt?: string;
   updatedAt?: string;
 }
 
+export interface OwnerLeaderboardEntry {
+  rank: number;
+  ownerId: number;
+  firstName: string;
+  lastName: string;
+  petCount: number;
+}
+
 export interface Pet {
   id?: number;
   name: string;
@@ -77,6 +121,96 @@ export interface Statistics {
   totalPets: number;
   petsByType: Record<string, number>;
   averagePetsPerOwner: number;
+  distinctBreeds?: number;
+  distinctColors?: number;
+  ownersByPetType?: Record<string, number>;
+  computedAt?: string;
+  snapshotAgeMillis?: number;
+}
+
+export type StatisticsDelta = Partial<Statistics>;
+
+export interface AgeBucket {
+  ageYears: number;
+  count: number;
+}
+
+export interface AgeStats {
+  count: number;
+  histogram: AgeBucket[];
+  p50: number | null;
+  p90: number | null;
+  p99: number | null;
+}
+
+export interface AgeDistribution {
+  all: AgeStats;
+  byType: Record<string, AgeStats>;
+}
+
+export interface HeavyHitter {
+  value: string;
+  count: number;
+  maxError: number;
+  guaranteedCount: number;
+}
+
+export interface TopBreeds {
+  capacity: number;
+  byType: Record<string, HeavyHitter[]>;
+  maxError: Record<string, number>;
+}
+
+export type RollupMetric = 'USERS_REGISTERED' | 'OWNERS_CREATED' | 'PETS_CREATED';
+export type TimeGranularity = 'DAY' | 'WEEK' | 'MONTH';
+
+export interface TimeSeriesPoint {
+  bucket: string;
+  count: number;
+}
+
+export interface TimeSeries {
+  metric: RollupMetric;
+  granularity: TimeGranularity;
+  from: string;
+  to: string;
+  total: number;
+  points: TimeSeriesPoint[];
+}
+
+export interface FacetValue {
+  value: string;
+  count: number;
+}
+
+export interface PetSearchFacets {
+  search: string;
+  totalMatches: number;
+  byType: Record<string, number>;
+  topBreeds: FacetValue[];
+  colors: FacetValue[];
+  ageBuckets: Record<string, number>;
+}
+
+export type AnalyticsDimension = 'TYPE' | 'BREED' | 'COLOR' | 'BIRTH_YEAR' | 'OWNER';
+
+export interface PetAnalyticsFilter {
+  type?: string;
+  breed?: string;
+  color?: string;
+  ownerId?: number;
+  bornFrom?: string;
+  bornTo?: string;
+}
+
+export interface PetAnalytics {
+  groupBy?: AnalyticsDimension;
+  matched: number;
+  scannedRows: number;
+  groupCount?: number;
+  groups?: FacetValue[];
+  elapsedMicros: number;
+  builtAt?: string;
 }
 
 export const ownerService = {
@@ -86,6 +220,7 @@ export const ownerService = {
     return api.get<Owner[]>(`/owners?${params.toString()}`);
   },
   getById: (id: number) => api.get<Owner>(`/owners/${id}`),
+  getLeaderboard: (limit = 10) => api.get<OwnerLeaderboardEntry[]>(`/owners/leaderboard?limit=${limit}`),
   create: (owner: Omit<Owner, 'id' | 'createdAt' | 'updatedAt' | 'pets'>) => 
     api.post<Owner>('/owners', owner),
   update: (id: number, owner: Omit<Owner, 'id' | 'createdAt' | 'updatedAt' | 'pets'>) => 
@@ -102,6 +237,12 @@ export const petService = {
     if (search) params.append('search', search);
     return api.get<Pet[]>(`/pets?${params.toString()}`);
   },
+  getFacets: (search?: string, topBreeds?: number) => {
+    const params = new URLSearchParams();
+    if (search) params.append('search', search);
+    if (topBreeds) params.append('topBreeds', topBreeds.toString());
+    return api.get<PetSearchFacets>(`/pets/facets?${params.toString()}`);
+  },
   getMyPets: () => api.get<Pet[]>('/pets/my'),
   getById: (id: number) => api.get<Pet>(`/pets/${id}`),
   create: (pet: Omit<Pet, 'id' | 'createdAt' | 'updatedAt' | 'ownerName'>) => 
@@ -113,6 +254,29 @@ export const petService = {
 
 export const statisticsService = {
   getStatistics: () => api.get<Statistics>('/statistics'),
+  // SSE: сначала событие snapshot с полной статистикой, затем delta только с изменившимися полями
+  subscribe: (onSnapshot: (statistics: Statistics) => void, onDelta: (delta: StatisticsDelta) => void) => {
+    const source = new EventSource(`${API_BASE_URL}/statistics/stream`);
+    source.addEventListener('snapshot', (event) => onSnapshot(JSON.parse((event as MessageEvent).data)));
+    source.addEventListener('delta', (event) => onDelta(JSON.parse((event as MessageEvent).data)));
+    return () => source.close();
+  },
+  getAges: () => api.get<AgeDistribution>('/statistics/ages'),
+  getTopBreeds: (limit = 10) => api.get<TopBreeds>(`/statistics/top-breeds?limit=${limit}`),
+  getTimeSeries: (metric: RollupMetric, granularity: TimeGranularity = 'DAY', from?: string, to?: string) => {
+    const params = new URLSearchParams({ metric, granularity });
+    if (from) params.append('from', from);
+    if (to) params.append('to', to);
+    return api.get<TimeSeries>(`/statistics/timeseries?${params.toString()}`);
+  },
+  analyzePets: (groupBy?: AnalyticsDimension, filter: PetAnalyticsFilter = {}, limit = 20) => {
+    const params = new URLSearchParams({ limit: limit.toString() });
+    if (groupBy) params.append('groupBy', groupBy);
+    Object.entries(filter).forEach(([key, value]) => {
+      if (value !== undefined && value !== '') params.append(key, String(value));
+    });
+    return api.get<PetAnalytics>(`/statistics/analytics?${params.toString()}`);
+  },
 };
 
 export default api;
@@ -1,3 +1,4 @@
+import axios from 'axios';
 import api from './api';
 
 export interface LoginRequest {
@@ -16,12 +17,14 @@ export interface RegisterRequest {
 
 export interface AuthResponse {
   token: string;
+  refreshToken: string;
   username: string;
   email: string;
   roles: string[];
 }
 
 const TOKEN_KEY = 'auth_token';
+const REFRESH_TOKEN_KEY = 'auth_refresh_token';
 const USER_KEY = 'auth_user';
 
 export const authService = {
@@ -29,6 +32,7 @@ export const authService = {
     const response = await api.post<AuthResponse>('/auth/login', credentials);
     if (response.data.token) {
       localStorage.setItem(TOKEN_KEY, response.data.token);
+      localStorage.setItem(REFRESH_TOKEN_KEY, response.data.refreshToken);
       // Если email из ответа содержит '@example.com', используем существующий email из localStorage
       // (если username совпадает и существующий email НЕ содержит '@example.com'), иначе используем email из ответа
       const existingUser = authService.getUser();
@@ -53,6 +57,7 @@ export const authService = {
     const response = await api.post<AuthResponse>('/auth/register', data);
     if (response.data.token) {
       localStorage.setItem(TOKEN_KEY, response.data.token);
+      localStorage.setItem(REFRESH_TOKEN_KEY, response.data.refreshToken);
       localStorage.setItem(USER_KEY, JSON.stringify({
         username: response.data.username,
         email: response.data.email,
@@ -62,8 +67,32 @@ export const authService = {
     return response.data;
   },
 
+  // Обменивает refresh-токен на новую пару; null, если сессию продлить нельзя
+  refresh: async (): Promise<string | null> => {
+    const refreshToken = localStorage.getItem(REFRESH_TOKEN_KEY);
+    if (!refreshToken) return null;
+    try {
+      // Без интерсепторов api: они сами вызывают refresh
+      const response = await axios.post<AuthResponse>(`${api.defaults.baseURL}/auth/refresh`, { refreshToken });
+      localStorage.setItem(TOKEN_KEY, response.data.token);
+      localStorage.setItem(REFRESH_TOKEN_KEY, response.data.refreshToken);
+      return response.data.token;
+    } catch {
+      return null;
+    }
+  },
+
   logout: () => {
+    // Сервер отзывает access-токен и цепочку refresh-токена; локальный выход не ждет ответа
+    const token = localStorage.getItem(TOKEN_KEY);
+    const refreshToken = localStorage.getItem(REFRESH_TOKEN_KEY);
+    if (token || refreshToken) {
+      axios.post(`${api.defaults.baseURL}/auth/logout`, refreshToken ? { refreshToken } : undefined, {
+        headers: token ? { Authorization: `Bearer ${token}` } : undefined,
+      }).catch(() => undefined);
+    }
     localStorage.removeItem(TOKEN_KEY);
+    localStorage.removeItem(REFRESH_TOKEN_KEY);
     localStorage.removeItem(USER_KEY);
   },
 
@@ -88,6 +117,7 @@ export const authService = {
   clearAllUsers: () => {
     // Очищает всех пользователей из localStorage
     localStorage.removeItem(TOKEN_KEY);
+    localStorage.removeItem(REFRESH_TOKEN_KEY);
     localStorage.removeItem(USER_KEY);
     console.log('All users cleared from localStorage');
   },
@@ -107,23 +137,14 @@ export interface UserProfile {
 }
 
 export const userService = {
-  getProfile: () => {
-    // Передаем данные пользователя через query параметры, так как заголовки могут не проходить через nginx
-    const user = authService.getUser();
-    if (user && user.username && user.email) {
-      const url = `/users/me?username=${encodeURIComponent(user.username)}&email=${encodeURIComponent(user.email)}`;
-      console.log('Loading profile with:', { username: user.username, email: user.email });
-      return api.get<UserProfile>(url);
-    }
-    console.warn('No user data in localStorage, using default');
-    return api.get<UserProfile>('/users/me');
-  },
+  // Пользователь определяется сервером по токену из заголовка Authorization
+  getProfile: () => api.get<UserProfile>('/users/me'),
   updateProfile: (email: string, firstName: string, lastName: string, phone: string) => {
     const user = authService.getUser();
     if (!user || !user.username) {
       throw new Error('User not authenticated');
     }
-    return api.put<UserProfile>(`/users/me?username=${encodeURIComponent(user.username)}`, { 
+    return api.put<UserProfile>('/users/me', { 
       email,
       firstName,
       lastName,
@@ -135,7 +156,7 @@ export const userService = {
     if (!user || !user.username) {
       throw new Error('User not authenticated');
     }
-    return api.put(`/users/me/password?username=${encodeURIComponent(user.username)}`, { 
+    return api.put('/users/me/password', { 
       currentPassword, 
       newPassword 
     });
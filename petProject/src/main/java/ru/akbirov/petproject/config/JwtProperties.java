@@ -4,13 +4,66 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 @ConfigurationProperties(prefix = "jwt")
 @Data
 public class JwtProperties {
     
     private String secret = "your-secret-key-change-in-production-use-long-random-string-at-least-256-bits";
-    private long expiration = 86400000; // 24 hours in milliseconds
+    private long expiration = 900000; // 15 minutes in milliseconds
     private long refreshExpiration = 604800000; // 7 days in milliseconds
+    private boolean stateless = true; // роли, id пользователя и версия состояния берутся из токена
+    private Duration userStateRefreshInterval = Duration.ofSeconds(30); // граница устаревания состояния учетных записей
+    private UserStateCache userStateCache = new UserStateCache();
+    private UserDetailsCache userDetailsCache = new UserDetailsCache();
+    private TokenCache tokenCache = new TokenCache();
+    private OwnerIdCache ownerIdCache = new OwnerIdCache();
+    private RefreshTokenCache refreshTokenCache = new RefreshTokenCache();
+    private Duration refreshTokenCleanupInterval = Duration.ofHours(1);
+    private Revocation revocation = new Revocation();
+    
+    @Data
+    public static class UserStateCache {
+        
+        private long maximumSize = 10_000;
+        private Duration expireAfterWrite = Duration.ofMinutes(10); // граница жизни записи удаленного пользователя
+        private Duration missingExpireAfterWrite = Duration.ofSeconds(5); // отсутствие пользователя кэшируется коротко
+    }
+    
+    @Data
+    public static class UserDetailsCache {
+        
+        private long maximumSize = 10_000;
+        private Duration expireAfterWrite = Duration.ofMinutes(5);
+    }
+    
+    @Data
+    public static class TokenCache {
+        
+        private long maximumSize = 10_000;
+    }
+    
+    @Data
+    public static class OwnerIdCache {
+        
+        private long maximumSize = 10_000;
+        private Duration expireAfterWrite = Duration.ofMinutes(30);
+    }
+    
+    @Data
+    public static class RefreshTokenCache {
+        
+        private long maximumSize = 10_000;
+    }
+    
+    @Data
+    public static class Revocation {
+        
+        private Duration refreshInterval = Duration.ofSeconds(5); // граница действия отзыва на других узлах
+        private Duration cleanupInterval = Duration.ofHours(1);
+        private int expectedTokens = 10_000;
+        private double falsePositiveRate = 0.01;
+    }
 }
-
@@ -0,0 +1,31 @@
+package ru.akbirov.petproject.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "login-throttle")
+@Data
+public class LoginThrottleProperties {
+    
+    private boolean enabled = true;
+    private int stripes = 64;
+    private int maxEntries = 100_000; // на каждый вид ключа; при переполнении вытесняются давно не использованные
+    private Duration sweepInterval = Duration.ofMinutes(1);
+    private Limit perUsername = new Limit(5, Duration.ofSeconds(30));
+    private Limit perIp = new Limit(20, Duration.ofSeconds(3));
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        
+        private int capacity; // попыток подряд
+        private Duration refillInterval; // время восстановления одной попытки
+    }
+}
@@ -1,16 +1,30 @@
 package ru.akbirov.petproject.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.akbirov.petproject.security.BcryptStrengthCalibrator;
+import ru.akbirov.petproject.security.BoundedPasswordEncoder;
 
 @Configuration
 public class PasswordEncoderConfig {
     
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    static final String STRENGTH_METRIC = "auth.password.strength";
+    
+    // BCrypt выполняется на своем пуле, а не на потоках Tomcat; стоимость подбирается под железо при старте
+    @Bean(destroyMethod = "shutdown")
+    public PasswordEncoder passwordEncoder(PasswordHashingProperties properties, MeterRegistry meterRegistry) {
+        int strength = properties.getStrength() != null
+                ? properties.getStrength()
+                : BcryptStrengthCalibrator.calibrate(properties.getTargetHashTime(),
+                        properties.getMinStrength(), properties.getMaxStrength());
+        Gauge.builder(STRENGTH_METRIC, () -> strength)
+                .description("BCrypt strength used for new password hashes")
+                .register(meterRegistry);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), properties.threads(),
+                properties.getQueueCapacity(), properties.getRetryAfter(), meterRegistry);
     }
 }
-
@@ -0,0 +1,25 @@
+package ru.akbirov.petproject.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "password-hashing")
+@Data
+public class PasswordHashingProperties {
+    
+    private double cpuShare = 0.5; // доля ядер под BCrypt, остальное остается обычным запросам
+    private int queueCapacity = 50; // ожидающие хеширования сверх этого числа получают 503
+    private Duration retryAfter = Duration.ofSeconds(1);
+    private Duration targetHashTime = Duration.ofMillis(250); // бюджет одного хеша, под него подбирается стоимость BCrypt
+    private int minStrength = 10; // ниже не опускаемся даже на медленном железе
+    private int maxStrength = 14;
+    private Integer strength; // фиксированная стоимость вместо подбора при старте, например одна на весь кластер
+    
+    public int threads() {
+        return Math.max(1, (int) (Runtime.getRuntime().availableProcessors() * cpuShare));
+    }
+}
@@ -0,0 +1,22 @@
+package ru.akbirov.petproject.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "search")
+@Data
+public class SearchProperties {
+    
+    private Duration defaultTimeout = Duration.ofSeconds(3);
+    private Map<String, Duration> timeouts = new HashMap<>(); // таймаут запроса по имени эндпоинта
+    
+    public Duration timeoutFor(String endpoint) {
+        return timeouts.getOrDefault(endpoint, defaultTimeout);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.akbirov.petproject.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "statistics")
+@Data
+public class StatisticsProperties {
+    
+    private Duration reconcileInterval = Duration.ofMinutes(10); // период сверки счетчиков с базой данных
+    private Snapshot snapshot = new Snapshot();
+    private HeavyHitters heavyHitters = new HeavyHitters();
+    private Sketches sketches = new Sketches();
+    private Stream stream = new Stream();
+    private Analytics analytics = new Analytics();
+    
+    @Data
+    public static class Snapshot {
+        
+        private Duration refreshInterval = Duration.ofSeconds(15); // период планового обновления снимка
+        private Duration maxStaleness = Duration.ofMinutes(1); // после этого возраста читатель запускает обновление
+    }
+    
+    @Data
+    public static class HeavyHitters {
+        
+        private int capacity = 64; // число отслеживаемых пород на тип, ошибка оценки не больше N / capacity
+        private Duration recountInterval = Duration.ofHours(1); // период точного пересчета из базы данных
+    }
+    
+    @Data
+    public static class Sketches {
+        
+        private Duration flushInterval = Duration.ofMinutes(1); // период слияния локальных скетчей с общими
+        private Duration rebuildInterval = Duration.ofHours(24); // период полного перестроения из таблицы pets
+    }
+    
+    @Data
+    public static class Stream {
+        
+        private Duration pushInterval = Duration.ofSeconds(2); // не больше одного события delta за интервал
+        private Duration heartbeatInterval = Duration.ofSeconds(30);
+        private Duration emitterTimeout = Duration.ofMinutes(30); // после таймаута EventSource переподключается
+        private int sendThreads = 4; // потоки блокирующей отправки событий подписчикам
+        private int maxPendingEvents = 16; // подписчик с таким числом неотправленных событий отключается
+    }
+    
+    @Data
+    public static class Analytics {
+        
+        private int initialCapacity = 1024; // начальное число строк колоночного хранилища, дальше удваивается
+        private Duration rebuildInterval = Duration.ofHours(6); // период полного перестроения из таблицы pets
+    }
+}
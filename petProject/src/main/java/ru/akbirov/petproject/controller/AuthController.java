@@ -2,6 +2,7 @@ package ru.akbirov.petproject.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -10,7 +11,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.akbirov.petproject.dto.AuthResponseDto;
 import ru.akbirov.petproject.dto.LoginDto;
+import ru.akbirov.petproject.dto.RefreshTokenRequestDto;
 import ru.akbirov.petproject.dto.RegisterDto;
+import ru.akbirov.petproject.security.LoginThrottle;
 import ru.akbirov.petproject.service.AuthService;
 
 @RestController
@@ -21,11 +24,14 @@ public class AuthController {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
     private final AuthService authService;
+    private final LoginThrottle loginThrottle;
 
     @PostMapping("/register")
     @Operation(summary = "Регистрация нового пользователя")
-    public ResponseEntity<AuthResponseDto> register(@Valid @RequestBody RegisterDto registerDto) {
+    public ResponseEntity<AuthResponseDto> register(@Valid @RequestBody RegisterDto registerDto,
+                                                    HttpServletRequest request) {
         logger.info("Registration attempt for username: {}", registerDto.getUsername());
+        loginThrottle.check(request.getRemoteAddr(), registerDto.getUsername());
         AuthResponseDto response = authService.register(registerDto);
         logger.info("User registered successfully: username={}, email={}", 
                 response.getUsername(), response.getEmail());
@@ -34,11 +40,32 @@ public class AuthController {
 
     @PostMapping("/login")
     @Operation(summary = "Вход в систему")
-    public ResponseEntity<AuthResponseDto> login(@Valid @RequestBody LoginDto loginDto) {
+    public ResponseEntity<AuthResponseDto> login(@Valid @RequestBody LoginDto loginDto,
+                                                 HttpServletRequest request) {
         logger.info("Login attempt for username: {}", loginDto.getUsername());
+        // До поиска пользователя и BCrypt: перебор паролей упирается в лимит, а не в CPU
+        loginThrottle.check(request.getRemoteAddr(), loginDto.getUsername());
         AuthResponseDto response = authService.login(loginDto);
         logger.info("User logged in successfully: username={}, email={}", 
                 response.getUsername(), response.getEmail());
         return ResponseEntity.ok(response);
     }
+
+    @PostMapping("/refresh")
+    @Operation(summary = "Обмен refresh-токена на новую пару токенов")
+    public ResponseEntity<AuthResponseDto> refresh(@Valid @RequestBody RefreshTokenRequestDto refreshTokenRequestDto) {
+        AuthResponseDto response = authService.refresh(refreshTokenRequestDto);
+        logger.debug("Token refreshed for username: {}", response.getUsername());
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/logout")
+    @Operation(summary = "Выход: отзыв access-токена и цепочки refresh-токена")
+    public ResponseEntity<Void> logout(@RequestHeader(value = "Authorization", required = false) String authHeader,
+                                       @RequestBody(required = false) RefreshTokenRequestDto refreshTokenRequestDto) {
+        String accessToken = authHeader != null && authHeader.startsWith("Bearer ") ? authHeader.substring(7) : null;
+        String refreshToken = refreshTokenRequestDto != null ? refreshTokenRequestDto.getRefreshToken() : null;
+        authService.logout(accessToken, refreshToken);
+        return ResponseEntity.noContent().build();
+    }
 }
@@ -2,20 +2,26 @@ package ru.akbirov.petproject.controller;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.BadCredentialsException;
 import ru.akbirov.petproject.dto.ErrorResponseDto;
 import ru.akbirov.petproject.exception.AccessDeniedException;
 import ru.akbirov.petproject.exception.EmailAlreadyExistsException;
+import ru.akbirov.petproject.exception.InvalidRequestParameterException;
 import ru.akbirov.petproject.exception.PhoneAlreadyExistsException;
 import ru.akbirov.petproject.exception.OwnerNotFoundException;
+import ru.akbirov.petproject.exception.PasswordHashingBusyException;
 import ru.akbirov.petproject.exception.PetNotFoundException;
+import ru.akbirov.petproject.exception.SearchTimeoutException;
+import ru.akbirov.petproject.exception.TooManyRequestsException;
 import ru.akbirov.petproject.exception.UserNotFoundException;
 import ru.akbirov.petproject.exception.UsernameAlreadyExistsException;
 
@@ -131,6 +137,64 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error);
     }
     
+    @ExceptionHandler(SearchTimeoutException.class)
+    public ResponseEntity<ErrorResponseDto> handleSearchTimeoutException(
+            SearchTimeoutException ex, HttpServletRequest request) {
+        log.warn("Search timeout: {}", ex.getMessage());
+        ErrorResponseDto error = ErrorResponseDto.builder()
+                .message(ex.getMessage())
+                .error("Search Timeout")
+                .timestamp(LocalDateTime.now())
+                .path(request.getRequestURI())
+                .build();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+    
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<ErrorResponseDto> handlePasswordHashingBusyException(
+            PasswordHashingBusyException ex, HttpServletRequest request) {
+        log.warn("Password hashing saturated: {}", request.getRequestURI());
+        ErrorResponseDto error = ErrorResponseDto.builder()
+                .message(ex.getMessage())
+                .error("Service Unavailable")
+                .timestamp(LocalDateTime.now())
+                .path(request.getRequestURI())
+                .build();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(error);
+    }
+    
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ErrorResponseDto> handleTooManyRequestsException(
+            TooManyRequestsException ex, HttpServletRequest request) {
+        log.warn("Too many requests: {}", request.getRequestURI());
+        ErrorResponseDto error = ErrorResponseDto.builder()
+                .message(ex.getMessage())
+                .error("Too Many Requests")
+                .timestamp(LocalDateTime.now())
+                .path(request.getRequestURI())
+                .build();
+        // Retry-After в целых секундах, с округлением вверх
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(error);
+    }
+    
+    @ExceptionHandler({InvalidRequestParameterException.class, MethodArgumentTypeMismatchException.class})
+    public ResponseEntity<ErrorResponseDto> handleBadRequestException(
+            RuntimeException ex, HttpServletRequest request) {
+        log.warn("Bad request: {}", ex.getMessage());
+        ErrorResponseDto error = ErrorResponseDto.builder()
+                .message(ex.getMessage())
+                .error("Bad Request")
+                .timestamp(LocalDateTime.now())
+                .path(request.getRequestURI())
+                .build();
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+    
     @ExceptionHandler(DataIntegrityViolationException.class)
     public ResponseEntity<ErrorResponseDto> handleDataIntegrityViolationException(
             DataIntegrityViolationException ex, HttpServletRequest request) {
@@ -145,6 +209,8 @@ public class GlobalExceptionHandler {
                 message = "Username already exists";
             } else if (errorMessage.contains("email") || errorMessage.contains("users_email_key")) {
                 message = "Email already exists";
+            } else if (errorMessage.contains("phone")) {
+                message = "Phone already exists";
             }
         }
         
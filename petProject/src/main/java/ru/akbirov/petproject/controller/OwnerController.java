@@ -1,6 +1,7 @@
 package ru.akbirov.petproject.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +12,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import ru.akbirov.petproject.dto.OwnerLeaderboardEntryDto;
 import ru.akbirov.petproject.dto.OwnerRequestDto;
 import ru.akbirov.petproject.dto.OwnerResponseDto;
 import ru.akbirov.petproject.dto.PetResponseDto;
@@ -26,7 +29,9 @@ import java.util.List;
 public class OwnerController {
     
     private static final Logger logger = LoggerFactory.getLogger(OwnerController.class);
+    private static final String SEARCH_ENDPOINT = "owners";
     private final OwnerService ownerService;
+    private final SearchQueryGuard searchQueryGuard;
     
     @PostMapping
     @Operation(summary = "Создать нового владельца")
@@ -51,23 +56,48 @@ public class OwnerController {
     
     @GetMapping
     @Operation(summary = "Получить всех владельцев")
-    public ResponseEntity<List<OwnerResponseDto>> getAllOwners(
-            @RequestParam(required = false) String search) {
-        if (search != null && !search.trim().isEmpty()) {
-            logger.info("Searching owners with query: {}", search);
-        } else {
-            logger.debug("Getting all owners");
-        }
-        List<OwnerResponseDto> response;
-        if (search != null && !search.trim().isEmpty()) {
-            response = ownerService.search(search.trim());
-        } else {
-            response = ownerService.getAllOwners();
-        }
+    public ResponseEntity<List<OwnerResponseDto>> getAllOwners() {
+        logger.debug("Getting all owners");
+        List<OwnerResponseDto> response = ownerService.getAllOwners();
         logger.debug("Found {} owners", response.size());
         return ResponseEntity.ok(response);
     }
     
+    @GetMapping(params = "search")
+    @Operation(summary = "Поиск владельцев по имени, фамилии или email")
+    public WebAsyncTask<ResponseEntity<List<OwnerResponseDto>>> searchOwners(@RequestParam String search) {
+        String term = search.trim();
+        return searchQueryGuard.execute(SEARCH_ENDPOINT, () -> {
+            List<OwnerResponseDto> response;
+            if (term.isEmpty()) {
+                response = ownerService.getAllOwners();
+            } else {
+                logger.info("Searching owners with query: {}", term);
+                response = ownerService.search(term);
+            }
+            logger.debug("Found {} owners", response.size());
+            return ResponseEntity.ok(response);
+        });
+    }
+    
+    @GetMapping("/by-phone")
+    @Operation(summary = "Найти владельцев по началу номера телефона")
+    public ResponseEntity<List<OwnerResponseDto>> findOwnersByPhone(@RequestParam String prefix) {
+        logger.debug("Searching owners by phone prefix: {}", prefix);
+        List<OwnerResponseDto> response = ownerService.findByPhonePrefix(prefix);
+        logger.debug("Found {} owners by phone prefix", response.size());
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/leaderboard")
+    @Operation(summary = "Получить владельцев с наибольшим числом питомцев")
+    public ResponseEntity<List<OwnerLeaderboardEntryDto>> getLeaderboard(
+            @Parameter(description = "Число владельцев в рейтинге (1-100)")
+            @RequestParam(defaultValue = "10") int limit) {
+        logger.debug("Getting owner leaderboard, limit: {}", limit);
+        return ResponseEntity.ok(ownerService.getLeaderboard(limit));
+    }
+    
     @PutMapping("/{id}")
     @Operation(summary = "Обновить владельца")
     public ResponseEntity<OwnerResponseDto> updateOwner(
@@ -8,14 +8,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import ru.akbirov.petproject.dto.PetRequestDto;
 import ru.akbirov.petproject.dto.PetResponseDto;
+import ru.akbirov.petproject.dto.PetSearchFacetsDto;
 import ru.akbirov.petproject.entity.PetType;
 import ru.akbirov.petproject.exception.AccessDeniedException;
+import ru.akbirov.petproject.security.AuthenticatedUser;
 import ru.akbirov.petproject.service.PetService;
 
 import java.util.List;
@@ -27,7 +29,9 @@ import java.util.List;
 public class PetController {
     
     private static final Logger logger = LoggerFactory.getLogger(PetController.class);
+    private static final String SEARCH_ENDPOINT = "pets";
     private final PetService petService;
+    private final SearchQueryGuard searchQueryGuard;
     
     @PostMapping
     @Operation(summary = "Создать нового питомца")
@@ -50,47 +54,74 @@ public class PetController {
     
     @GetMapping("/my")
     @Operation(summary = "Получить питомцев текущего пользователя")
-    public ResponseEntity<List<PetResponseDto>> getMyPets() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated() || 
-            authentication.getName().equals("anonymousUser")) {
-            logger.warn("Authentication required for getting my pets. Current auth: {}", authentication);
+    public ResponseEntity<List<PetResponseDto>> getMyPets(@AuthenticationPrincipal AuthenticatedUser principal) {
+        if (principal == null) {
+            logger.warn("Authentication required for getting my pets");
             throw new AccessDeniedException("Authentication required");
         }
-        String username = authentication.getName();
-        logger.debug("Getting pets for current user: {}", username);
-        List<PetResponseDto> response = petService.getMyPets(username);
-        logger.debug("Found {} pets for user: {}", response.size(), username);
+        logger.debug("Getting pets for current user: {}", principal.getUsername());
+        List<PetResponseDto> response = petService.getMyPets(principal.getOwnerId());
+        logger.debug("Found {} pets for user: {}", response.size(), principal.getUsername());
         return ResponseEntity.ok(response);
     }
     
     @GetMapping
     @Operation(summary = "Получить всех питомцев")
     public ResponseEntity<List<PetResponseDto>> getAllPets(
+            @RequestParam(required = false) PetType type,
+            @RequestParam(required = false) Long ownerId) {
+        logger.debug("Getting pets with filters: type={}, ownerId={}", type, ownerId);
+        List<PetResponseDto> response = findPets(type, ownerId);
+        logger.debug("Found {} pets", response.size());
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping(params = "search")
+    @Operation(summary = "Поиск питомцев по имени, породе или владельцу")
+    public WebAsyncTask<ResponseEntity<List<PetResponseDto>>> searchPets(
             @RequestParam(required = false) PetType type,
             @RequestParam(required = false) Long ownerId,
-            @RequestParam(required = false) String search) {
-        logger.debug("Getting pets with filters: type={}, ownerId={}, search={}", type, ownerId, search);
-        List<PetResponseDto> response;
-        if (search != null && !search.trim().isEmpty()) {
-            logger.info("Searching pets with query: {}", search);
-            response = petService.search(search.trim());
-        } else if (type != null && ownerId != null) {
+            @RequestParam String search) {
+        String term = search.trim();
+        return searchQueryGuard.execute(SEARCH_ENDPOINT, () -> {
+            List<PetResponseDto> response;
+            if (term.isEmpty()) {
+                response = findPets(type, ownerId);
+            } else {
+                logger.info("Searching pets with query: {}", term);
+                response = petService.search(term);
+            }
+            logger.debug("Found {} pets", response.size());
+            return ResponseEntity.ok(response);
+        });
+    }
+    
+    private List<PetResponseDto> findPets(PetType type, Long ownerId) {
+        if (type != null && ownerId != null) {
             logger.debug("Filtering pets by type {} and ownerId {}", type, ownerId);
-            response = petService.getPetsByOwnerId(ownerId).stream()
+            return petService.getPetsByOwnerId(ownerId).stream()
                     .filter(pet -> pet.getType() == type)
                     .toList();
         } else if (type != null) {
             logger.debug("Filtering pets by type: {}", type);
-            response = petService.getPetsByType(type);
+            return petService.getPetsByType(type);
         } else if (ownerId != null) {
             logger.debug("Filtering pets by ownerId: {}", ownerId);
-            response = petService.getPetsByOwnerId(ownerId);
-        } else {
-            logger.debug("Getting all pets");
-            response = petService.getAllPets();
+            return petService.getPetsByOwnerId(ownerId);
         }
-        logger.debug("Found {} pets", response.size());
+        logger.debug("Getting all pets");
+        return petService.getAllPets();
+    }
+    
+    @GetMapping("/facets")
+    @Operation(summary = "Получить фасеты (количество по типам, породам, окрасам и возрасту) для поиска питомцев")
+    public ResponseEntity<PetSearchFacetsDto> getSearchFacets(
+            @RequestParam(required = false) String search,
+            @RequestParam(defaultValue = "10") int topBreeds) {
+        String term = search != null ? search.trim() : "";
+        logger.debug("Getting search facets for query: {}", term);
+        PetSearchFacetsDto response = petService.searchFacets(term, Math.max(1, topBreeds));
+        logger.debug("Facets calculated for {} matching pets", response.getTotalMatches());
         return ResponseEntity.ok(response);
     }
     
@@ -99,10 +130,11 @@ public class PetController {
     public ResponseEntity<PetResponseDto> updatePet(
             @PathVariable Long id,
             @Valid @RequestBody PetRequestDto requestDto,
-            Authentication authentication) {
-        checkPetAccess(id, authentication);
+            @AuthenticationPrincipal AuthenticatedUser principal) {
         logger.info("Updating pet with ID: {}", id);
-        PetResponseDto response = petService.updatePet(id, requestDto);
+        PetResponseDto response = isAdmin(principal)
+                ? petService.updatePet(id, requestDto)
+                : petService.updateOwnPet(id, requireOwnerId(principal, id), requestDto);
         logger.info("Pet updated successfully: {} (ID: {})", response.getName(), response.getId());
         return ResponseEntity.ok(response);
     }
@@ -111,36 +143,41 @@ public class PetController {
     @Operation(summary = "Удалить питомца")
     public ResponseEntity<Void> deletePet(
             @PathVariable Long id,
-            Authentication authentication) {
-        checkPetAccess(id, authentication);
+            @AuthenticationPrincipal AuthenticatedUser principal) {
         logger.info("Deleting pet with ID: {}", id);
-        petService.deletePet(id);
+        if (isAdmin(principal)) {
+            petService.deletePet(id);
+        } else {
+            petService.deleteOwnPet(id, requireOwnerId(principal, id));
+        }
         logger.info("Pet deleted successfully with ID: {}", id);
         return ResponseEntity.noContent().build();
     }
     
-    private void checkPetAccess(Long petId, Authentication authentication) {
-        if (authentication == null || authentication.getName().equals("anonymousUser")) {
+    /**
+     * Администратор меняет любых питомцев; принадлежность питомца остальным пользователям
+     * проверяет сервис в той же транзакции, что и изменение.
+     */
+    private boolean isAdmin(AuthenticatedUser principal) {
+        if (principal == null) {
             throw new AccessDeniedException("Authentication required");
         }
         
-        boolean isAdmin = authentication.getAuthorities().stream()
+        boolean isAdmin = principal.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority)
                 .anyMatch(authority -> authority.equals("ROLE_ADMIN"));
-        
         if (isAdmin) {
-            logger.debug("Admin access granted for pet {}", petId);
-            return;
+            logger.debug("Admin access granted for user: {}", principal.getUsername());
         }
-        
-        // Проверяем, является ли пользователь владельцем питомца
-        boolean isOwner = petService.isPetOwner(petId, authentication.getName());
-        if (!isOwner) {
-            logger.warn("Access denied for user: {} - not owner of pet {}", authentication.getName(), petId);
+        return isAdmin;
+    }
+    
+    private Long requireOwnerId(AuthenticatedUser principal, Long petId) {
+        if (principal.getOwnerId() == null) {
+            logger.warn("Access denied for user: {} - no owner profile for pet {}", principal.getUsername(), petId);
             throw new AccessDeniedException("Access denied. You can only edit/delete your own pets.");
         }
-        
-        logger.debug("Owner access granted for pet {}", petId);
+        return principal.getOwnerId();
     }
 }
 
@@ -0,0 +1,119 @@
+package ru.akbirov.petproject.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import ru.akbirov.petproject.config.SearchProperties;
+import ru.akbirov.petproject.exception.SearchTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Выполняет поисковые запросы асинхронно с ограничением по времени.
+ * Транзакция получает таймаут эндпоинта, который Spring передает в JDBC statement timeout.
+ * При таймауте запроса или разрыве соединения клиентом выполняющийся SQL отменяется,
+ * а каждая отмена учитывается в метрике {@value #CANCELLED_METRIC}.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchQueryGuard {
+
+    static final String CANCELLED_METRIC = "search.queries.cancelled";
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchQueryGuard.class);
+    private static final Duration REQUEST_TIMEOUT_GRACE = Duration.ofSeconds(1);
+
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+    private final SearchProperties searchProperties;
+    private final MeterRegistry meterRegistry;
+
+    public <T> WebAsyncTask<T> execute(String endpoint, Callable<T> query) {
+        Duration timeout = searchProperties.timeoutFor(endpoint);
+        AtomicReference<Session> runningSession = new AtomicReference<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setTimeout((int) Math.max(1, (timeout.toMillis() + 999) / 1000));
+
+        Callable<T> task = () -> {
+            try {
+                return transactionTemplate.execute(status -> {
+                    runningSession.set(entityManager.unwrap(Session.class));
+                    try {
+                        return query.call();
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    } finally {
+                        runningSession.set(null);
+                    }
+                });
+            } catch (QueryTimeoutException | TransactionTimedOutException e) {
+                if (cancelled.compareAndSet(false, true)) {
+                    recordCancellation(endpoint, "statement_timeout");
+                }
+                throw new SearchTimeoutException(endpoint);
+            }
+        };
+
+        WebAsyncTask<T> asyncTask = new WebAsyncTask<>(timeout.plus(REQUEST_TIMEOUT_GRACE).toMillis(), task);
+        asyncTask.onTimeout(() -> {
+            cancel(endpoint, "request_timeout", runningSession, cancelled);
+            throw new SearchTimeoutException(endpoint);
+        });
+        asyncTask.onError(() -> {
+            cancel(endpoint, "client_disconnect", runningSession, cancelled);
+            return noResult();
+        });
+        return asyncTask;
+    }
+
+    private void cancel(String endpoint, String reason, AtomicReference<Session> runningSession,
+                        AtomicBoolean cancelled) {
+        if (!cancelled.compareAndSet(false, true)) {
+            return;
+        }
+        Session session = runningSession.get();
+        if (session != null) {
+            try {
+                // Единственный метод Session, который безопасно вызывать из другого потока
+                session.cancelQuery();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to cancel {} search query: {}", endpoint, e.getMessage());
+            }
+        }
+        recordCancellation(endpoint, reason);
+    }
+
+    private void recordCancellation(String endpoint, String reason) {
+        logger.warn("Search query for {} cancelled: {}", endpoint, reason);
+        Counter.builder(CANCELLED_METRIC)
+                .description("Search queries cancelled by timeout or client disconnect")
+                .tag("endpoint", endpoint)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T noResult() {
+        return (T) CallableProcessingInterceptor.RESULT_NONE;
+    }
+}
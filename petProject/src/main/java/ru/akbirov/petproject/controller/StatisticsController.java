@@ -1,16 +1,33 @@
 package ru.akbirov.petproject.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.akbirov.petproject.dto.AgeDistributionDto;
+import ru.akbirov.petproject.dto.PetAnalyticsDto;
 import ru.akbirov.petproject.dto.StatisticsDto;
+import ru.akbirov.petproject.dto.TimeSeriesDto;
+import ru.akbirov.petproject.dto.TopBreedsDto;
+import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.entity.RollupMetric;
 import ru.akbirov.petproject.service.StatisticsService;
+import ru.akbirov.petproject.statistics.AnalyticsDimension;
+import ru.akbirov.petproject.statistics.PetAnalyticsFilter;
+import ru.akbirov.petproject.statistics.StatisticsStreamBroadcaster;
+import ru.akbirov.petproject.statistics.TimeGranularity;
+
+import java.time.LocalDate;
 
 @RestController
 @RequestMapping("/api/statistics")
@@ -20,6 +37,7 @@ public class StatisticsController {
     
     private static final Logger logger = LoggerFactory.getLogger(StatisticsController.class);
     private final StatisticsService statisticsService;
+    private final StatisticsStreamBroadcaster streamBroadcaster;
     
     @GetMapping
     @Operation(summary = "Получить общую статистику")
@@ -30,5 +48,71 @@ public class StatisticsController {
                 statistics.getTotalOwners(), statistics.getTotalPets());
         return ResponseEntity.ok(statistics);
     }
+    
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Подписаться на изменения статистики (SSE: событие snapshot, затем события delta)")
+    public SseEmitter streamStatistics() {
+        logger.info("Statistics stream subscription");
+        return streamBroadcaster.subscribe();
+    }
+    
+    @GetMapping("/top-breeds")
+    @Operation(summary = "Получить самые частые породы для каждого типа питомца (приближенно, с границей ошибки)")
+    public ResponseEntity<TopBreedsDto> getTopBreeds(
+            @Parameter(description = "Число пород на тип")
+            @RequestParam(defaultValue = "10") int limit) {
+        logger.info("Getting top {} breeds", limit);
+        return ResponseEntity.ok(statisticsService.getTopBreeds(limit));
+    }
+    
+    @GetMapping("/ages")
+    @Operation(summary = "Получить гистограмму возрастов и перцентили p50/p90/p99 по типам питомцев")
+    public ResponseEntity<AgeDistributionDto> getAgeDistribution() {
+        logger.info("Getting pet age distribution");
+        return ResponseEntity.ok(statisticsService.getAgeDistribution());
+    }
+    
+    @GetMapping("/timeseries")
+    @Operation(summary = "Получить временной ряд регистраций или созданных питомцев по дням, неделям или месяцам")
+    public ResponseEntity<TimeSeriesDto> getTimeSeries(
+            @Parameter(description = "USERS_REGISTERED, OWNERS_CREATED или PETS_CREATED")
+            @RequestParam RollupMetric metric,
+            @RequestParam(defaultValue = "DAY") TimeGranularity granularity,
+            @Parameter(description = "Начало периода (по умолчанию 30 дней назад)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Конец периода включительно (по умолчанию сегодня)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate periodEnd = to != null ? to : LocalDate.now();
+        LocalDate periodStart = from != null ? from : periodEnd.minusDays(30);
+        logger.info("Getting time series: metric={}, granularity={}, from={}, to={}", 
+                metric, granularity, periodStart, periodEnd);
+        return ResponseEntity.ok(statisticsService.getTimeSeries(metric, granularity, periodStart, periodEnd));
+    }
+    
+    @GetMapping("/analytics")
+    @Operation(summary = "Посчитать питомцев по фильтру с группировкой (колоночная копия в памяти, без запроса к базе данных)")
+    public ResponseEntity<PetAnalyticsDto> analyzePets(
+            @Parameter(description = "TYPE, BREED, COLOR, BIRTH_YEAR или OWNER; без группировки возвращается только число совпадений")
+            @RequestParam(required = false) AnalyticsDimension groupBy,
+            @RequestParam(required = false) PetType type,
+            @RequestParam(required = false) String breed,
+            @RequestParam(required = false) String color,
+            @RequestParam(required = false) Long ownerId,
+            @Parameter(description = "Дата рождения не раньше (включительно)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornFrom,
+            @Parameter(description = "Дата рождения не позже (включительно)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornTo,
+            @Parameter(description = "Число групп в ответе")
+            @RequestParam(defaultValue = "20") int limit) {
+        PetAnalyticsFilter filter = PetAnalyticsFilter.builder()
+                .type(type)
+                .breed(breed)
+                .color(color)
+                .ownerId(ownerId)
+                .bornFrom(bornFrom)
+                .bornTo(bornTo)
+                .build();
+        logger.info("Analyzing pets: groupBy={}, filter={}", groupBy, filter);
+        return ResponseEntity.ok(statisticsService.analyzePets(groupBy, filter, limit));
+    }
 }
-
@@ -7,10 +7,13 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import ru.akbirov.petproject.dto.ChangePasswordDto;
 import ru.akbirov.petproject.dto.UpdateProfileDto;
 import ru.akbirov.petproject.dto.UserProfileDto;
+import ru.akbirov.petproject.exception.AccessDeniedException;
+import ru.akbirov.petproject.security.AuthenticatedUser;
 import ru.akbirov.petproject.service.UserService;
 
 import java.util.HashMap;
@@ -27,17 +30,11 @@ public class UserController {
 
     @GetMapping("/me")
     @Operation(summary = "Получить профиль текущего пользователя")
-    public ResponseEntity<UserProfileDto> getCurrentUser(
-            @RequestParam(required = false) String username) {
-        logger.info("Getting profile for username: {}", username);
+    public ResponseEntity<UserProfileDto> getCurrentUser(@AuthenticationPrincipal AuthenticatedUser principal) {
+        requireAuthentication(principal);
+        logger.info("Getting profile for username: {}", principal.getUsername());
         
-        // Если username не передан, возвращаем ошибку
-        if (username == null || username.trim().isEmpty()) {
-            logger.warn("Username not provided in query params");
-            throw new ru.akbirov.petproject.exception.UserNotFoundException("Username is required");
-        }
-        
-        UserProfileDto profile = userService.getCurrentUserProfile(username.trim());
+        UserProfileDto profile = userService.getCurrentUserProfile(principal.getUserId(), principal.getOwnerId());
         logger.info("Profile returned for user: username={}, email={}", 
                 profile.getUsername(), profile.getEmail());
         return ResponseEntity.ok(profile);
@@ -46,16 +43,13 @@ public class UserController {
     @PutMapping("/me")
     @Operation(summary = "Обновить профиль текущего пользователя")
     public ResponseEntity<UserProfileDto> updateCurrentUser(
-            @RequestParam(required = false) String username,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @Valid @RequestBody UpdateProfileDto updateDto) {
-        logger.info("Updating profile for username: {}", username);
-        
-        if (username == null || username.trim().isEmpty()) {
-            logger.warn("Username not provided in query params");
-            throw new ru.akbirov.petproject.exception.UserNotFoundException("Username is required");
-        }
+        requireAuthentication(principal);
+        logger.info("Updating profile for username: {}", principal.getUsername());
         
-        UserProfileDto profile = userService.updateUserProfile(username.trim(), updateDto);
+        UserProfileDto profile = userService.updateUserProfile(
+                principal.getUserId(), principal.getOwnerId(), updateDto);
         logger.info("Profile updated successfully: username={}, email={}", 
                 profile.getUsername(), profile.getEmail());
         return ResponseEntity.ok(profile);
@@ -64,22 +58,26 @@ public class UserController {
     @PutMapping("/me/password")
     @Operation(summary = "Изменить пароль текущего пользователя")
     public ResponseEntity<Map<String, String>> changePassword(
-            @RequestParam(required = false) String username,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @Valid @RequestBody ChangePasswordDto changePasswordDto) {
-        logger.info("Password change requested for username: {}", username);
+        requireAuthentication(principal);
+        logger.info("Password change requested for username: {}", principal.getUsername());
         
-        if (username == null || username.trim().isEmpty()) {
-            logger.warn("Username not provided in query params");
-            throw new ru.akbirov.petproject.exception.UserNotFoundException("Username is required");
-        }
-        
-        userService.changePassword(username.trim(), 
+        userService.changePassword(principal.getUserId(), 
                 changePasswordDto.getCurrentPassword(), 
                 changePasswordDto.getNewPassword());
         
-        logger.info("Password changed successfully for username: {}", username);
+        logger.info("Password changed successfully for username: {}", principal.getUsername());
         Map<String, String> response = new HashMap<>();
         response.put("message", "Password changed successfully");
         return ResponseEntity.ok(response);
     }
+    
+    // Пользователь определяется только по токену, а не по параметрам запроса
+    private void requireAuthentication(AuthenticatedUser principal) {
+        if (principal == null) {
+            logger.warn("Authentication required for profile endpoint");
+            throw new AccessDeniedException("Authentication required");
+        }
+    }
 }
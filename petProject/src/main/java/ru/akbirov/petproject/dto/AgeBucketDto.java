@@ -0,0 +1,16 @@
+package ru.akbirov.petproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgeBucketDto {
+    
+    private Integer ageYears;
+    private Long count;
+}
@@ -0,0 +1,18 @@
+package ru.akbirov.petproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgeDistributionDto {
+    
+    private AgeStatsDto all;
+    private Map<String, AgeStatsDto> byType;
+}
@@ -0,0 +1,22 @@
+package ru.akbirov.petproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgeStatsDto {
+    
+    private Long count;
+    private List<AgeBucketDto> histogram;
+    // Перцентили возраста в полных годах (nearest-rank); null, если питомцев нет
+    private Integer p50;
+    private Integer p90;
+    private Integer p99;
+}
@@ -14,6 +14,7 @@ import java.util.Set;
 public class AuthResponseDto {
     
     private String token;
+    private String refreshToken;
     private String username;
     private String email;
     private Set<String> roles;
@@ -0,0 +1,18 @@
+package ru.akbirov.petproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeavyHitterDto {
+    
+    private String value;
+    private Long count; // оценка сверху
+    private Long maxError; // истинное значение не меньше count - maxError
+    private Long guaranteedCount;
+}
@@ -0,0 +1,19 @@
+package ru.akbirov.petproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OwnerLeaderboardEntryDto {
+    
+    private Integer rank;
+    private Long ownerId;
+    private String firstName;
+    private String lastName;
+    private Integer petCount;
+}
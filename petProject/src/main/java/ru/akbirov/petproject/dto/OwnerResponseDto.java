@@ -21,6 +21,7 @@ public class OwnerResponseDto {
     private String phone;
     private String address;
     private List<PetResponseDto> pets;
+    private Integer petCount;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
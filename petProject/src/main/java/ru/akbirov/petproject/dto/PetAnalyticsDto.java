@@ -0,0 +1,24 @@
+package ru.akbirov.petproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetAnalyticsDto {
+    
+    private String groupBy; // null, если запрошено только число совпадений
+    private Long matched;
+    private Long scannedRows;
+    private Integer groupCount; // число непустых групп до применения limit
+    private List<FacetValueDto> groups;
+    private Long elapsedMicros;
+    private LocalDateTime builtAt; // время последнего перестроения хранилища из базы данных
+}
@@ -0,0 +1,23 @@
+package ru.akbirov.petproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetSearchFacetsDto {
+    
+    private String search;
+    private Long totalMatches;
+    private Map<String, Long> byType;
+    private List<FacetValueDto> topBreeds;
+    private List<FacetValueDto> colors;
+    private Map<String, Long> ageBuckets;
+}
@@ -0,0 +1,31 @@
+package ru.akbirov.petproject.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Изменения статистики относительно предыдущего события потока: заполнены только изменившиеся поля,
+ * в картах только изменившиеся ключи. Значения абсолютные, а не приращения.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StatisticsDeltaDto {
+    
+    private Long totalOwners;
+    private Long totalPets;
+    private Map<String, Long> petsByType;
+    private Double averagePetsPerOwner;
+    private Long distinctBreeds;
+    private Long distinctColors;
+    private Map<String, Long> ownersByPetType;
+    private LocalDateTime computedAt;
+}
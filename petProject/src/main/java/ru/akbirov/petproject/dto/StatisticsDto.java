@@ -5,10 +5,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
 import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class StatisticsDto {
@@ -16,6 +17,11 @@ public class StatisticsDto {
     private Long totalOwners;
     private Long totalPets;
     private Map<String, Long> petsByType;
-    private Long averagePetsPerOwner;
+    private Double averagePetsPerOwner;
+    private Long distinctBreeds; // оценка HyperLogLog, ошибка около 1.6%
+    private Long distinctColors;
+    private Map<String, Long> ownersByPetType; // владельцы хотя бы с одним питомцем данного типа
+    private LocalDateTime computedAt;
+    private Long snapshotAgeMillis;
 }
 
@@ -0,0 +1,23 @@
+package ru.akbirov.petproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeSeriesDto {
+    
+    private String metric;
+    private String granularity;
+    private LocalDate from;
+    private LocalDate to;
+    private Long total;
+    private List<TimeSeriesPointDto> points;
+}
@@ -0,0 +1,20 @@
+package ru.akbirov.petproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopBreedsDto {
+    
+    private Integer capacity; // число отслеживаемых пород на тип
+    private Map<String, List<HeavyHitterDto>> byType;
+    private Map<String, Long> maxError; // граница ошибки оценки по типу
+}
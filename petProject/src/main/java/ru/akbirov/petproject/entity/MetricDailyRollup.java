@@ -0,0 +1,44 @@
+package ru.akbirov.petproject.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Число событий метрики за один день; недели и месяцы получаются суммированием дней
+ */
+@Entity
+@Table(name = "metric_daily_rollups")
+@IdClass(MetricDailyRollup.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricDailyRollup {
+    
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RollupMetric metric;
+    
+    @Id
+    @Column(name = "bucket_date", nullable = false)
+    private LocalDate bucketDate;
+    
+    @Column(nullable = false)
+    private Long total;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        
+        private RollupMetric metric;
+        private LocalDate bucketDate;
+    }
+}
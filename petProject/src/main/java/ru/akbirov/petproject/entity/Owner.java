@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import ru.akbirov.petproject.util.PhoneUtils;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -33,6 +34,9 @@ public class Owner {
     @Column(nullable = false, unique = true)
     private String phone;
     
+    @Column(name = "phone_normalized", nullable = false, unique = true, length = 20)
+    private String phoneNormalized;
+    
     @Column(nullable = false)
     private String address;
     
@@ -43,6 +47,11 @@ public class Owner {
     @OneToMany(mappedBy = "owner", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Pet> pets;
     
+    // Поддерживается OwnerPetCountUpdater и миграцией, JPA колонку не пишет
+    @Column(name = "pet_count", nullable = false, insertable = false, updatable = false)
+    @Builder.Default
+    private Integer petCount = 0;
+    
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
@@ -53,11 +62,13 @@ public class Owner {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        phoneNormalized = PhoneUtils.normalize(phone);
     }
     
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        phoneNormalized = PhoneUtils.normalize(phone);
     }
 }
 
@@ -0,0 +1,7 @@
+package ru.akbirov.petproject.entity;
+
+public enum RollupMetric {
+    USERS_REGISTERED,
+    OWNERS_CREATED,
+    PETS_CREATED
+}
@@ -0,0 +1,34 @@
+package ru.akbirov.petproject.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Общий для всех узлов приложения скетч статистики (регистры HyperLogLog)
+ */
+@Entity
+@Table(name = "statistics_sketches")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatisticsSketch {
+    
+    @Id
+    @Column(length = 100)
+    private String name;
+    
+    @Column(nullable = false)
+    private byte[] registers;
+    
+    @Column(name = "rebuilt_at")
+    private LocalDateTime rebuiltAt; // время последнего точного перестроения из базовых таблиц
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
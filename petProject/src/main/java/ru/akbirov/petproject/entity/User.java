@@ -42,6 +42,11 @@ public class User {
     @Builder.Default
     private Boolean enabled = true;
     
+    // Версия состояния учетной записи в токене; увеличивается, чтобы отозвать выданные токены
+    @Column(name = "token_version", nullable = false)
+    @Builder.Default
+    private Integer tokenVersion = 0;
+    
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
@@ -0,0 +1,15 @@
+package ru.akbirov.petproject.event;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Access-токен отозван до истечения; в списке отзыва узла применяется после коммита записи
+ */
+@Value
+public class AccessTokenRevokedEvent {
+    
+    String tokenId;
+    LocalDateTime expiresAt;
+}
@@ -0,0 +1,15 @@
+package ru.akbirov.petproject.event;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Владелец удален вместе со всеми своими питомцами (каскадное удаление)
+ */
+@Value
+public class OwnerDeletedEvent {
+    
+    Long ownerId;
+    List<PetSnapshot> removedPets;
+}
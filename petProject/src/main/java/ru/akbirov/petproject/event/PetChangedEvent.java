@@ -0,0 +1,25 @@
+package ru.akbirov.petproject.event;
+
+import lombok.Value;
+
+/**
+ * Питомец создан (before = null), изменен или удален (after = null)
+ */
+@Value
+public class PetChangedEvent {
+    
+    PetSnapshot before;
+    PetSnapshot after;
+    
+    public static PetChangedEvent created(PetSnapshot pet) {
+        return new PetChangedEvent(null, pet);
+    }
+    
+    public static PetChangedEvent updated(PetSnapshot before, PetSnapshot after) {
+        return new PetChangedEvent(before, after);
+    }
+    
+    public static PetChangedEvent deleted(PetSnapshot pet) {
+        return new PetChangedEvent(pet, null);
+    }
+}
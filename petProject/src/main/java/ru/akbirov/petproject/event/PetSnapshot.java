@@ -0,0 +1,31 @@
+package ru.akbirov.petproject.event;
+
+import lombok.Value;
+import ru.akbirov.petproject.entity.Pet;
+import ru.akbirov.petproject.entity.PetType;
+
+import java.time.LocalDate;
+
+/**
+ * Неизменяемый снимок полей питомца, передаваемый в событиях после коммита транзакции
+ */
+@Value
+public class PetSnapshot {
+    
+    Long id;
+    PetType type;
+    String breed;
+    String color;
+    LocalDate dateOfBirth;
+    Long ownerId;
+    
+    public static PetSnapshot of(Pet pet) {
+        return new PetSnapshot(
+                pet.getId(),
+                pet.getType(),
+                pet.getBreed(),
+                pet.getColor(),
+                pet.getDateOfBirth(),
+                pet.getOwner() != null ? pet.getOwner().getId() : null);
+    }
+}
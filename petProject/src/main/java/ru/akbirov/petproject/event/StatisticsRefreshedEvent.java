@@ -0,0 +1,14 @@
+package ru.akbirov.petproject.event;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Снимок статистики пересчитан; публикуется в потоке, выполнившем обновление
+ */
+@Value
+public class StatisticsRefreshedEvent {
+    
+    Instant computedAt;
+}
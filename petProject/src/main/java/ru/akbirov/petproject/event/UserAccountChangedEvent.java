@@ -0,0 +1,13 @@
+package ru.akbirov.petproject.event;
+
+import lombok.Value;
+
+/**
+ * Изменились данные учетной записи, от которых зависит аутентификация: пароль, email, роли или блокировка
+ */
+@Value
+public class UserAccountChangedEvent {
+    
+    String username;
+    Long userId;
+}
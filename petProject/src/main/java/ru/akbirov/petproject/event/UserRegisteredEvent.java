@@ -0,0 +1,9 @@
+package ru.akbirov.petproject.event;
+
+import lombok.Value;
+
+@Value
+public class UserRegisteredEvent {
+    
+    Long userId;
+}
@@ -0,0 +1,8 @@
+package ru.akbirov.petproject.exception;
+
+public class InvalidRequestParameterException extends RuntimeException {
+    
+    public InvalidRequestParameterException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.akbirov.petproject.exception;
+
+import java.time.Duration;
+
+public class PasswordHashingBusyException extends RuntimeException {
+    
+    private final Duration retryAfter;
+    
+    public PasswordHashingBusyException(Duration retryAfter) {
+        super("Too many password checks in progress, please retry later");
+        this.retryAfter = retryAfter;
+    }
+    
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
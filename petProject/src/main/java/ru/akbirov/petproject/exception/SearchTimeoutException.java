@@ -0,0 +1,8 @@
+package ru.akbirov.petproject.exception;
+
+public class SearchTimeoutException extends RuntimeException {
+    
+    public SearchTimeoutException(String endpoint) {
+        super("Search request for " + endpoint + " took too long and was cancelled");
+    }
+}
@@ -0,0 +1,17 @@
+package ru.akbirov.petproject.exception;
+
+import java.time.Duration;
+
+public class TooManyRequestsException extends RuntimeException {
+    
+    private final Duration retryAfter;
+    
+    public TooManyRequestsException(Duration retryAfter) {
+        super("Too many attempts, please retry later");
+        this.retryAfter = retryAfter;
+    }
+    
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
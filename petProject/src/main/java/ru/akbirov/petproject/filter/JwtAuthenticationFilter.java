@@ -1,18 +1,26 @@
 package ru.akbirov.petproject.filter;
 
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
-import ru.akbirov.petproject.security.JwtService;
+import ru.akbirov.petproject.config.JwtProperties;
+import ru.akbirov.petproject.security.AuthenticatedUser;
+import ru.akbirov.petproject.security.OwnerIdCache;
+import ru.akbirov.petproject.security.TokenRevocationList;
+import ru.akbirov.petproject.security.UserStateCache;
+import ru.akbirov.petproject.security.VerifiedJwt;
+import ru.akbirov.petproject.security.VerifiedTokenCache;
 
 import java.io.IOException;
 
@@ -20,8 +28,12 @@ import java.io.IOException;
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
-    private final JwtService jwtService;
+    private final VerifiedTokenCache verifiedTokenCache;
     private final UserDetailsService userDetailsService;
+    private final UserStateCache userStateCache;
+    private final OwnerIdCache ownerIdCache;
+    private final TokenRevocationList tokenRevocationList;
+    private final JwtProperties jwtProperties;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -43,14 +55,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 return;
             }
             
-            logger.debug("Extracting username from JWT token");
-            final String username = jwtService.extractUsername(jwt);
+            // Подпись и срок действия проверяются за один разбор токена, повторно - берутся из кэша
+            logger.debug("Verifying JWT token");
+            final VerifiedJwt verifiedJwt = verifiedTokenCache.verify(jwt);
+            final String username = verifiedJwt.getUsername();
+            
+            // Отзыв (logout) проверяется по списку в памяти, без запроса к базе
+            if (tokenRevocationList.isRevoked(verifiedJwt.getTokenId())) {
+                logger.warn("JWT token has been revoked for user: " + username);
+                filterChain.doFilter(request, response);
+                return;
+            }
             
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                logger.debug("Loading user details for username: " + username);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = resolveUserDetails(verifiedJwt);
                 
-                if (jwtService.validateToken(jwt, userDetails)) {
+                if (userDetails != null && username.equals(userDetails.getUsername())) {
                     logger.debug("JWT token validated successfully for user: " + username);
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
@@ -68,11 +88,48 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             } else {
                 logger.debug("Authentication already exists in SecurityContext");
             }
+        } catch (JwtException e) {
+            logger.warn("JWT token rejected: " + e.getMessage());
         } catch (Exception e) {
             logger.error("Cannot set user authentication: " + e.getMessage(), e);
         }
         
         filterChain.doFilter(request, response);
     }
+    
+    /**
+     * В stateless-режиме пользователь собирается из claims токена, а блокировка и смена версии
+     * проверяются по кэшу состояний; старые токены без этих claims идут через UserDetailsService.
+     * Версия токена, если она есть, сверяется и на пути через UserDetailsService (jwt.stateless=false),
+     * иначе смена пароля не завершала бы уже выданные токены.
+     * В principal добавляется id владельца, чтобы сервисы не искали его по username.
+     */
+    private UserDetails resolveUserDetails(VerifiedJwt verifiedJwt) {
+        String username = verifiedJwt.getUsername();
+        if (!jwtProperties.isStateless() || !verifiedJwt.hasAccountState()) {
+            logger.debug("Loading user details for username: " + username);
+            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            if (userDetails instanceof AuthenticatedUser authenticatedUser) {
+                Long userId = verifiedJwt.getUserId() != null ? verifiedJwt.getUserId() : authenticatedUser.getUserId();
+                if (verifiedJwt.getTokenVersion() != null
+                        && !userStateCache.isCurrent(userId, verifiedJwt.getTokenVersion())) {
+                    logger.warn("JWT token is no longer valid for user: " + username);
+                    return null;
+                }
+                return authenticatedUser.withOwnerId(ownerIdCache.find(authenticatedUser.getUserId()));
+            }
+            return userDetails;
+        }
+        if (!userStateCache.isCurrent(verifiedJwt.getUserId(), verifiedJwt.getTokenVersion())) {
+            logger.warn("JWT token is no longer valid for user: " + username);
+            return null;
+        }
+        return new AuthenticatedUser(username, "", true,
+                verifiedJwt.getRoles().stream()
+                        .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+                        .toList(),
+                verifiedJwt.getUserId(),
+                ownerIdCache.find(verifiedJwt.getUserId()));
+    }
 }
 
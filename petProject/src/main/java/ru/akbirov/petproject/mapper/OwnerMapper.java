@@ -11,6 +11,8 @@ public interface OwnerMapper {
     
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "pets", ignore = true)
+    @Mapping(target = "phoneNormalized", ignore = true)
+    @Mapping(target = "petCount", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
     Owner toEntity(OwnerRequestDto dto);
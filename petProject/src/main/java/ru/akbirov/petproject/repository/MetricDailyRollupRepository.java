@@ -0,0 +1,40 @@
+package ru.akbirov.petproject.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.akbirov.petproject.entity.MetricDailyRollup;
+import ru.akbirov.petproject.repository.projection.TimeSeriesPointProjection;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface MetricDailyRollupRepository extends JpaRepository<MetricDailyRollup, MetricDailyRollup.Key> {
+    
+    /**
+     * Атомарно прибавляет delta к дневному значению метрики, создавая строку при необходимости
+     */
+    @Modifying
+    @Query(value = "INSERT INTO metric_daily_rollups (metric, bucket_date, total) " +
+            "VALUES (:metric, :bucketDate, :delta) " +
+            "ON CONFLICT (metric, bucket_date) DO UPDATE SET total = metric_daily_rollups.total + EXCLUDED.total",
+            nativeQuery = true)
+    void increment(@Param("metric") String metric, @Param("bucketDate") LocalDate bucketDate,
+                   @Param("delta") long delta);
+    
+    /**
+     * Суммы метрики по интервалам (day, week или month) из дневных строк в диапазоне [from, to]
+     */
+    @Query(value = "SELECT CAST(date_trunc(:granularity, bucket_date) AS DATE) AS bucket, SUM(total) AS total " +
+            "FROM metric_daily_rollups " +
+            "WHERE metric = :metric AND bucket_date BETWEEN :from AND :to " +
+            "GROUP BY 1 ORDER BY 1",
+            nativeQuery = true)
+    List<TimeSeriesPointProjection> sumByBucket(@Param("metric") String metric,
+                                                @Param("granularity") String granularity,
+                                                @Param("from") LocalDate from,
+                                                @Param("to") LocalDate to);
+}
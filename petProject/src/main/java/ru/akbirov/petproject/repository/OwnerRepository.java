@@ -1,10 +1,13 @@
 package ru.akbirov.petproject.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.akbirov.petproject.entity.Owner;
+import ru.akbirov.petproject.repository.projection.OwnerPetCountProjection;
 
 import java.util.List;
 import java.util.Optional;
@@ -18,6 +21,10 @@ public interface OwnerRepository extends JpaRepository<Owner, Long> {
     
     boolean existsByPhone(String phone);
     
+    boolean existsByPhoneNormalized(String phoneNormalized);
+    
+    List<Owner> findTop20ByPhoneNormalizedStartingWithOrderByPhoneNormalizedAsc(String phonePrefix);
+    
     @Query("SELECT o FROM Owner o WHERE " +
            "LOWER(o.firstName) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
            "OR LOWER(o.lastName) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
@@ -25,5 +32,23 @@ public interface OwnerRepository extends JpaRepository<Owner, Long> {
     List<Owner> search(@Param("searchTerm") String searchTerm);
     
     Optional<Owner> findByUserId(Long userId);
+    
+    @Query("SELECT o.id FROM Owner o WHERE o.user.id = :userId")
+    Optional<Long> findIdByUserId(@Param("userId") Long userId);
+    
+    /**
+     * Атомарно меняет счетчик питомцев владельца, конкурентные изменения не теряются
+     */
+    @Modifying
+    @Query(value = "UPDATE owners SET pet_count = pet_count + :delta WHERE id = :ownerId", nativeQuery = true)
+    int adjustPetCount(@Param("ownerId") Long ownerId, @Param("delta") int delta);
+    
+    /**
+     * Владельцы по убыванию числа питомцев, при равенстве по id.
+     * Читает первые строки индекса idx_owners_pet_count без GROUP BY по pets.
+     */
+    @Query("SELECT o.id AS id, o.firstName AS firstName, o.lastName AS lastName, o.petCount AS petCount " +
+           "FROM Owner o ORDER BY o.petCount DESC, o.id ASC")
+    List<OwnerPetCountProjection> findLeaderboard(Pageable pageable);
 }
 
@@ -1,19 +1,42 @@
 package ru.akbirov.petproject.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.akbirov.petproject.entity.Pet;
 import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.repository.projection.BreedCountProjection;
+import ru.akbirov.petproject.repository.projection.PetAgeCountProjection;
+import ru.akbirov.petproject.repository.projection.PetColumnProjection;
+import ru.akbirov.petproject.repository.projection.PetFacetProjection;
+import ru.akbirov.petproject.repository.projection.PetSketchProjection;
+import ru.akbirov.petproject.repository.projection.PetTypeCountProjection;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PetRepository extends JpaRepository<Pet, Long> {
     
     List<Pet> findByOwnerId(Long ownerId);
     
+    /**
+     * Питомцы владельца вместе с владельцем (для ownerName в ответе) одним запросом по индексу idx_pets_owner_id
+     */
+    @Query("SELECT p FROM Pet p JOIN FETCH p.owner o WHERE o.id = :ownerId")
+    List<Pet> findWithOwnerByOwnerId(@Param("ownerId") Long ownerId);
+    
+    /**
+     * Питомец вместе с владельцем: проверка владения и изменение используют одну загрузку
+     */
+    @Query("SELECT p FROM Pet p JOIN FETCH p.owner WHERE p.id = :id")
+    Optional<Pet> findWithOwnerById(@Param("id") Long id);
+    
     List<Pet> findByType(PetType type);
     
     List<Pet> findByOwnerIdAndType(Long ownerId, PetType type);
@@ -28,5 +51,59 @@ public interface PetRepository extends JpaRepository<Pet, Long> {
            "OR LOWER(o.firstName) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
            "OR LOWER(o.lastName) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
     List<Pet> search(@Param("searchTerm") String searchTerm);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT p.type AS type, p.breed AS breed, p.color AS color, p.dateOfBirth AS dateOfBirth " +
+           "FROM Pet p JOIN p.owner o WHERE " +
+           "LOWER(p.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
+           "OR LOWER(p.breed) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
+           "OR LOWER(o.firstName) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
+           "OR LOWER(o.lastName) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
+    Stream<PetFacetProjection> streamSearchFacets(@Param("searchTerm") String searchTerm);
+    
+    /**
+     * Все счетчики для статистики одним запросом: по строке на тип питомца,
+     * в каждой строке также общее число владельцев. Если питомцев нет, возвращается
+     * одна строка с type = NULL.
+     */
+    @Query(value = "SELECT o.total_owners AS totalOwners, p.type AS type, COUNT(p.id) AS petCount " +
+                   "FROM (SELECT COUNT(*) AS total_owners FROM owners) o " +
+                   "LEFT JOIN pets p ON TRUE " +
+                   "GROUP BY o.total_owners, p.type",
+           nativeQuery = true)
+    List<PetTypeCountProjection> countPetsByType();
+    
+    /**
+     * Точные top-N пород для каждого типа питомца; в каждой строке также число питомцев типа
+     * и число различных пород типа. Используется для периодического пересчета heavy hitters.
+     */
+    @Query(value = "SELECT type, breed, pet_count AS petCount, type_total AS typeTotal, " +
+                   "distinct_breeds AS distinctBreeds FROM (" +
+                   "SELECT type, breed, COUNT(*) AS pet_count, " +
+                   "SUM(COUNT(*)) OVER (PARTITION BY type) AS type_total, " +
+                   "COUNT(*) OVER (PARTITION BY type) AS distinct_breeds, " +
+                   "ROW_NUMBER() OVER (PARTITION BY type ORDER BY COUNT(*) DESC, breed) AS rn " +
+                   "FROM pets GROUP BY type, breed) ranked " +
+                   "WHERE rn <= :limit",
+           nativeQuery = true)
+    List<BreedCountProjection> topBreedsByType(@Param("limit") int limit);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT p.type AS type, p.breed AS breed, p.color AS color, p.owner.id AS ownerId FROM Pet p")
+    Stream<PetSketchProjection> streamSketchRows();
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT p.id AS id, p.type AS type, p.breed AS breed, p.color AS color, " +
+           "p.dateOfBirth AS dateOfBirth, p.owner.id AS ownerId FROM Pet p")
+    Stream<PetColumnProjection> streamColumnRows();
+    
+    /**
+     * Гистограмма возрастов в полных годах (как PetResponseDto.getAge()) по типам питомцев.
+     * Читает только индекс idx_pets_type_date_of_birth, строки питомцев в приложение не загружаются.
+     */
+    @Query(value = "SELECT type, GREATEST(0, CAST(date_part('year', age(CURRENT_DATE, date_of_birth)) AS INTEGER)) " +
+                   "AS ageYears, COUNT(*) AS petCount " +
+                   "FROM pets GROUP BY 1, 2 ORDER BY 1, 2",
+           nativeQuery = true)
+    List<PetAgeCountProjection> countByTypeAndAge();
 }
-
@@ -0,0 +1,30 @@
+package ru.akbirov.petproject.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.akbirov.petproject.entity.StatisticsSketch;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StatisticsSketchRepository extends JpaRepository<StatisticsSketch, String> {
+    
+    /**
+     * SELECT ... FOR UPDATE: узлы сливают свои изменения в скетчи по очереди
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM StatisticsSketch s WHERE s.name IN :names ORDER BY s.name")
+    List<StatisticsSketch> findAllForUpdate(@Param("names") Collection<String> names);
+    
+    @Modifying
+    @Query(value = "INSERT INTO statistics_sketches (name, registers) VALUES (:name, :registers) " +
+            "ON CONFLICT (name) DO NOTHING",
+            nativeQuery = true)
+    void insertIfAbsent(@Param("name") String name, @Param("registers") byte[] registers);
+}
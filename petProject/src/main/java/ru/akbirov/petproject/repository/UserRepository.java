@@ -1,9 +1,15 @@
 package ru.akbirov.petproject.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.akbirov.petproject.entity.User;
+import ru.akbirov.petproject.repository.projection.UserStateProjection;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,5 +22,38 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
     
     boolean existsByEmail(String email);
+    
+    @Query("SELECT u.id AS id, u.enabled AS enabled, u.tokenVersion AS tokenVersion FROM User u WHERE u.id = :id")
+    Optional<UserStateProjection> findStateById(@Param("id") Long id);
+    
+    @Query("SELECT u.id AS id, u.enabled AS enabled, u.tokenVersion AS tokenVersion FROM User u")
+    List<UserStateProjection> findAllStates();
+    
+    @Query("SELECT u.id AS id, u.enabled AS enabled, u.tokenVersion AS tokenVersion FROM User u " +
+           "WHERE u.updatedAt > :since")
+    List<UserStateProjection> findStatesUpdatedSince(@Param("since") LocalDateTime since);
+    
+    /**
+     * Текущий хеш пароля из базы, минуя уже загруженную в контекст сущность
+     */
+    @Query("SELECT u.password FROM User u WHERE u.id = :id")
+    Optional<String> findPasswordHashById(@Param("id") Long id);
+    
+    /**
+     * Заменяет хеш пароля, только если он не менялся с момента чтения; версия токенов сохраняется
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newHash, u.updatedAt = :now " +
+           "WHERE u.id = :id AND u.password = :currentHash")
+    int replacePasswordHash(@Param("id") Long id, @Param("currentHash") String currentHash,
+                            @Param("newHash") String newHash, @Param("now") LocalDateTime now);
+    
+    /**
+     * Меняет пароль и версию токенов, только если хеш не менялся с момента проверки текущего пароля
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newHash, u.tokenVersion = u.tokenVersion + 1, u.updatedAt = :now " +
+           "WHERE u.id = :id AND u.password = :currentHash")
+    int changePassword(@Param("id") Long id, @Param("currentHash") String currentHash,
+                       @Param("newHash") String newHash, @Param("now") LocalDateTime now);
 }
-
@@ -0,0 +1,17 @@
+package ru.akbirov.petproject.repository.projection;
+
+/**
+ * Число питомцев породы внутри типа вместе с итогами по типу
+ */
+public interface BreedCountProjection {
+    
+    String getType();
+    
+    String getBreed();
+    
+    Long getPetCount();
+    
+    Long getTypeTotal();
+    
+    Long getDistinctBreeds();
+}
@@ -0,0 +1,15 @@
+package ru.akbirov.petproject.repository.projection;
+
+/**
+ * Владелец и поддерживаемое число его питомцев
+ */
+public interface OwnerPetCountProjection {
+    
+    Long getId();
+    
+    String getFirstName();
+    
+    String getLastName();
+    
+    Integer getPetCount();
+}
@@ -0,0 +1,13 @@
+package ru.akbirov.petproject.repository.projection;
+
+/**
+ * Число питомцев одного типа с заданным возрастом в полных годах
+ */
+public interface PetAgeCountProjection {
+    
+    String getType();
+    
+    Integer getAgeYears();
+    
+    Long getPetCount();
+}
@@ -0,0 +1,23 @@
+package ru.akbirov.petproject.repository.projection;
+
+import ru.akbirov.petproject.entity.PetType;
+
+import java.time.LocalDate;
+
+/**
+ * Поля питомца, которые хранит колоночное хранилище для аналитики
+ */
+public interface PetColumnProjection {
+    
+    Long getId();
+    
+    PetType getType();
+    
+    String getBreed();
+    
+    String getColor();
+    
+    LocalDate getDateOfBirth();
+    
+    Long getOwnerId();
+}
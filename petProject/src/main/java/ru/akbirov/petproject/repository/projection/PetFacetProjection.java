@@ -0,0 +1,19 @@
+package ru.akbirov.petproject.repository.projection;
+
+import ru.akbirov.petproject.entity.PetType;
+
+import java.time.LocalDate;
+
+/**
+ * Минимальный набор колонок питомца, необходимый для подсчета фасетов поиска
+ */
+public interface PetFacetProjection {
+    
+    PetType getType();
+    
+    String getBreed();
+    
+    String getColor();
+    
+    LocalDate getDateOfBirth();
+}
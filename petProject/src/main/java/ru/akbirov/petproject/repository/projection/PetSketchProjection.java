@@ -0,0 +1,17 @@
+package ru.akbirov.petproject.repository.projection;
+
+import ru.akbirov.petproject.entity.PetType;
+
+/**
+ * Поля питомца, по которым строятся скетчи различных значений
+ */
+public interface PetSketchProjection {
+    
+    PetType getType();
+    
+    String getBreed();
+    
+    String getColor();
+    
+    Long getOwnerId();
+}
@@ -0,0 +1,13 @@
+package ru.akbirov.petproject.repository.projection;
+
+/**
+ * Строка агрегированной статистики: число питомцев одного типа и общее число владельцев
+ */
+public interface PetTypeCountProjection {
+    
+    Long getTotalOwners();
+    
+    String getType();
+    
+    Long getPetCount();
+}
@@ -0,0 +1,13 @@
+package ru.akbirov.petproject.repository.projection;
+
+import java.time.LocalDate;
+
+/**
+ * Сумма метрики за интервал, начинающийся с даты bucket
+ */
+public interface TimeSeriesPointProjection {
+    
+    LocalDate getBucket();
+    
+    Long getTotal();
+}
@@ -0,0 +1,13 @@
+package ru.akbirov.petproject.repository.projection;
+
+/**
+ * Состояние учетной записи, от которого зависит действительность выданных токенов
+ */
+public interface UserStateProjection {
+    
+    Long getId();
+    
+    Boolean getEnabled();
+    
+    Integer getTokenVersion();
+}
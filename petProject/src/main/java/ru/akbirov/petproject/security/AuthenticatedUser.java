@@ -0,0 +1,40 @@
+package ru.akbirov.petproject.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Principal аутентифицированного запроса: кроме имени и ролей несет id пользователя и id его владельца,
+ * чтобы сервисы не искали их заново по username.
+ */
+public class AuthenticatedUser extends User {
+
+    private final Long userId;
+
+    // null, если у пользователя нет профиля владельца
+    private final Long ownerId;
+
+    public AuthenticatedUser(String username, String password, boolean enabled,
+                             Collection<? extends GrantedAuthority> authorities, Long userId, Long ownerId) {
+        super(username, password, enabled, true, true, true, authorities);
+        this.userId = userId;
+        this.ownerId = ownerId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getOwnerId() {
+        return ownerId;
+    }
+
+    /**
+     * Копия с другим id владельца; пароль копируется, т.к. ProviderManager стирает его у исходного principal
+     */
+    public AuthenticatedUser withOwnerId(Long ownerId) {
+        return new AuthenticatedUser(getUsername(), getPassword(), isEnabled(), getAuthorities(), userId, ownerId);
+    }
+}
@@ -0,0 +1,71 @@
+package ru.akbirov.petproject.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Подбирает стоимость BCrypt под бюджет времени одного хеша на текущем железе.
+ *
+ * <p>Каждая единица стоимости удваивает работу, поэтому достаточно измерить хеш на минимальной
+ * стоимости и удваивать оценку, пока она укладывается в бюджет. Замер идет на свободном ядре
+ * при старте; под нагрузкой хеш медленнее, поэтому бюджет задается с запасом.
+ */
+public final class BcryptStrengthCalibrator {
+
+    // Допустимые значения log2(rounds) у BCrypt
+    private static final int MIN_STRENGTH = 4;
+    private static final int MAX_STRENGTH = 31;
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 3;
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+
+    private static final Logger logger = LoggerFactory.getLogger(BcryptStrengthCalibrator.class);
+
+    private BcryptStrengthCalibrator() {
+    }
+
+    /**
+     * @return наибольшая стоимость из [minStrength, maxStrength], у которой оценка времени хеша не больше target
+     */
+    public static int calibrate(Duration target, int minStrength, int maxStrength) {
+        return calibrate(target, minStrength, maxStrength, BcryptStrengthCalibrator::measureNanos);
+    }
+
+    static int calibrate(Duration target, int minStrength, int maxStrength, IntToLongFunction hashNanos) {
+        if (minStrength < MIN_STRENGTH || maxStrength > MAX_STRENGTH || minStrength > maxStrength) {
+            throw new IllegalArgumentException(
+                    "Invalid BCrypt strength range: " + minStrength + ".." + maxStrength);
+        }
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            hashNanos.applyAsLong(minStrength);
+        }
+        long[] samples = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            samples[i] = hashNanos.applyAsLong(minStrength);
+        }
+        Arrays.sort(samples);
+        long measured = samples[MEASURED_RUNS / 2];
+
+        int strength = minStrength;
+        long estimated = measured;
+        while (strength < maxStrength && estimated * 2 <= target.toNanos()) {
+            strength++;
+            estimated *= 2;
+        }
+        logger.info("BCrypt strength calibrated to {}: {} ms per hash at strength {}, ~{} ms estimated (target {} ms)",
+                strength, measured / 1_000_000, minStrength, estimated / 1_000_000, target.toMillis());
+        return strength;
+    }
+
+    private static long measureNanos(int strength) {
+        String salt = BCrypt.gensalt(strength);
+        long startedAt = System.nanoTime();
+        BCrypt.hashpw(SAMPLE_PASSWORD, salt);
+        return System.nanoTime() - startedAt;
+    }
+}
@@ -1,75 +1,120 @@
 package ru.akbirov.petproject.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import ru.akbirov.petproject.entity.Role;
+import ru.akbirov.petproject.entity.User;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 public class JwtService {
     
+    static final String USER_ID_CLAIM = "uid";
+    static final String ROLES_CLAIM = "roles";
+    static final String TOKEN_VERSION_CLAIM = "ver";
+    
     @Value("${jwt.secret:your-256-bit-secret-key-must-be-at-least-32-characters-long}")
     private String secret;
     
-    @Value("${jwt.expiration:86400000}") // 24 часа
+    @Value("${jwt.expiration:900000}") // 15 минут, дальше клиент обновляет токен через /api/auth/refresh
     private Long expiration;
     
+    // Ключ и парсер неизменяемы и потокобезопасны, поэтому создаются один раз при первом обращении.
+    // Гонка при инициализации безопасна: оба потока построят одинаковые объекты.
+    private volatile SecretKey signingKey;
+    private volatile JwtParser parser;
+    
     private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(java.nio.charset.StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+        SecretKey key = signingKey;
+        if (key == null) {
+            key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+            signingKey = key;
+        }
+        return key;
     }
     
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+    private JwtParser getParser() {
+        JwtParser jwtParser = parser;
+        if (jwtParser == null) {
+            jwtParser = Jwts.parser()
+                    .verifyWith(getSigningKey())
+                    .build();
+            parser = jwtParser;
+        }
+        return jwtParser;
     }
     
-    public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    /**
+     * Проверяет подпись и срок действия за один разбор токена.
+     *
+     * @throws JwtException если токен поврежден, подписан другим ключом или истек
+     */
+    public VerifiedJwt verify(String token) {
+        Claims claims = extractAllClaims(token);
+        return new VerifiedJwt(
+                claims.getSubject(),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                claims.getExpiration().toInstant(),
+                claims.getId(),
+                claims.get(USER_ID_CLAIM, Long.class),
+                extractRoles(claims),
+                claims.get(TOKEN_VERSION_CLAIM, Integer.class));
     }
     
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    private Set<String> extractRoles(Claims claims) {
+        Object roles = claims.get(ROLES_CLAIM);
+        if (!(roles instanceof Collection<?> values)) {
+            return null;
+        }
+        return values.stream()
+                .map(String::valueOf)
+                .collect(Collectors.toUnmodifiableSet());
     }
     
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
+        // Истекший токен парсер отклоняет сам (ExpiredJwtException)
+        return getParser()
                 .parseSignedClaims(token)
                 .getPayload();
     }
     
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-    
-    public String generateToken(UserDetails userDetails) {
+    /**
+     * Токен с id, ролями и версией учетной записи: фильтр аутентифицирует по нему без запроса к users
+     */
+    public String generateToken(User user) {
         Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, userDetails.getUsername());
+        claims.put(USER_ID_CLAIM, user.getId());
+        claims.put(ROLES_CLAIM, user.getRoles().stream()
+                .map(Role::name)
+                .sorted()
+                .toList());
+        claims.put(TOKEN_VERSION_CLAIM, user.getTokenVersion());
+        return createToken(claims, user.getUsername());
     }
     
     private String createToken(Map<String, Object> claims, String subject) {
         return Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
                 .signWith(getSigningKey())
                 .compact();
     }
-    
-    public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
-    }
 }
 
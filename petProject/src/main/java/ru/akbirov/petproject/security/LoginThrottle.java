@@ -0,0 +1,81 @@
+package ru.akbirov.petproject.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.akbirov.petproject.config.LoginThrottleProperties;
+import ru.akbirov.petproject.exception.TooManyRequestsException;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Ограничение частоты попыток входа и регистрации по IP клиента и по имени пользователя.
+ *
+ * <p>Проверяется до обращения к базе и BCrypt, поэтому отклоненная попытка почти ничего не стоит.
+ * Корзина IP проверяется первой: запросы с заблокированного адреса не расходуют попытки чужого логина.
+ */
+@Component
+public class LoginThrottle {
+    
+    static final String THROTTLED_METRIC = "auth.throttled";
+    
+    private static final Logger logger = LoggerFactory.getLogger(LoginThrottle.class);
+    
+    private final LoginThrottleProperties properties;
+    private final StripedTokenBuckets ipBuckets;
+    private final StripedTokenBuckets usernameBuckets;
+    private final Counter ipThrottled;
+    private final Counter usernameThrottled;
+    
+    public LoginThrottle(LoginThrottleProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.ipBuckets = buckets(properties.getPerIp());
+        this.usernameBuckets = buckets(properties.getPerUsername());
+        this.ipThrottled = Counter.builder(THROTTLED_METRIC).tag("key", "ip").register(meterRegistry);
+        this.usernameThrottled = Counter.builder(THROTTLED_METRIC).tag("key", "username").register(meterRegistry);
+        Gauge.builder("auth.throttle.buckets", this, throttle -> throttle.ipBuckets.size() + throttle.usernameBuckets.size())
+                .description("Login throttle buckets held in memory")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * @throws TooManyRequestsException если для IP или имени пользователя исчерпаны попытки
+     */
+    public void check(String clientIp, String username) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long waitNanos = ipBuckets.tryAcquire(clientIp, now);
+        if (waitNanos > 0) {
+            ipThrottled.increment();
+            logger.warn("Auth attempts throttled for ip={}", clientIp);
+            throw new TooManyRequestsException(Duration.ofNanos(waitNanos));
+        }
+        if (username != null) {
+            waitNanos = usernameBuckets.tryAcquire(username.toLowerCase(Locale.ROOT), now);
+            if (waitNanos > 0) {
+                usernameThrottled.increment();
+                logger.warn("Auth attempts throttled for username={}", username);
+                throw new TooManyRequestsException(Duration.ofNanos(waitNanos));
+            }
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "#{@loginThrottleProperties.sweepInterval.toMillis()}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        int evicted = ipBuckets.evictIdle(now) + usernameBuckets.evictIdle(now);
+        logger.debug("Login throttle sweep evicted {} idle buckets", evicted);
+    }
+    
+    private StripedTokenBuckets buckets(LoginThrottleProperties.Limit limit) {
+        return new StripedTokenBuckets(properties.getStripes(), properties.getMaxEntries(),
+                limit.getCapacity(), limit.getRefillInterval().toNanos());
+    }
+}
@@ -0,0 +1,57 @@
+package ru.akbirov.petproject.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.akbirov.petproject.config.JwtProperties;
+import ru.akbirov.petproject.event.OwnerDeletedEvent;
+import ru.akbirov.petproject.repository.OwnerRepository;
+
+/**
+ * id владельца по id пользователя для {@link AuthenticatedUser}.
+ *
+ * <p>Кэшируются только найденные владельцы: профиль владельца может появиться позже (при обновлении
+ * профиля), и отсутствие записи не должно прятать его до истечения срока. Связь пользователя
+ * с владельцем не меняется, поэтому запись сбрасывается только при удалении владельца.
+ */
+@Component
+public class OwnerIdCache {
+
+    static final String CACHE_NAME = "ownerIds";
+
+    private static final Logger logger = LoggerFactory.getLogger(OwnerIdCache.class);
+
+    private final OwnerRepository ownerRepository;
+    private final Cache<Long, Long> cache;
+
+    public OwnerIdCache(OwnerRepository ownerRepository, JwtProperties jwtProperties, MeterRegistry meterRegistry) {
+        this.ownerRepository = ownerRepository;
+        JwtProperties.OwnerIdCache settings = jwtProperties.getOwnerIdCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfterWrite(settings.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * @return id владельца или null, если у пользователя нет профиля владельца
+     */
+    public Long find(Long userId) {
+        return cache.get(userId, id -> ownerRepository.findIdByUserId(id).orElse(null));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOwnerDeleted(OwnerDeletedEvent event) {
+        // Событие не несет id пользователя; удаление владельца редкое, полный проход допустим
+        cache.asMap().values().removeIf(event.getOwnerId()::equals);
+        logger.debug("Owner id evicted from cache: {}", event.getOwnerId());
+    }
+}
@@ -0,0 +1,159 @@
+package ru.akbirov.petproject.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.akbirov.petproject.config.JwtProperties;
+import ru.akbirov.petproject.entity.RefreshToken;
+import ru.akbirov.petproject.repository.RefreshTokenRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Выдача и ротация refresh-токенов.
+ *
+ * <p>Каждый токен одноразовый: при обмене он гасится условным UPDATE, и выдается следующий токен
+ * той же цепочки. Предъявление уже погашенного токена означает, что токен украден, поэтому
+ * отзывается вся цепочка. Недавно выданные токены держатся в памяти, чтобы обмен не читал
+ * refresh_tokens; погашение и отзыв всегда выполняются в базе.
+ *
+ * <p>Методы работают в транзакции вызывающего кода.
+ */
+@Service
+public class RefreshTokenService {
+    
+    private static final int TOKEN_BYTES = 32;
+    
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+    
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final Duration refreshExpiration;
+    private final Cache<String, RefreshTokenGrant> hotTokens;
+    private final SecureRandom random = new SecureRandom();
+    
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, JwtProperties jwtProperties) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.refreshExpiration = Duration.ofMillis(jwtProperties.getRefreshExpiration());
+        this.hotTokens = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getRefreshTokenCache().getMaximumSize())
+                .expireAfterWrite(refreshExpiration)
+                .build();
+    }
+    
+    /**
+     * Первый токен новой цепочки (вход или регистрация)
+     */
+    public String issue(Long userId) {
+        return issue(userId, UUID.randomUUID().toString());
+    }
+    
+    /**
+     * Следующий токен цепочки после успешного {@link #consume}
+     */
+    public String issue(Long userId, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        String tokenHash = hash(token);
+        LocalDateTime expiresAt = LocalDateTime.now().plus(refreshExpiration);
+        
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(tokenHash)
+                .familyId(familyId)
+                .userId(userId)
+                .expiresAt(expiresAt)
+                .build());
+        hotTokens.put(tokenHash, new RefreshTokenGrant(userId, familyId, expiresAt));
+        return token;
+    }
+    
+    /**
+     * Гасит токен и возвращает, кому и в какой цепочке он был выдан.
+     * Вызывающая транзакция не должна откатываться на BadCredentialsException, иначе отзыв цепочки потеряется.
+     *
+     * @throws BadCredentialsException если токен неизвестен, истек или уже был использован
+     */
+    public RefreshTokenGrant consume(String token) {
+        String tokenHash = hash(token);
+        RefreshTokenGrant grant = hotTokens.getIfPresent(tokenHash);
+        if (grant == null) {
+            grant = refreshTokenRepository.findByTokenHash(tokenHash)
+                    .map(stored -> new RefreshTokenGrant(stored.getUserId(), stored.getFamilyId(), stored.getExpiresAt()))
+                    .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+        }
+        hotTokens.invalidate(tokenHash);
+        
+        if (grant.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new BadCredentialsException("Refresh token expired");
+        }
+        if (refreshTokenRepository.revoke(tokenHash) == 0) {
+            int revoked = refreshTokenRepository.revokeFamily(grant.getFamilyId());
+            logger.warn("Refresh token reuse detected for userId={}, family {} revoked ({} active tokens)",
+                    grant.getUserId(), grant.getFamilyId(), revoked);
+            throw new BadCredentialsException("Refresh token reuse detected");
+        }
+        return grant;
+    }
+    
+    /**
+     * Отзывает цепочку токена при выходе; неизвестный или уже отозванный токен игнорируется
+     */
+    public void revoke(String token) {
+        String tokenHash = hash(token);
+        hotTokens.invalidate(tokenHash);
+        refreshTokenRepository.findByTokenHash(tokenHash).ifPresent(stored -> {
+            int revoked = refreshTokenRepository.revokeFamily(stored.getFamilyId());
+            logger.debug("Refresh token family {} revoked on logout ({} active tokens)", stored.getFamilyId(), revoked);
+        });
+    }
+    
+    /**
+     * Отзывает все цепочки пользователя. Записи в памяти не сбрасываются: погашение в {@link #consume}
+     * все равно выполняется условным UPDATE и не пройдет для отозванного токена.
+     */
+    public void revokeAll(Long userId) {
+        int revoked = refreshTokenRepository.revokeAllByUserId(userId);
+        logger.info("Revoked {} refresh tokens for userId={}", revoked, userId);
+    }
+    
+    @Scheduled(fixedDelayString = "#{@jwtProperties.refreshTokenCleanupInterval.toMillis()}")
+    @Transactional
+    public void deleteExpired() {
+        int deleted = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            logger.info("Deleted {} expired refresh tokens", deleted);
+        }
+    }
+    
+    static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 обязан поддерживаться любой реализацией Java
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    @Value
+    public static class RefreshTokenGrant {
+        
+        Long userId;
+        String familyId;
+        LocalDateTime expiresAt;
+    }
+}
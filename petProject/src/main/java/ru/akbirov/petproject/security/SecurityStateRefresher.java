@@ -0,0 +1,58 @@
+package ru.akbirov.petproject.security;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import ru.akbirov.petproject.config.JwtProperties;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Обновляет список отзыва токенов и кэш состояния пользователей на собственном планировщике.
+ *
+ * <p>Интервалы этих обновлений - граница, за которую отзыв или смена пароля на другом узле
+ * начинает действовать, поэтому они не должны ждать пересборок статистики на общем планировщике
+ * {@code @Scheduled}. {@code @Scheduled(scheduler = ...)} для этого не подходит: в Spring 6.2.0
+ * обертка задачи теряет квалификатор, и задача все равно уходит на общий планировщик.
+ */
+@Component
+public class SecurityStateRefresher {
+    
+    private final TokenRevocationList tokenRevocationList;
+    private final UserStateCache userStateCache;
+    private final JwtProperties jwtProperties;
+    private final ThreadPoolTaskScheduler scheduler;
+    private final AtomicBoolean started = new AtomicBoolean();
+    
+    public SecurityStateRefresher(TokenRevocationList tokenRevocationList, UserStateCache userStateCache,
+                                  JwtProperties jwtProperties) {
+        this.tokenRevocationList = tokenRevocationList;
+        this.userStateCache = userStateCache;
+        this.jwtProperties = jwtProperties;
+        this.scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("security-refresh-");
+        scheduler.setDaemon(true);
+        scheduler.initialize();
+    }
+    
+    /**
+     * Как и задачи {@code @Scheduled}, стартует после инициализации контекста; ошибка одного запуска
+     * логируется и не отменяет следующие
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(tokenRevocationList::refresh, jwtProperties.getRevocation().getRefreshInterval());
+        scheduler.scheduleWithFixedDelay(userStateCache::refresh, jwtProperties.getUserStateRefreshInterval());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,123 @@
+package ru.akbirov.petproject.security;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Token bucket на каждый ключ (имя пользователя, IP), разложенные по независимым полосам.
+ *
+ * <p>Ключ попадает в полосу по хешу, и блокируется только его полоса, поэтому параллельные попытки
+ * входа с разных ключей почти не конкурируют. Каждая полоса - LRU-карта с ограниченным числом
+ * записей: при переполнении вытесняется самый давно использованный ключ, так что память ограничена
+ * при любом числе атакующих ключей. Корзина, простоявшая время полного наполнения, ничем не отличается
+ * от новой и удаляется при {@link #evictIdle}.
+ */
+class StripedTokenBuckets {
+    
+    private final Stripe[] stripes;
+    private final int capacity;
+    private final long nanosPerToken;
+    
+    StripedTokenBuckets(int stripeCount, int maxEntries, int capacity, long nanosPerToken) {
+        int stripesPowerOfTwo = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        int entriesPerStripe = Math.max(1, maxEntries / stripesPowerOfTwo);
+        this.stripes = new Stripe[stripesPowerOfTwo];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(entriesPerStripe);
+        }
+        this.capacity = capacity;
+        this.nanosPerToken = nanosPerToken;
+    }
+    
+    /**
+     * Забирает один токен из корзины ключа.
+     *
+     * @return 0, если попытка разрешена, иначе сколько наносекунд ждать следующего токена
+     */
+    long tryAcquire(String key, long nowNanos) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Bucket bucket = stripe.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, nowNanos);
+                stripe.put(key, bucket);
+            }
+            bucket.refill(nowNanos, capacity, nanosPerToken);
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) * nanosPerToken);
+        }
+    }
+    
+    /**
+     * Удаляет корзины, которые успели наполниться до конца
+     */
+    int evictIdle(long nowNanos) {
+        long fillNanos = capacity * nanosPerToken;
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Bucket> iterator = stripe.values().iterator();
+                while (iterator.hasNext()) {
+                    if (nowNanos - iterator.next().lastRefillNanos >= fillNanos) {
+                        iterator.remove();
+                        evicted++;
+                    }
+                }
+            }
+        }
+        return evicted;
+    }
+    
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+    
+    private Stripe stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+    
+    private static final class Stripe extends LinkedHashMap<String, Bucket> {
+        
+        private final int maxEntries;
+        
+        Stripe(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > maxEntries;
+        }
+    }
+    
+    private static final class Bucket {
+        
+        private double tokens;
+        private long lastRefillNanos;
+        
+        Bucket(int capacity, long nowNanos) {
+            this.tokens = capacity;
+            this.lastRefillNanos = nowNanos;
+        }
+        
+        void refill(long nowNanos, int capacity, long nanosPerToken) {
+            long elapsed = nowNanos - lastRefillNanos;
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + (double) elapsed / nanosPerToken);
+                lastRefillNanos = nowNanos;
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ru.akbirov.petproject.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.akbirov.petproject.config.JwtProperties;
+import ru.akbirov.petproject.entity.RevokedToken;
+import ru.akbirov.petproject.event.AccessTokenRevokedEvent;
+import ru.akbirov.petproject.repository.RevokedTokenRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отозванные до истечения access-токены (по jti) в памяти, чтобы фильтр проверял отзыв без запроса к базе.
+ *
+ * <p>Проверка сначала идет по фильтру Блума: для неотозванного токена (почти всех запросов) она
+ * заканчивается на нем, а редкие положительные ответы уточняются точным множеством. Список
+ * периодически дочитывает строки revoked_tokens, добавленные с прошлого обновления, поэтому
+ * отзыв на другом узле начинает действовать не позже чем через jwt.revocation.refresh-interval
+ * (обновление идет на отдельном планировщике и не ждет задач статистики);
+ * на узле, где токен отозван, он действует сразу после коммита записи. Строки хранятся, только пока токен не истек сам,
+ * поэтому список остается маленьким.
+ */
+@Component
+public class TokenRevocationList {
+
+    // Транзакция может закоммитить строку с revoked_at чуть раньше момента прошлого чтения
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final JwtProperties.Revocation settings;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // jti -> срок действия токена; фильтр пересобирается под теми же блокировками, что и добавление
+    private final Map<String, LocalDateTime> revoked = new ConcurrentHashMap<>();
+    private volatile BloomFilter bloomFilter;
+    private volatile LocalDateTime lastRefreshStartedAt;
+
+    public TokenRevocationList(RevokedTokenRepository revokedTokenRepository,
+                               JwtProperties jwtProperties,
+                               ApplicationEventPublisher eventPublisher,
+                               MeterRegistry meterRegistry) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.settings = jwtProperties.getRevocation();
+        this.eventPublisher = eventPublisher;
+        this.bloomFilter = newBloomFilter(0);
+        Gauge.builder("auth.revoked.tokens", revoked, Map::size)
+                .description("Revoked access tokens held in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * O(1) и без обращения к базе; токены без jti отозвать нельзя
+     */
+    public boolean isRevoked(String tokenId) {
+        return tokenId != null && bloomFilter.mightContain(tokenId) && revoked.containsKey(tokenId);
+    }
+
+    /**
+     * Записывает отзыв в транзакции вызывающего кода; на этом узле он применяется после коммита,
+     * чтобы откат не оставил в памяти отзыв, которого нет в базе
+     */
+    public void revoke(String tokenId, Long userId, Instant expiresAt) {
+        LocalDateTime expires = LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault());
+        revokedTokenRepository.insertIfAbsent(tokenId, userId, expires, LocalDateTime.now());
+        eventPublisher.publishEvent(new AccessTokenRevokedEvent(tokenId, expires));
+        logger.info("Access token revoked for userId={}", userId);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAccessTokenRevoked(AccessTokenRevokedEvent event) {
+        add(event.getTokenId(), event.getExpiresAt());
+    }
+
+    /**
+     * Запускается {@link SecurityStateRefresher} на отдельном планировщике
+     */
+    public void refresh() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime since = lastRefreshStartedAt;
+        List<RevokedToken> added = since == null
+                ? revokedTokenRepository.findByExpiresAtAfter(startedAt)
+                : revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(since.minus(REFRESH_OVERLAP), startedAt);
+        added.forEach(row -> add(row.getTokenId(), row.getExpiresAt()));
+        pruneExpired(startedAt);
+        lastRefreshStartedAt = startedAt;
+        logger.debug("Token revocation list refreshed: {} added, {} held", added.size(), revoked.size());
+    }
+
+    @Scheduled(fixedDelayString = "#{@jwtProperties.revocation.cleanupInterval.toMillis()}")
+    @Transactional
+    public void deleteExpired() {
+        int deleted = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            logger.info("Deleted {} expired revoked tokens", deleted);
+        }
+    }
+
+    private synchronized void add(String tokenId, LocalDateTime expiresAt) {
+        if (revoked.putIfAbsent(tokenId, expiresAt) == null) {
+            bloomFilter.add(tokenId);
+            if (bloomFilter.isSaturated()) {
+                rebuild();
+            }
+        }
+    }
+
+    /**
+     * Истекшие токены отклоняет сам парсер, поэтому их записи больше не нужны.
+     * Из фильтра Блума удалять нельзя: он пересобирается, когда удалена заметная часть записей.
+     */
+    private synchronized void pruneExpired(LocalDateTime now) {
+        int before = revoked.size();
+        revoked.values().removeIf(expiresAt -> expiresAt.isBefore(now));
+        int removed = before - revoked.size();
+        if (removed > 0 && removed >= before / 2) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        BloomFilter rebuilt = newBloomFilter(revoked.size());
+        revoked.keySet().forEach(rebuilt::add);
+        bloomFilter = rebuilt;
+        logger.debug("Token revocation bloom filter rebuilt for {} tokens (capacity {})",
+                revoked.size(), rebuilt.getExpectedInsertions());
+    }
+
+    private BloomFilter newBloomFilter(int size) {
+        // Запас вдвое, чтобы фильтр не пересобирался на каждом следующем отзыве
+        return new BloomFilter(Math.max(settings.getExpectedTokens(), size * 2), settings.getFalsePositiveRate());
+    }
+}
@@ -1,35 +1,75 @@
 package ru.akbirov.petproject.security;
 
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.akbirov.petproject.config.JwtProperties;
 import ru.akbirov.petproject.entity.User;
+import ru.akbirov.petproject.event.UserAccountChangedEvent;
 import ru.akbirov.petproject.repository.UserRepository;
 
 import java.util.Collection;
 import java.util.stream.Collectors;
 
+/**
+ * Загружает пользователя для аутентификации через ограниченный по размеру и времени жизни кэш.
+ *
+ * <p>Запись удаляется после коммита транзакции, опубликовавшей {@link UserAccountChangedEvent};
+ * изменения в обход сервисов видны не позже jwt.user-details-cache.expire-after-write.
+ */
 @Service
-@RequiredArgsConstructor
 public class UserDetailsServiceImpl implements UserDetailsService {
     
+    static final String CACHE_NAME = "userDetails";
+    
+    private static final Logger logger = LoggerFactory.getLogger(UserDetailsServiceImpl.class);
+    
     private final UserRepository userRepository;
+    private final Cache<String, AuthenticatedUser> cache;
+    
+    public UserDetailsServiceImpl(UserRepository userRepository, JwtProperties jwtProperties,
+                                  MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        JwtProperties.UserDetailsCache settings = jwtProperties.getUserDetailsCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfterWrite(settings.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
     
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        // Копия: ProviderManager стирает пароль у principal после аутентификации.
+        // id владельца здесь не известен, его добавляет JwtAuthenticationFilter.
+        AuthenticatedUser cached = cache.get(username, this::load);
+        return cached.withOwnerId(cached.getOwnerId());
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserAccountChanged(UserAccountChangedEvent event) {
+        cache.invalidate(event.getUsername());
+        logger.debug("User details evicted from cache: {}", event.getUsername());
+    }
+    
+    private AuthenticatedUser load(String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
         
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getUsername())
-                .password(user.getPassword())
-                .authorities(getAuthorities(user))
-                .disabled(!user.getEnabled())
-                .build();
+        return new AuthenticatedUser(user.getUsername(), user.getPassword(), user.getEnabled(),
+                getAuthorities(user), user.getId(), null);
     }
     
     private Collection<? extends GrantedAuthority> getAuthorities(User user) {
@@ -38,4 +78,3 @@ public class UserDetailsServiceImpl implements UserDetailsService {
                 .collect(Collectors.toList());
     }
 }
-
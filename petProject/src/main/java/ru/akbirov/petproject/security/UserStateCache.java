@@ -0,0 +1,133 @@
+package ru.akbirov.petproject.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.akbirov.petproject.config.JwtProperties;
+import ru.akbirov.petproject.event.UserAccountChangedEvent;
+import ru.akbirov.petproject.repository.UserRepository;
+import ru.akbirov.petproject.repository.projection.UserStateProjection;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Состояние учетных записей (enabled, tokenVersion) в памяти, чтобы проверять токены без запроса к базе.
+ *
+ * <p>Кэш периодически дочитывает строки users, измененные с прошлого обновления (по updated_at),
+ * поэтому токен заблокированного пользователя или токен с устаревшей версией перестает приниматься
+ * не позже чем через jwt.user-state-refresh-interval. Пользователь, которого еще нет в кэше
+ * (например, только что зарегистрированный на другом узле), читается из базы по id. Изменения,
+ * сделанные через сервисы этого узла (смена пароля), сбрасывают запись сразу после коммита.
+ *
+ * <p>Кэш ограничен по размеру. Удаление строки users не видно по updated_at, поэтому запись живет
+ * не дольше jwt.user-state-cache.expire-after-write и затем перечитывается. Отсутствие пользователя
+ * тоже кэшируется, но коротко, чтобы токены удаленного пользователя не читали базу на каждый запрос.
+ */
+@Component
+public class UserStateCache {
+
+    static final String CACHE_NAME = "userStates";
+
+    // Транзакция может закоммитить строку с updated_at чуть раньше момента прошлого чтения
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+    private static final UserState MISSING = new UserState(false, -1);
+
+    private static final Logger logger = LoggerFactory.getLogger(UserStateCache.class);
+
+    private final UserRepository userRepository;
+    private final Cache<Long, UserState> states;
+    private volatile LocalDateTime lastRefreshStartedAt;
+
+    public UserStateCache(UserRepository userRepository, JwtProperties jwtProperties, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        JwtProperties.UserStateCache settings = jwtProperties.getUserStateCache();
+        this.states = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfter(new ByPresence(settings.getExpireAfterWrite(), settings.getMissingExpireAfterWrite()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, states, CACHE_NAME);
+    }
+
+    /**
+     * Токен действителен, если учетная запись существует, не заблокирована и версия совпадает
+     */
+    public boolean isCurrent(Long userId, Integer tokenVersion) {
+        UserState state = states.get(userId, id -> userRepository.findStateById(id)
+                .map(UserStateCache::toState)
+                .orElse(MISSING));
+        return state.isEnabled() && state.getTokenVersion() == tokenVersion;
+    }
+
+    /**
+     * Запускается {@link SecurityStateRefresher} на отдельном планировщике
+     */
+    public void refresh() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime since = lastRefreshStartedAt;
+        List<UserStateProjection> changed = since == null
+                ? userRepository.findAllStates()
+                : userRepository.findStatesUpdatedSince(since.minus(REFRESH_OVERLAP));
+        changed.forEach(row -> states.put(row.getId(), toState(row)));
+        lastRefreshStartedAt = startedAt;
+        logger.debug("User state cache refreshed: {} changed, {} cached", changed.size(), states.estimatedSize());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserAccountChanged(UserAccountChangedEvent event) {
+        if (event.getUserId() != null) {
+            states.invalidate(event.getUserId());
+            logger.debug("User state evicted from cache: {}", event.getUserId());
+        }
+    }
+
+    private static UserState toState(UserStateProjection row) {
+        return new UserState(row.getEnabled(), row.getTokenVersion());
+    }
+
+    @Value
+    private static class UserState {
+
+        boolean enabled;
+        int tokenVersion;
+    }
+
+    /**
+     * Найденные пользователи живут дольше, отсутствующие — коротко
+     */
+    private static class ByPresence implements Expiry<Long, UserState> {
+
+        private final long presentNanos;
+        private final long missingNanos;
+
+        ByPresence(Duration present, Duration missing) {
+            this.presentNanos = present.toNanos();
+            this.missingNanos = missing.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(Long key, UserState value, long currentTime) {
+            return value == MISSING ? missingNanos : presentNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(Long key, UserState value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long key, UserState value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
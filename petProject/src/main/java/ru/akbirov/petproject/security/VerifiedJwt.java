@@ -0,0 +1,32 @@
+package ru.akbirov.petproject.security;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Токен с проверенной подписью и сроком действия; все нужные запросу claims разобраны один раз
+ */
+@Value
+public class VerifiedJwt {
+    
+    String username;
+    Instant issuedAt;
+    Instant expiresAt;
+    
+    // jti: по нему токен отзывается до истечения; null у токенов, выданных без него
+    String tokenId;
+    
+    // Состояние учетной записи на момент выдачи; null у токенов, выданных без него
+    Long userId;
+    Set<String> roles;
+    Integer tokenVersion;
+    
+    /**
+     * Можно ли аутентифицировать запрос по claims без загрузки пользователя
+     */
+    public boolean hasAccountState() {
+        return userId != null && roles != null && tokenVersion != null;
+    }
+}
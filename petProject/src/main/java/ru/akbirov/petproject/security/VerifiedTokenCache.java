@@ -0,0 +1,78 @@
+package ru.akbirov.petproject.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import ru.akbirov.petproject.config.JwtProperties;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Уже проверенные токены: повторный запрос с тем же токеном не декодирует base64, не разбирает JSON
+ * и не считает HMAC.
+ *
+ * <p>Ключ - SHA-256 токена, чтобы сами токены не хранились в памяти. Запись живет не дольше срока
+ * действия токена, поэтому из кэша никогда не выдается истекший токен. Невалидные токены не кэшируются.
+ */
+@Component
+public class VerifiedTokenCache {
+    
+    static final String CACHE_NAME = "verifiedTokens";
+    
+    private final JwtService jwtService;
+    private final Cache<ByteBuffer, VerifiedJwt> cache;
+    
+    public VerifiedTokenCache(JwtService jwtService, JwtProperties jwtProperties, MeterRegistry meterRegistry) {
+        this.jwtService = jwtService;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getTokenCache().getMaximumSize())
+                .expireAfter(new UntilTokenExpires())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+    
+    /**
+     * @throws JwtException если токен поврежден, подписан другим ключом или истек
+     */
+    public VerifiedJwt verify(String token) {
+        return cache.get(digest(token), key -> jwtService.verify(token));
+    }
+    
+    private static ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 обязан поддерживаться любой реализацией Java
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    private static class UntilTokenExpires implements Expiry<ByteBuffer, VerifiedJwt> {
+        
+        @Override
+        public long expireAfterCreate(ByteBuffer key, VerifiedJwt value, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), value.getExpiresAt()).toNanos());
+        }
+        
+        @Override
+        public long expireAfterUpdate(ByteBuffer key, VerifiedJwt value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+        
+        @Override
+        public long expireAfterRead(ByteBuffer key, VerifiedJwt value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package ru.akbirov.petproject.service;
 
 import ru.akbirov.petproject.dto.AuthResponseDto;
 import ru.akbirov.petproject.dto.LoginDto;
+import ru.akbirov.petproject.dto.RefreshTokenRequestDto;
 import ru.akbirov.petproject.dto.RegisterDto;
 
 public interface AuthService {
@@ -9,5 +10,12 @@ public interface AuthService {
     AuthResponseDto register(RegisterDto registerDto);
     
     AuthResponseDto login(LoginDto loginDto);
+    
+    AuthResponseDto refresh(RefreshTokenRequestDto refreshTokenRequestDto);
+    
+    /**
+     * Отзывает access-токен и цепочку refresh-токена; любой из них может быть null
+     */
+    void logout(String accessToken, String refreshToken);
 }
 
@@ -1,5 +1,6 @@
 package ru.akbirov.petproject.service;
 
+import ru.akbirov.petproject.dto.OwnerLeaderboardEntryDto;
 import ru.akbirov.petproject.dto.OwnerRequestDto;
 import ru.akbirov.petproject.dto.OwnerResponseDto;
 import ru.akbirov.petproject.dto.PetResponseDto;
@@ -21,4 +22,8 @@ public interface OwnerService {
     List<PetResponseDto> getOwnerPets(Long ownerId);
     
     List<OwnerResponseDto> search(String searchTerm);
+    
+    List<OwnerResponseDto> findByPhonePrefix(String phonePrefix);
+    
+    List<OwnerLeaderboardEntryDto> getLeaderboard(int limit);
 }
@@ -2,6 +2,7 @@ package ru.akbirov.petproject.service;
 
 import ru.akbirov.petproject.dto.PetRequestDto;
 import ru.akbirov.petproject.dto.PetResponseDto;
+import ru.akbirov.petproject.dto.PetSearchFacetsDto;
 import ru.akbirov.petproject.entity.PetType;
 
 import java.util.List;
@@ -20,11 +21,21 @@ public interface PetService {
     
     PetResponseDto updatePet(Long id, PetRequestDto requestDto);
     
+    /**
+     * Обновляет питомца, только если он принадлежит владельцу ownerId
+     */
+    PetResponseDto updateOwnPet(Long id, Long ownerId, PetRequestDto requestDto);
+    
     void deletePet(Long id);
     
+    /**
+     * Удаляет питомца, только если он принадлежит владельцу ownerId
+     */
+    void deleteOwnPet(Long id, Long ownerId);
+    
     List<PetResponseDto> search(String searchTerm);
     
-    List<PetResponseDto> getMyPets(String username);
+    PetSearchFacetsDto searchFacets(String searchTerm, int topBreedsLimit);
     
-    boolean isPetOwner(Long petId, String username);
+    List<PetResponseDto> getMyPets(Long ownerId);
 }
@@ -1,8 +1,28 @@
 package ru.akbirov.petproject.service;
 
+import ru.akbirov.petproject.dto.AgeDistributionDto;
+import ru.akbirov.petproject.dto.PetAnalyticsDto;
 import ru.akbirov.petproject.dto.StatisticsDto;
+import ru.akbirov.petproject.dto.TimeSeriesDto;
+import ru.akbirov.petproject.dto.TopBreedsDto;
+import ru.akbirov.petproject.entity.RollupMetric;
+import ru.akbirov.petproject.statistics.AnalyticsDimension;
+import ru.akbirov.petproject.statistics.PetAnalyticsFilter;
+import ru.akbirov.petproject.statistics.TimeGranularity;
+
+import java.time.LocalDate;
 
 public interface StatisticsService {
     
     StatisticsDto getStatistics();
+    
+    StatisticsDto refreshStatistics();
+    
+    TopBreedsDto getTopBreeds(int limit);
+    
+    AgeDistributionDto getAgeDistribution();
+    
+    TimeSeriesDto getTimeSeries(RollupMetric metric, TimeGranularity granularity, LocalDate from, LocalDate to);
+    
+    PetAnalyticsDto analyzePets(AnalyticsDimension groupBy, PetAnalyticsFilter filter, int limit);
 }
@@ -5,10 +5,10 @@ import ru.akbirov.petproject.dto.UpdateProfileDto;
 
 public interface UserService {
     
-    UserProfileDto getCurrentUserProfile(String username);
+    UserProfileDto getCurrentUserProfile(Long userId, Long ownerId);
     
-    UserProfileDto updateUserProfile(String username, UpdateProfileDto updateDto);
+    UserProfileDto updateUserProfile(Long userId, Long ownerId, UpdateProfileDto updateDto);
     
-    void changePassword(String username, String currentPassword, String newPassword);
+    void changePassword(Long userId, String currentPassword, String newPassword);
 }
 
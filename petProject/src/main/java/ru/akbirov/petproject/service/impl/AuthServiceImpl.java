@@ -1,68 +1,174 @@
 package ru.akbirov.petproject.service.impl;
 
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.akbirov.petproject.dto.AuthResponseDto;
 import ru.akbirov.petproject.dto.LoginDto;
+import ru.akbirov.petproject.dto.RefreshTokenRequestDto;
 import ru.akbirov.petproject.dto.RegisterDto;
 import ru.akbirov.petproject.entity.Owner;
 import ru.akbirov.petproject.entity.Role;
 import ru.akbirov.petproject.entity.User;
+import ru.akbirov.petproject.event.OwnerCreatedEvent;
+import ru.akbirov.petproject.event.UserRegisteredEvent;
 import ru.akbirov.petproject.exception.EmailAlreadyExistsException;
+import ru.akbirov.petproject.exception.PhoneAlreadyExistsException;
+import ru.akbirov.petproject.exception.UsernameAlreadyExistsException;
 import ru.akbirov.petproject.repository.OwnerRepository;
 import ru.akbirov.petproject.repository.UserRepository;
 import ru.akbirov.petproject.security.JwtService;
+import ru.akbirov.petproject.security.RefreshTokenService;
+import ru.akbirov.petproject.security.RefreshTokenService.RefreshTokenGrant;
+import ru.akbirov.petproject.security.TokenRevocationList;
+import ru.akbirov.petproject.security.VerifiedJwt;
 import ru.akbirov.petproject.service.AuthService;
 import ru.akbirov.petproject.util.RoleUtils;
 
+import java.time.LocalDateTime;
 import java.util.stream.Collectors;
 
+/**
+ * Регистрация, вход и выход.
+ *
+ * <p>Хеширование и проверка пароля выполняются вне транзакции: вызов может ждать в очереди
+ * ограниченного кодировщика, и соединение из пула при этом не должно быть занято. Запись идет
+ * отдельной короткой транзакцией после хеширования.
+ */
 @Service
 @RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
     
+    private static final String PASSWORD_UPGRADE_METRIC = "auth.password.upgrades";
+    
     private static final Logger logger = LoggerFactory.getLogger(AuthServiceImpl.class);
     private final UserRepository userRepository;
     private final OwnerRepository ownerRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
-    private final UserDetailsService userDetailsService;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationList tokenRevocationList;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
     
     @Override
-    @Transactional
     public AuthResponseDto register(RegisterDto registerDto) {
         logger.info("Registration attempt for username: {}", registerDto.getUsername());
+        String passwordHash = passwordEncoder.encode(registerDto.getPassword());
+        return transactionTemplate.execute(status -> createUser(registerDto, passwordHash));
+    }
+    
+    @Override
+    public AuthResponseDto login(LoginDto loginDto) {
+        logger.info("Login attempt for username: {}", loginDto.getUsername());
         
-        // Проверяем, не существует ли уже пользователь с таким username
-        if (userRepository.existsByUsername(registerDto.getUsername())) {
-            logger.warn("Username already exists: {}", registerDto.getUsername());
-            throw new ru.akbirov.petproject.exception.UsernameAlreadyExistsException(registerDto.getUsername());
+        User user = userRepository.findByUsername(loginDto.getUsername())
+                .orElseThrow(() -> {
+                    logger.warn("User not found with username: {}", loginDto.getUsername());
+                    return new org.springframework.security.authentication.BadCredentialsException("Invalid username or password");
+                });
+        
+        // Проверяем пароль
+        if (!passwordEncoder.matches(loginDto.getPassword(), user.getPassword())) {
+            logger.warn("Invalid password for username: {}", loginDto.getUsername());
+            throw new org.springframework.security.authentication.BadCredentialsException("Invalid username or password");
         }
         
-        // Проверяем, не существует ли уже пользователь с таким email
-        if (userRepository.existsByEmail(registerDto.getEmail())) {
-            logger.warn("Email already exists: {}", registerDto.getEmail());
-            throw new EmailAlreadyExistsException(registerDto.getEmail());
+        // Проверяем, активен ли пользователь
+        if (!user.getEnabled()) {
+            logger.warn("User account is disabled: {}", loginDto.getUsername());
+            throw new org.springframework.security.authentication.BadCredentialsException("User account is disabled");
+        }
+        
+        // Хеш, созданный с меньшей стоимостью, чем выбрана для этого железа, обновляется прозрачно:
+        // открытый пароль есть только здесь. Версия токенов не меняется, сессии остаются действительными.
+        // Замена условная: если хеш успели сменить параллельно, новый хеш не перетирает его.
+        String upgradedHash = passwordEncoder.upgradeEncoding(user.getPassword())
+                ? passwordEncoder.encode(loginDto.getPassword())
+                : null;
+        
+        if (upgradedHash != null) {
+            Boolean upgraded = transactionTemplate.execute(status -> userRepository.replacePasswordHash(
+                    user.getId(), user.getPassword(), upgradedHash, LocalDateTime.now()) > 0);
+            // Считаются только записанные хеши: проигравшая гонку замена не в счет
+            if (Boolean.TRUE.equals(upgraded)) {
+                Counter.builder(PASSWORD_UPGRADE_METRIC)
+                        .description("Password hashes re-encoded at the current strength on login")
+                        .register(meterRegistry)
+                        .increment();
+                logger.info("Password hash upgraded for username: {}", user.getUsername());
+            }
         }
         
-        // Создаем нового пользователя
+        // Генерируем JWT токен и первый refresh-токен сессии
+        String refreshToken = refreshTokenService.issue(user.getId());
+        
+        logger.info("User logged in successfully: username={}, email={}", user.getUsername(), user.getEmail());
+        return buildResponse(user, refreshToken);
+    }
+    
+    @Override
+    @Transactional(noRollbackFor = BadCredentialsException.class) // отзыв цепочки при повторном использовании должен сохраниться
+    public AuthResponseDto refresh(RefreshTokenRequestDto refreshTokenRequestDto) {
+        RefreshTokenGrant grant = refreshTokenService.consume(refreshTokenRequestDto.getRefreshToken());
+        
+        User user = userRepository.findById(grant.getUserId())
+                .filter(User::getEnabled)
+                .orElseThrow(() -> {
+                    logger.warn("Refresh rejected, user missing or disabled: id={}", grant.getUserId());
+                    return new BadCredentialsException("User account is disabled");
+                });
+        
+        return buildResponse(user, refreshTokenService.issue(user.getId(), grant.getFamilyId()));
+    }
+    
+    @Override
+    @Transactional
+    public void logout(String accessToken, String refreshToken) {
+        if (accessToken != null) {
+            try {
+                VerifiedJwt verifiedJwt = jwtService.verify(accessToken);
+                // Токены без jti выдавались до появления отзыва; они истекут сами
+                if (verifiedJwt.getTokenId() != null && verifiedJwt.getUserId() != null) {
+                    tokenRevocationList.revoke(verifiedJwt.getTokenId(), verifiedJwt.getUserId(),
+                            verifiedJwt.getExpiresAt());
+                }
+                logger.info("User logged out: {}", verifiedJwt.getUsername());
+            } catch (JwtException e) {
+                // Истекший или поддельный токен и так не принимается
+                logger.debug("Logout with invalid access token: {}", e.getMessage());
+            }
+        }
+        if (refreshToken != null) {
+            refreshTokenService.revoke(refreshToken);
+        }
+    }
+    
+    private AuthResponseDto createUser(RegisterDto registerDto, String passwordHash) {
+        // Занятость username, email и телефона не проверяется заранее: это делают уникальные ограничения
+        // users и owners, и нарушение переводится в те же исключения, что и раньше. Так нет двух
+        // лишних запросов и гонки между проверкой и вставкой при одновременной регистрации.
         User user = User.builder()
                 .username(registerDto.getUsername())
                 .email(registerDto.getEmail())
-                .password(passwordEncoder.encode(registerDto.getPassword()))
+                .password(passwordHash)
                 .enabled(true)
                 .build();
         
         user.getRoles().add(Role.USER);
         
-        User savedUser = userRepository.save(user);
-        
         // Создаем Owner автоматически при регистрации
         Owner owner = Owner.builder()
                 .firstName(registerDto.getFirstName())
@@ -70,59 +176,51 @@ public class AuthServiceImpl implements AuthService {
                 .email(registerDto.getEmail())
                 .phone(registerDto.getPhone())
                 .address("") // Адрес можно будет обновить позже
-                .user(savedUser)
+                .user(user)
                 .build();
         
-        ownerRepository.save(owner);
+        User savedUser;
+        try {
+            savedUser = userRepository.save(user);
+            ownerRepository.save(owner);
+        } catch (DataIntegrityViolationException e) {
+            throw translateUniqueViolation(e, registerDto);
+        }
+        eventPublisher.publishEvent(new UserRegisteredEvent(savedUser.getId()));
+        eventPublisher.publishEvent(new OwnerCreatedEvent(owner.getId()));
         
         logger.info("User registered successfully: username={}, email={}, id={}, ownerId={}", 
                 savedUser.getUsername(), savedUser.getEmail(), savedUser.getId(), owner.getId());
         
-        // Генерируем JWT токен
-        UserDetails userDetails = userDetailsService.loadUserByUsername(savedUser.getUsername());
-        String token = jwtService.generateToken(userDetails);
-        
-        return AuthResponseDto.builder()
-                .token(token)
-                .username(savedUser.getUsername())
-                .email(savedUser.getEmail())
-                .roles(savedUser.getRoles().stream()
-                        .map(role -> RoleUtils.removeRolePrefix("ROLE_" + role.name()))
-                        .collect(Collectors.toSet()))
-                .build();
+        // Генерируем JWT токен и первый refresh-токен сессии
+        return buildResponse(savedUser, refreshTokenService.issue(savedUser.getId()));
     }
     
-    @Override
-    @Transactional(readOnly = true)
-    public AuthResponseDto login(LoginDto loginDto) {
-        logger.info("Login attempt for username: {}", loginDto.getUsername());
-        
-        User user = userRepository.findByUsername(loginDto.getUsername())
-                .orElseThrow(() -> {
-                    logger.warn("User not found with username: {}", loginDto.getUsername());
-                    return new org.springframework.security.authentication.BadCredentialsException("Invalid username or password");
-                });
-        
-        // Проверяем пароль
-        if (!passwordEncoder.matches(loginDto.getPassword(), user.getPassword())) {
-            logger.warn("Invalid password for username: {}", loginDto.getUsername());
-            throw new org.springframework.security.authentication.BadCredentialsException("Invalid username or password");
+    private RuntimeException translateUniqueViolation(DataIntegrityViolationException e, RegisterDto registerDto) {
+        String constraint = e.getCause() instanceof ConstraintViolationException violation
+                ? violation.getConstraintName() : null;
+        if (constraint == null) {
+            return e;
         }
-        
-        // Проверяем, активен ли пользователь
-        if (!user.getEnabled()) {
-            logger.warn("User account is disabled: {}", loginDto.getUsername());
-            throw new org.springframework.security.authentication.BadCredentialsException("User account is disabled");
+        if (constraint.contains("username")) {
+            logger.warn("Username already exists: {}", registerDto.getUsername());
+            return new UsernameAlreadyExistsException(registerDto.getUsername());
         }
-        
-        logger.info("User logged in successfully: username={}, email={}", user.getUsername(), user.getEmail());
-        
-        // Генерируем JWT токен
-        UserDetails userDetails = userDetailsService.loadUserByUsername(user.getUsername());
-        String token = jwtService.generateToken(userDetails);
-        
+        if (constraint.contains("email")) {
+            logger.warn("Email already exists: {}", registerDto.getEmail());
+            return new EmailAlreadyExistsException(registerDto.getEmail());
+        }
+        if (constraint.contains("phone")) {
+            logger.warn("Phone already exists: {}", registerDto.getPhone());
+            return new PhoneAlreadyExistsException(registerDto.getPhone());
+        }
+        return e;
+    }
+    
+    private AuthResponseDto buildResponse(User user, String refreshToken) {
         return AuthResponseDto.builder()
-                .token(token)
+                .token(jwtService.generateToken(user))
+                .refreshToken(refreshToken)
                 .username(user.getUsername())
                 .email(user.getEmail())
                 .roles(user.getRoles().stream()
@@ -3,19 +3,30 @@ package ru.akbirov.petproject.service.impl;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.akbirov.petproject.dto.OwnerLeaderboardEntryDto;
 import ru.akbirov.petproject.dto.OwnerRequestDto;
 import ru.akbirov.petproject.dto.OwnerResponseDto;
 import ru.akbirov.petproject.dto.PetResponseDto;
 import ru.akbirov.petproject.entity.Owner;
+import ru.akbirov.petproject.event.OwnerCreatedEvent;
+import ru.akbirov.petproject.event.OwnerDeletedEvent;
+import ru.akbirov.petproject.event.PetSnapshot;
 import ru.akbirov.petproject.exception.EmailAlreadyExistsException;
+import ru.akbirov.petproject.exception.InvalidRequestParameterException;
 import ru.akbirov.petproject.exception.OwnerNotFoundException;
+import ru.akbirov.petproject.exception.PhoneAlreadyExistsException;
 import ru.akbirov.petproject.mapper.OwnerMapper;
 import ru.akbirov.petproject.mapper.PetMapper;
 import ru.akbirov.petproject.repository.OwnerRepository;
+import ru.akbirov.petproject.repository.projection.OwnerPetCountProjection;
 import ru.akbirov.petproject.service.OwnerService;
+import ru.akbirov.petproject.util.PhoneUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -24,9 +35,11 @@ import java.util.stream.Collectors;
 public class OwnerServiceImpl implements OwnerService {
     
     private static final Logger logger = LoggerFactory.getLogger(OwnerServiceImpl.class);
+    private static final int MAX_LEADERBOARD_SIZE = 100;
     private final OwnerRepository ownerRepository;
     private final OwnerMapper ownerMapper;
     private final PetMapper petMapper;
+    private final ApplicationEventPublisher eventPublisher;
     
     @Override
     @Transactional
@@ -37,9 +50,14 @@ public class OwnerServiceImpl implements OwnerService {
             logger.warn("Email already exists: {}", requestDto.getEmail());
             throw new EmailAlreadyExistsException(requestDto.getEmail());
         }
+        if (ownerRepository.existsByPhoneNormalized(PhoneUtils.normalize(requestDto.getPhone()))) {
+            logger.warn("Phone already exists: {}", requestDto.getPhone());
+            throw new PhoneAlreadyExistsException(requestDto.getPhone());
+        }
         
         Owner owner = ownerMapper.toEntity(requestDto);
         Owner savedOwner = ownerRepository.save(owner);
+        eventPublisher.publishEvent(new OwnerCreatedEvent(savedOwner.getId()));
         logger.info("Owner created successfully with ID: {}, email: {}", 
                 savedOwner.getId(), savedOwner.getEmail());
         return ownerMapper.toResponseDto(savedOwner);
@@ -101,6 +119,13 @@ public class OwnerServiceImpl implements OwnerService {
             throw new EmailAlreadyExistsException(requestDto.getEmail());
         }
         
+        String phoneNormalized = PhoneUtils.normalize(requestDto.getPhone());
+        if (!phoneNormalized.equals(PhoneUtils.normalize(owner.getPhone()))
+                && ownerRepository.existsByPhoneNormalized(phoneNormalized)) {
+            logger.warn("Phone already exists: {}", requestDto.getPhone());
+            throw new PhoneAlreadyExistsException(requestDto.getPhone());
+        }
+        
         owner.setFirstName(requestDto.getFirstName());
         owner.setLastName(requestDto.getLastName());
         owner.setEmail(requestDto.getEmail());
@@ -123,11 +148,17 @@ public class OwnerServiceImpl implements OwnerService {
     @Transactional
     public void deleteOwner(Long id) {
         logger.debug("Deleting owner with ID: {}", id);
-        if (!ownerRepository.existsById(id)) {
-            logger.warn("Owner not found with ID: {}", id);
-            throw new OwnerNotFoundException(id);
-        }
-        ownerRepository.deleteById(id);
+        Owner owner = ownerRepository.findById(id)
+                .orElseThrow(() -> {
+                    logger.warn("Owner not found with ID: {}", id);
+                    return new OwnerNotFoundException(id);
+                });
+        // Питомцы удаляются каскадно, их снимки нужны подписчикам событий
+        List<PetSnapshot> removedPets = owner.getPets() == null ? List.of() : owner.getPets().stream()
+                .map(PetSnapshot::of)
+                .collect(Collectors.toList());
+        ownerRepository.delete(owner);
+        eventPublisher.publishEvent(new OwnerDeletedEvent(id, removedPets));
         logger.info("Owner deleted successfully with ID: {}", id);
     }
     
@@ -165,5 +196,41 @@ public class OwnerServiceImpl implements OwnerService {
         logger.debug("Found {} owners matching search term: {}", owners.size(), searchTerm);
         return owners;
     }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public List<OwnerResponseDto> findByPhonePrefix(String phonePrefix) {
+        String prefix = PhoneUtils.normalizePrefix(phonePrefix);
+        logger.debug("Searching owners by phone prefix: {}", prefix);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        List<OwnerResponseDto> owners = ownerRepository
+                .findTop20ByPhoneNormalizedStartingWithOrderByPhoneNormalizedAsc(prefix).stream()
+                .map(ownerMapper::toResponseDto)
+                .collect(Collectors.toList());
+        logger.debug("Found {} owners with phone prefix: {}", owners.size(), prefix);
+        return owners;
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public List<OwnerLeaderboardEntryDto> getLeaderboard(int limit) {
+        if (limit < 1 || limit > MAX_LEADERBOARD_SIZE) {
+            throw new InvalidRequestParameterException("Leaderboard limit must be between 1 and " + MAX_LEADERBOARD_SIZE);
+        }
+        logger.debug("Getting top {} owners by pet count", limit);
+        List<OwnerPetCountProjection> rows = ownerRepository.findLeaderboard(PageRequest.of(0, limit));
+        List<OwnerLeaderboardEntryDto> leaderboard = new ArrayList<>(rows.size());
+        for (OwnerPetCountProjection row : rows) {
+            leaderboard.add(OwnerLeaderboardEntryDto.builder()
+                    .rank(leaderboard.size() + 1)
+                    .ownerId(row.getId())
+                    .firstName(row.getFirstName())
+                    .lastName(row.getLastName())
+                    .petCount(row.getPetCount())
+                    .build());
+        }
+        return leaderboard;
+    }
 }
-
@@ -0,0 +1,90 @@
+package ru.akbirov.petproject.service.impl;
+
+import ru.akbirov.petproject.dto.FacetValueDto;
+import ru.akbirov.petproject.dto.PetSearchFacetsDto;
+import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.repository.projection.PetFacetProjection;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Считает все фасеты поиска питомцев за один проход по найденным строкам.
+ * Память зависит только от числа различных значений, а не от числа совпадений.
+ */
+class PetFacetCollector {
+
+    static final String UNKNOWN_COLOR = "UNKNOWN";
+
+    private static final int[] AGE_BUCKET_BOUNDS = {1, 3, 7, 12};
+    private static final String[] AGE_BUCKET_LABELS = {"0-1", "1-3", "3-7", "7-12", "12+"};
+
+    private final LocalDate today;
+    private final EnumMap<PetType, Long> byType = new EnumMap<>(PetType.class);
+    private final Map<String, Long> breeds = new HashMap<>();
+    private final Map<String, Long> colors = new HashMap<>();
+    private final long[] ageBuckets = new long[AGE_BUCKET_LABELS.length];
+    private long total;
+
+    PetFacetCollector(LocalDate today) {
+        this.today = today;
+    }
+
+    void accept(PetFacetProjection row) {
+        total++;
+        byType.merge(row.getType(), 1L, Long::sum);
+        breeds.merge(row.getBreed(), 1L, Long::sum);
+        String color = row.getColor() == null || row.getColor().isBlank() ? UNKNOWN_COLOR : row.getColor();
+        colors.merge(color, 1L, Long::sum);
+        ageBuckets[ageBucket(row.getDateOfBirth())]++;
+    }
+
+    PetSearchFacetsDto toDto(String search, int topBreedsLimit) {
+        Map<String, Long> typeCounts = new LinkedHashMap<>();
+        for (PetType type : PetType.values()) {
+            typeCounts.put(type.name(), byType.getOrDefault(type, 0L));
+        }
+
+        Map<String, Long> ageCounts = new LinkedHashMap<>();
+        for (int i = 0; i < AGE_BUCKET_LABELS.length; i++) {
+            ageCounts.put(AGE_BUCKET_LABELS[i], ageBuckets[i]);
+        }
+
+        return PetSearchFacetsDto.builder()
+                .search(search)
+                .totalMatches(total)
+                .byType(typeCounts)
+                .topBreeds(sorted(breeds, topBreedsLimit))
+                .colors(sorted(colors, Integer.MAX_VALUE))
+                .ageBuckets(ageCounts)
+                .build();
+    }
+
+    private int ageBucket(LocalDate dateOfBirth) {
+        int years = dateOfBirth == null ? 0 : Math.max(0, Period.between(dateOfBirth, today).getYears());
+        for (int i = 0; i < AGE_BUCKET_BOUNDS.length; i++) {
+            if (years < AGE_BUCKET_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return AGE_BUCKET_BOUNDS.length;
+    }
+
+    private static List<FacetValueDto> sorted(Map<String, Long> counts, int limit) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(entry -> FacetValueDto.builder()
+                        .value(entry.getKey())
+                        .count(entry.getValue())
+                        .build())
+                .toList();
+    }
+}
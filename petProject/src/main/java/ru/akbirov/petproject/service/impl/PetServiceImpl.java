@@ -3,25 +3,30 @@ package ru.akbirov.petproject.service.impl;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.akbirov.petproject.dto.PetRequestDto;
 import ru.akbirov.petproject.dto.PetResponseDto;
+import ru.akbirov.petproject.dto.PetSearchFacetsDto;
 import ru.akbirov.petproject.entity.Owner;
 import ru.akbirov.petproject.entity.Pet;
 import ru.akbirov.petproject.entity.PetType;
-import ru.akbirov.petproject.entity.User;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.PetSnapshot;
+import ru.akbirov.petproject.exception.AccessDeniedException;
 import ru.akbirov.petproject.exception.OwnerNotFoundException;
 import ru.akbirov.petproject.exception.PetNotFoundException;
-import ru.akbirov.petproject.exception.UserNotFoundException;
 import ru.akbirov.petproject.mapper.PetMapper;
 import ru.akbirov.petproject.repository.OwnerRepository;
 import ru.akbirov.petproject.repository.PetRepository;
-import ru.akbirov.petproject.repository.UserRepository;
+import ru.akbirov.petproject.repository.projection.PetFacetProjection;
 import ru.akbirov.petproject.service.PetService;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -30,8 +35,8 @@ public class PetServiceImpl implements PetService {
     private static final Logger logger = LoggerFactory.getLogger(PetServiceImpl.class);
     private final PetRepository petRepository;
     private final OwnerRepository ownerRepository;
-    private final UserRepository userRepository;
     private final PetMapper petMapper;
+    private final ApplicationEventPublisher eventPublisher;
     
     @Override
     @Transactional
@@ -48,6 +53,7 @@ public class PetServiceImpl implements PetService {
         pet.setOwner(owner);
         
         Pet savedPet = petRepository.save(pet);
+        eventPublisher.publishEvent(PetChangedEvent.created(PetSnapshot.of(savedPet)));
         logger.info("Pet created successfully with ID: {}, name: {}, ownerId: {}", 
                 savedPet.getId(), savedPet.getName(), savedPet.getOwner().getId());
         return petMapper.toResponseDto(savedPet);
@@ -103,18 +109,27 @@ public class PetServiceImpl implements PetService {
     @Transactional
     public PetResponseDto updatePet(Long id, PetRequestDto requestDto) {
         logger.debug("Updating pet with ID: {}", id);
-        Pet pet = petRepository.findById(id)
-                .orElseThrow(() -> {
-                    logger.warn("Pet not found with ID: {}", id);
-                    return new PetNotFoundException(id);
-                });
-        
-        Owner owner = ownerRepository.findById(requestDto.getOwnerId())
-                .orElseThrow(() -> {
-                    logger.warn("Owner not found with ID: {}", requestDto.getOwnerId());
-                    return new OwnerNotFoundException(requestDto.getOwnerId());
-                });
+        return update(findPetWithOwner(id), requestDto);
+    }
+    
+    @Override
+    @Transactional
+    public PetResponseDto updateOwnPet(Long id, Long ownerId, PetRequestDto requestDto) {
+        logger.debug("Updating pet with ID: {} for owner: {}", id, ownerId);
+        return update(findOwnPet(id, ownerId), requestDto);
+    }
+    
+    private PetResponseDto update(Pet pet, PetRequestDto requestDto) {
+        // Владелец уже загружен вместе с питомцем; отдельный запрос нужен, только если питомца передают другому
+        Owner owner = pet.getOwner().getId().equals(requestDto.getOwnerId())
+                ? pet.getOwner()
+                : ownerRepository.findById(requestDto.getOwnerId())
+                        .orElseThrow(() -> {
+                            logger.warn("Owner not found with ID: {}", requestDto.getOwnerId());
+                            return new OwnerNotFoundException(requestDto.getOwnerId());
+                        });
         
+        PetSnapshot before = PetSnapshot.of(pet);
         pet.setName(requestDto.getName());
         pet.setType(requestDto.getType());
         pet.setBreed(requestDto.getBreed());
@@ -124,6 +139,7 @@ public class PetServiceImpl implements PetService {
         pet.setOwner(owner);
         
         Pet updatedPet = petRepository.save(pet);
+        eventPublisher.publishEvent(PetChangedEvent.updated(before, PetSnapshot.of(updatedPet)));
         logger.info("Pet updated successfully: {} (ID: {})", updatedPet.getName(), updatedPet.getId());
         return petMapper.toResponseDto(updatedPet);
     }
@@ -132,12 +148,40 @@ public class PetServiceImpl implements PetService {
     @Transactional
     public void deletePet(Long id) {
         logger.debug("Deleting pet with ID: {}", id);
-        if (!petRepository.existsById(id)) {
-            logger.warn("Pet not found with ID: {}", id);
-            throw new PetNotFoundException(id);
+        delete(findPetWithOwner(id));
+    }
+    
+    @Override
+    @Transactional
+    public void deleteOwnPet(Long id, Long ownerId) {
+        logger.debug("Deleting pet with ID: {} for owner: {}", id, ownerId);
+        delete(findOwnPet(id, ownerId));
+    }
+    
+    private void delete(Pet pet) {
+        petRepository.delete(pet);
+        eventPublisher.publishEvent(PetChangedEvent.deleted(PetSnapshot.of(pet)));
+        logger.info("Pet deleted successfully with ID: {}", pet.getId());
+    }
+    
+    private Pet findPetWithOwner(Long id) {
+        return petRepository.findWithOwnerById(id)
+                .orElseThrow(() -> {
+                    logger.warn("Pet not found with ID: {}", id);
+                    return new PetNotFoundException(id);
+                });
+    }
+    
+    /**
+     * Проверка владения по той же загрузке, которую затем изменяет вызывающий метод
+     */
+    private Pet findOwnPet(Long id, Long ownerId) {
+        Pet pet = findPetWithOwner(id);
+        if (!pet.getOwner().getId().equals(ownerId)) {
+            logger.warn("Access denied for owner: {} - not owner of pet {}", ownerId, id);
+            throw new AccessDeniedException("Access denied. You can only edit/delete your own pets.");
         }
-        petRepository.deleteById(id);
-        logger.info("Pet deleted successfully with ID: {}", id);
+        return pet;
     }
     
     @Override
@@ -153,54 +197,33 @@ public class PetServiceImpl implements PetService {
     
     @Override
     @Transactional(readOnly = true)
-    public List<PetResponseDto> getMyPets(String username) {
-        logger.debug("Getting pets for user: {}", username);
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> {
-                    logger.warn("User not found with username: {}", username);
-                    return new UserNotFoundException("User not found with username: " + username);
-                });
-        
-        Owner owner = ownerRepository.findByUserId(user.getId())
-                .orElseThrow(() -> {
-                    logger.warn("Owner not found for user ID: {}", user.getId());
-                    return new OwnerNotFoundException("Owner not found for user: " + username);
-                });
-        
-        List<PetResponseDto> pets = petRepository.findByOwnerId(owner.getId()).stream()
-                .map(petMapper::toResponseDto)
-                .collect(Collectors.toList());
-        logger.debug("Found {} pets for user: {}", pets.size(), username);
-        return pets;
+    public PetSearchFacetsDto searchFacets(String searchTerm, int topBreedsLimit) {
+        String term = searchTerm == null ? "" : searchTerm;
+        logger.debug("Calculating search facets for term: {}", term);
+        PetFacetCollector collector = new PetFacetCollector(LocalDate.now());
+        try (Stream<PetFacetProjection> rows = petRepository.streamSearchFacets(term)) {
+            rows.forEach(collector::accept);
+        }
+        PetSearchFacetsDto facets = collector.toDto(term, topBreedsLimit);
+        logger.debug("Calculated facets for {} pets matching search term: {}", facets.getTotalMatches(), term);
+        return facets;
     }
     
     @Override
     @Transactional(readOnly = true)
-    public boolean isPetOwner(Long petId, String username) {
-        logger.debug("Checking if user {} is owner of pet {}", username, petId);
-        Pet pet = petRepository.findById(petId)
-                .orElseThrow(() -> {
-                    logger.warn("Pet not found with ID: {}", petId);
-                    return new PetNotFoundException(petId);
-                });
-        
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> {
-                    logger.warn("User not found with username: {}", username);
-                    return new UserNotFoundException("User not found with username: " + username);
-                });
-        
-        Owner owner = ownerRepository.findByUserId(user.getId())
-                .orElse(null);
-        
-        if (owner == null) {
-            logger.debug("User {} has no owner profile", username);
-            return false;
+    public List<PetResponseDto> getMyPets(Long ownerId) {
+        logger.debug("Getting pets for current owner: {}", ownerId);
+        if (ownerId == null) {
+            logger.warn("Current user has no owner profile");
+            throw new OwnerNotFoundException("Owner not found for current user");
         }
         
-        boolean isOwner = pet.getOwner().getId().equals(owner.getId());
-        logger.debug("User {} is owner of pet {}: {}", username, petId, isOwner);
-        return isOwner;
+        // Один запрос по индексу pets.owner_id: пользователь и владелец уже известны из principal
+        List<PetResponseDto> pets = petRepository.findWithOwnerByOwnerId(ownerId).stream()
+                .map(petMapper::toResponseDto)
+                .collect(Collectors.toList());
+        logger.debug("Found {} pets for owner: {}", pets.size(), ownerId);
+        return pets;
     }
 }
 
@@ -1,52 +1,317 @@
 package ru.akbirov.petproject.service.impl;
 
-import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.akbirov.petproject.config.StatisticsProperties;
+import ru.akbirov.petproject.dto.AgeBucketDto;
+import ru.akbirov.petproject.dto.AgeDistributionDto;
+import ru.akbirov.petproject.dto.AgeStatsDto;
+import ru.akbirov.petproject.dto.PetAnalyticsDto;
 import ru.akbirov.petproject.dto.StatisticsDto;
+import ru.akbirov.petproject.dto.TimeSeriesDto;
+import ru.akbirov.petproject.dto.TimeSeriesPointDto;
+import ru.akbirov.petproject.dto.TopBreedsDto;
 import ru.akbirov.petproject.entity.PetType;
-import ru.akbirov.petproject.repository.OwnerRepository;
+import ru.akbirov.petproject.entity.RollupMetric;
+import ru.akbirov.petproject.event.StatisticsRefreshedEvent;
+import ru.akbirov.petproject.exception.InvalidRequestParameterException;
+import ru.akbirov.petproject.repository.MetricDailyRollupRepository;
 import ru.akbirov.petproject.repository.PetRepository;
+import ru.akbirov.petproject.repository.projection.PetAgeCountProjection;
+import ru.akbirov.petproject.repository.projection.PetTypeCountProjection;
+import ru.akbirov.petproject.repository.projection.TimeSeriesPointProjection;
 import ru.akbirov.petproject.service.StatisticsService;
+import ru.akbirov.petproject.statistics.AnalyticsDimension;
+import ru.akbirov.petproject.statistics.BreedHeavyHitters;
+import ru.akbirov.petproject.statistics.CardinalitySketches;
+import ru.akbirov.petproject.statistics.PetAnalyticsFilter;
+import ru.akbirov.petproject.statistics.PetColumnStore;
+import ru.akbirov.petproject.statistics.SnapshotHolder;
+import ru.akbirov.petproject.statistics.StatisticsCounters;
+import ru.akbirov.petproject.statistics.TimeGranularity;
 
-import java.util.Arrays;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
-@RequiredArgsConstructor
 public class StatisticsServiceImpl implements StatisticsService {
     
     private static final Logger logger = LoggerFactory.getLogger(StatisticsServiceImpl.class);
-    private final OwnerRepository ownerRepository;
+    private static final int MAX_TIME_SERIES_POINTS = 1000;
+    private static final int MAX_ANALYTICS_GROUPS = 1000;
+    private static final int RECONCILE_ATTEMPTS = 3;
+    private static final int SKIPPED_RECONCILES_WARNING = 10;
     private final PetRepository petRepository;
+    private final MetricDailyRollupRepository rollupRepository;
+    private final StatisticsCounters counters;
+    private final BreedHeavyHitters breedHeavyHitters;
+    private final CardinalitySketches cardinalitySketches;
+    private final PetColumnStore petColumnStore;
+    private final Clock clock;
+    private final SnapshotHolder<StatisticsDto> snapshot;
+    private final AtomicInteger skippedReconciles = new AtomicInteger();
+    
+    public StatisticsServiceImpl(PetRepository petRepository, MetricDailyRollupRepository rollupRepository,
+                                 StatisticsCounters counters, BreedHeavyHitters breedHeavyHitters,
+                                 CardinalitySketches cardinalitySketches, PetColumnStore petColumnStore,
+                                 StatisticsProperties properties, TaskScheduler taskScheduler,
+                                 ApplicationEventPublisher eventPublisher) {
+        this.petRepository = petRepository;
+        this.rollupRepository = rollupRepository;
+        this.counters = counters;
+        this.breedHeavyHitters = breedHeavyHitters;
+        this.cardinalitySketches = cardinalitySketches;
+        this.petColumnStore = petColumnStore;
+        this.clock = Clock.systemDefaultZone();
+        this.snapshot = new SnapshotHolder<>(this::computeEstimates, properties.getSnapshot().getMaxStaleness(),
+                task -> taskScheduler.schedule(task, Instant.now()), clock,
+                refreshed -> eventPublisher.publishEvent(new StatisticsRefreshedEvent(refreshed.getComputedAt())));
+    }
     
     @Override
-    @Transactional(readOnly = true)
     public StatisticsDto getStatistics() {
-        logger.debug("Calculating statistics");
-        long totalOwners = ownerRepository.count();
-        long totalPets = petRepository.count();
+        if (!counters.isInitialized()) {
+            reconcile();
+        }
         
-        Map<String, Long> petsByType = Arrays.stream(PetType.values())
-                .collect(Collectors.toMap(
-                        Enum::name,
-                        type -> (long) petRepository.findByType(type).size()
-                ));
+        // Счетчики читаются из памяти на каждом запросе, запросов к базовым таблицам нет
+        long totalOwners = counters.totalOwners();
+        Map<String, Long> petsByType = new LinkedHashMap<>();
+        long totalPets = 0;
+        for (PetType type : PetType.values()) {
+            long count = counters.pets(type);
+            petsByType.put(type.name(), count);
+            totalPets += count;
+        }
         
-        long averagePetsPerOwner = totalOwners > 0 ? totalPets / totalOwners : 0;
+        double averagePetsPerOwner = average(totalPets, totalOwners);
         
-        logger.debug("Statistics calculated: totalOwners={}, totalPets={}, averagePetsPerOwner={}", 
+        logger.debug("Statistics from counters: totalOwners={}, totalPets={}, averagePetsPerOwner={}", 
                 totalOwners, totalPets, averagePetsPerOwner);
         
-        return StatisticsDto.builder()
+        // Оценки скетчей отдаются из снимка сразу, даже устаревшего; обновление выполняется в фоне
+        Instant now = clock.instant();
+        SnapshotHolder.Snapshot<StatisticsDto> estimates = snapshot.get();
+        return estimates.getValue().toBuilder()
                 .totalOwners(totalOwners)
                 .totalPets(totalPets)
                 .petsByType(petsByType)
                 .averagePetsPerOwner(averagePetsPerOwner)
+                .computedAt(LocalDateTime.ofInstant(now, ZoneId.systemDefault()))
+                .snapshotAgeMillis(estimates.age(now).toMillis())
                 .build();
     }
+    
+    @Override
+    public TopBreedsDto getTopBreeds(int limit) {
+        logger.debug("Getting top {} breeds per pet type", limit);
+        return breedHeavyHitters.top(limit);
+    }
+    
+    @Override
+    public PetAnalyticsDto analyzePets(AnalyticsDimension groupBy, PetAnalyticsFilter filter, int limit) {
+        if (limit < 1 || limit > MAX_ANALYTICS_GROUPS) {
+            throw new InvalidRequestParameterException("Analytics limit must be between 1 and " + MAX_ANALYTICS_GROUPS);
+        }
+        logger.debug("Analyzing pets: groupBy={}, filter={}", groupBy, filter);
+        // Запрос выполняется по колоночной копии в памяти, база данных не читается
+        return petColumnStore.query(groupBy, filter, limit);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public AgeDistributionDto getAgeDistribution() {
+        logger.debug("Calculating pet age distribution");
+        // Не более (число типов x число различных возрастов) строк, питомцы не загружаются
+        List<PetAgeCountProjection> rows = petRepository.countByTypeAndAge();
+        
+        Map<PetType, List<AgeBucketDto>> histograms = new EnumMap<>(PetType.class);
+        Map<Integer, Long> allAges = new TreeMap<>();
+        for (PetAgeCountProjection row : rows) {
+            histograms.computeIfAbsent(PetType.valueOf(row.getType()), type -> new ArrayList<>())
+                    .add(AgeBucketDto.builder().ageYears(row.getAgeYears()).count(row.getPetCount()).build());
+            allAges.merge(row.getAgeYears(), row.getPetCount(), Long::sum);
+        }
+        
+        Map<String, AgeStatsDto> byType = new LinkedHashMap<>();
+        for (PetType type : PetType.values()) {
+            byType.put(type.name(), ageStats(histograms.getOrDefault(type, List.of())));
+        }
+        List<AgeBucketDto> all = allAges.entrySet().stream()
+                .map(entry -> AgeBucketDto.builder().ageYears(entry.getKey()).count(entry.getValue()).build())
+                .toList();
+        
+        return AgeDistributionDto.builder()
+                .all(ageStats(all))
+                .byType(byType)
+                .build();
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public TimeSeriesDto getTimeSeries(RollupMetric metric, TimeGranularity granularity, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new InvalidRequestParameterException("Parameter 'from' must not be after 'to'");
+        }
+        logger.debug("Getting time series: metric={}, granularity={}, from={}, to={}", metric, granularity, from, to);
+        
+        // Читаются только строки роллапа за период, базовые таблицы не сканируются
+        Map<LocalDate, Long> totals = new HashMap<>();
+        for (TimeSeriesPointProjection row : rollupRepository.sumByBucket(
+                metric.name(), granularity.sqlUnit(), from, to)) {
+            totals.put(row.getBucket(), row.getTotal());
+        }
+        
+        // Интервалы без событий возвращаются с нулем, чтобы ряд был непрерывным
+        List<TimeSeriesPointDto> points = new ArrayList<>();
+        long total = 0;
+        for (LocalDate bucket = granularity.truncate(from); !bucket.isAfter(to); bucket = granularity.next(bucket)) {
+            if (points.size() == MAX_TIME_SERIES_POINTS) {
+                throw new InvalidRequestParameterException("Time series is limited to " + MAX_TIME_SERIES_POINTS
+                        + " points, use a shorter period or a coarser granularity");
+            }
+            long count = totals.getOrDefault(bucket, 0L);
+            points.add(TimeSeriesPointDto.builder().bucket(bucket).count(count).build());
+            total += count;
+        }
+        
+        return TimeSeriesDto.builder()
+                .metric(metric.name())
+                .granularity(granularity.name())
+                .from(from)
+                .to(to)
+                .total(total)
+                .points(points)
+                .build();
+    }
+    
+    @Override
+    public StatisticsDto refreshStatistics() {
+        snapshot.refresh();
+        return getStatistics();
+    }
+    
+    @Scheduled(fixedDelayString = "#{@statisticsProperties.snapshot.refreshInterval.toMillis()}")
+    public void refreshSnapshot() {
+        snapshot.refresh();
+    }
+    
+    /**
+     * Снимок содержит только оценки скетчей: они требуют обхода регистров, а счетчики дешевы
+     * и читаются напрямую, поэтому не отстают на время жизни снимка
+     */
+    private StatisticsDto computeEstimates() {
+        return StatisticsDto.builder()
+                .distinctBreeds(cardinalitySketches.distinctBreeds())
+                .distinctColors(cardinalitySketches.distinctColors())
+                .ownersByPetType(cardinalitySketches.ownersByPetType())
+                .build();
+    }
+    
+    /**
+     * Периодически сверяет счетчики с базой данных, исправляя возможный дрейф
+     * (изменения в обход сервисов, потерянные события, рестарт приложения).
+     * Сверка применяется, только если во время запроса счетчики не менялись; при постоянной записи
+     * она повторяется несколько раз подряд, а первая загрузка в последней попытке применяется всегда.
+     */
+    @Scheduled(fixedDelayString = "#{@statisticsProperties.reconcileInterval.toMillis()}")
+    public void reconcile() {
+        for (int attempt = 1; attempt <= RECONCILE_ATTEMPTS; attempt++) {
+            if (tryReconcile(!counters.isInitialized() && attempt == RECONCILE_ATTEMPTS)) {
+                skippedReconciles.set(0);
+                return;
+            }
+        }
+        int skipped = skippedReconciles.incrementAndGet();
+        if (skipped % SKIPPED_RECONCILES_WARNING == 0) {
+            logger.warn("Statistics reconciliation skipped {} times in a row: counters change during every query",
+                    skipped);
+        } else {
+            logger.debug("Statistics reconciliation skipped: counters changed during query");
+        }
+    }
+    
+    private boolean tryReconcile(boolean force) {
+        long generation = counters.generation();
+        List<PetTypeCountProjection> rows = petRepository.countPetsByType();
+        
+        long totalOwners = 0;
+        Map<PetType, Long> petsByType = new EnumMap<>(PetType.class);
+        for (PetTypeCountProjection row : rows) {
+            totalOwners = row.getTotalOwners();
+            if (row.getType() != null) {
+                petsByType.merge(PetType.valueOf(row.getType()), row.getPetCount(), Long::sum);
+            }
+        }
+        
+        boolean wasInitialized = counters.isInitialized();
+        long driftOwners = totalOwners - counters.totalOwners();
+        long driftPets = petsByType.values().stream().mapToLong(Long::longValue).sum() - counters.totalPets();
+        if (!counters.reset(generation, totalOwners, petsByType, force)) {
+            return false;
+        }
+        if (wasInitialized && (driftOwners != 0 || driftPets != 0)) {
+            logger.warn("Statistics counters drifted from database: owners delta={}, pets delta={}", 
+                    driftOwners, driftPets);
+        }
+        logger.debug("Statistics counters reconciled: totalOwners={}", totalOwners);
+        return true;
+    }
+    
+    private static AgeStatsDto ageStats(List<AgeBucketDto> histogram) {
+        long count = histogram.stream().mapToLong(AgeBucketDto::getCount).sum();
+        return AgeStatsDto.builder()
+                .count(count)
+                .histogram(histogram)
+                .p50(percentile(histogram, count, 50))
+                .p90(percentile(histogram, count, 90))
+                .p99(percentile(histogram, count, 99))
+                .build();
+    }
+    
+    /**
+     * Перцентиль по методу nearest-rank: наименьший возраст, на котором накопленное число
+     * питомцев достигает ceil(p / 100 * count). Гистограмма должна быть отсортирована по возрасту.
+     */
+    static Integer percentile(List<AgeBucketDto> histogram, long count, int p) {
+        if (count == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (count * p + 99) / 100);
+        long cumulative = 0;
+        for (AgeBucketDto bucket : histogram) {
+            cumulative += bucket.getCount();
+            if (cumulative >= rank) {
+                return bucket.getAgeYears();
+            }
+        }
+        return histogram.get(histogram.size() - 1).getAgeYears();
+    }
+    
+    static double average(long total, long count) {
+        if (count <= 0) {
+            return 0.0;
+        }
+        return BigDecimal.valueOf(total)
+                .divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP)
+                .doubleValue();
+    }
 }
-
@@ -3,19 +3,27 @@ package ru.akbirov.petproject.service.impl;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.akbirov.petproject.dto.UpdateProfileDto;
 import ru.akbirov.petproject.dto.UserProfileDto;
 import ru.akbirov.petproject.entity.Owner;
 import ru.akbirov.petproject.entity.User;
+import ru.akbirov.petproject.event.OwnerCreatedEvent;
+import ru.akbirov.petproject.event.UserAccountChangedEvent;
 import ru.akbirov.petproject.exception.UserNotFoundException;
 import ru.akbirov.petproject.repository.OwnerRepository;
 import ru.akbirov.petproject.repository.UserRepository;
+import ru.akbirov.petproject.security.RefreshTokenService;
 import ru.akbirov.petproject.service.UserService;
+import ru.akbirov.petproject.util.PhoneUtils;
 import ru.akbirov.petproject.util.RoleUtils;
 
+import java.time.LocalDateTime;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,19 +34,18 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final OwnerRepository ownerRepository;
     private final PasswordEncoder passwordEncoder;
+    private final RefreshTokenService refreshTokenService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
     
     @Override
     @Transactional(readOnly = true)
-    public UserProfileDto getCurrentUserProfile(String username) {
-        logger.debug("Getting user profile for username: {}", username);
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> {
-                    logger.warn("User not found with username: {}", username);
-                    return new UserNotFoundException("User not found with username: " + username);
-                });
+    public UserProfileDto getCurrentUserProfile(Long userId, Long ownerId) {
+        logger.debug("Getting user profile for user ID: {}", userId);
+        User user = findUser(userId);
         
-        // Получаем Owner для этого пользователя
-        Owner owner = ownerRepository.findByUserId(user.getId()).orElse(null);
+        // Получаем Owner для этого пользователя по id из principal
+        Owner owner = ownerId != null ? ownerRepository.findById(ownerId).orElse(null) : null;
         
         UserProfileDto.UserProfileDtoBuilder dtoBuilder = UserProfileDto.builder()
                 .id(user.getId())
@@ -70,13 +77,9 @@ public class UserServiceImpl implements UserService {
     
     @Override
     @Transactional
-    public UserProfileDto updateUserProfile(String username, UpdateProfileDto updateDto) {
-        logger.info("Updating user profile for username: {}", username);
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> {
-                    logger.warn("User not found with username: {}", username);
-                    return new UserNotFoundException("User not found with username: " + username);
-                });
+    public UserProfileDto updateUserProfile(Long userId, Long ownerId, UpdateProfileDto updateDto) {
+        logger.info("Updating user profile for user ID: {}", userId);
+        User user = findUser(userId);
         
         // Проверяем, не занят ли email другим пользователем
         if (!user.getEmail().equals(updateDto.getEmail()) 
@@ -88,18 +91,21 @@ public class UserServiceImpl implements UserService {
         // Обновляем email пользователя
         user.setEmail(updateDto.getEmail());
         User updatedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserAccountChangedEvent(updatedUser.getUsername(), updatedUser.getId()));
         
         // Получаем или создаем Owner для этого пользователя
-        Owner owner = ownerRepository.findByUserId(updatedUser.getId())
+        Owner owner = Optional.ofNullable(ownerId)
+                .flatMap(ownerRepository::findById)
                 .orElse(Owner.builder()
                         .user(updatedUser)
                         .email(updatedUser.getEmail())
                         .address("")
                         .build());
         
-        // Проверяем, не занят ли телефон другим владельцем
-        if ((owner.getPhone() == null || !owner.getPhone().equals(updateDto.getPhone())) 
-                && ownerRepository.existsByPhone(updateDto.getPhone())) {
+        // Проверяем, не занят ли телефон другим владельцем (сравниваем нормализованные номера)
+        String phoneNormalized = PhoneUtils.normalize(updateDto.getPhone());
+        if (!phoneNormalized.equals(PhoneUtils.normalize(owner.getPhone())) 
+                && ownerRepository.existsByPhoneNormalized(phoneNormalized)) {
             logger.warn("Phone already exists: {}", updateDto.getPhone());
             throw new ru.akbirov.petproject.exception.PhoneAlreadyExistsException(updateDto.getPhone());
         }
@@ -109,7 +115,11 @@ public class UserServiceImpl implements UserService {
         owner.setLastName(updateDto.getLastName());
         owner.setPhone(updateDto.getPhone());
         owner.setEmail(updateDto.getEmail());
+        boolean ownerCreated = owner.getId() == null;
         Owner updatedOwner = ownerRepository.save(owner);
+        if (ownerCreated) {
+            eventPublisher.publishEvent(new OwnerCreatedEvent(updatedOwner.getId()));
+        }
         
         UserProfileDto dto = UserProfileDto.builder()
                 .id(updatedUser.getId())
@@ -132,27 +142,63 @@ public class UserServiceImpl implements UserService {
         return dto;
     }
     
+    /**
+     * Проверка и хеширование пароля идут вне транзакции, чтобы ожидание в очереди кодировщика
+     * не держало соединение из пула; запись выполняется отдельной короткой транзакцией.
+     */
     @Override
-    @Transactional
-    public void changePassword(String username, String currentPassword, String newPassword) {
-        logger.info("Changing password for username: {}", username);
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> {
-                    logger.warn("User not found with username: {}", username);
-                    return new UserNotFoundException("User not found with username: " + username);
-                });
+    public void changePassword(Long userId, String currentPassword, String newPassword) {
+        logger.info("Changing password for user ID: {}", userId);
+        User user = findUser(userId);
         
         // Проверяем текущий пароль
-        if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
-            logger.warn("Invalid current password for username: {}", username);
-            throw new org.springframework.security.authentication.BadCredentialsException("Invalid current password");
-        }
+        verifyCurrentPassword(user, currentPassword, user.getPassword());
+        String newHash = passwordEncoder.encode(newPassword);
         
-        // Устанавливаем новый пароль
-        user.setPassword(passwordEncoder.encode(newPassword));
-        userRepository.save(user);
+        // Обновление условное: хеш мог смениться после проверки. Обычно это перехеширование
+        // при входе с тем же паролем, поэтому текущий пароль проверяется заново по свежему хешу.
+        if (!replacePassword(user, user.getPassword(), newHash)) {
+            String latestHash = userRepository.findPasswordHashById(userId)
+                    .orElseThrow(() -> new UserNotFoundException(userId));
+            verifyCurrentPassword(user, currentPassword, latestHash);
+            if (!replacePassword(user, latestHash, newHash)) {
+                logger.warn("Password changed concurrently for username: {}", user.getUsername());
+                throw new org.springframework.security.authentication.BadCredentialsException("Invalid current password");
+            }
+        }
         
-        logger.info("Password changed successfully for username: {}", username);
+        logger.info("Password changed successfully for username: {}", user.getUsername());
+    }
+    
+    private void verifyCurrentPassword(User user, String currentPassword, String passwordHash) {
+        if (!passwordEncoder.matches(currentPassword, passwordHash)) {
+            logger.warn("Invalid current password for username: {}", user.getUsername());
+            throw new org.springframework.security.authentication.BadCredentialsException("Invalid current password");
+        }
+    }
+    
+    /**
+     * Устанавливает новый пароль, если хеш все еще expectedHash; новая версия и отзыв
+     * refresh-токенов завершают все сессии
+     */
+    private boolean replacePassword(User user, String expectedHash, String newHash) {
+        Boolean replaced = transactionTemplate.execute(status -> {
+            if (userRepository.changePassword(user.getId(), expectedHash, newHash, LocalDateTime.now()) == 0) {
+                return false;
+            }
+            refreshTokenService.revokeAll(user.getId());
+            eventPublisher.publishEvent(new UserAccountChangedEvent(user.getUsername(), user.getId()));
+            return true;
+        });
+        return Boolean.TRUE.equals(replaced);
+    }
+    
+    private User findUser(Long userId) {
+        return userRepository.findById(userId)
+                .orElseThrow(() -> {
+                    logger.warn("User not found with ID: {}", userId);
+                    return new UserNotFoundException(userId);
+                });
     }
 }
 
@@ -0,0 +1,12 @@
+package ru.akbirov.petproject.statistics;
+
+/**
+ * Измерение группировки аналитических запросов по колоночному хранилищу питомцев
+ */
+public enum AnalyticsDimension {
+    TYPE,
+    BREED,
+    COLOR,
+    BIRTH_YEAR,
+    OWNER
+}
@@ -0,0 +1,178 @@
+package ru.akbirov.petproject.statistics;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.akbirov.petproject.config.StatisticsProperties;
+import ru.akbirov.petproject.dto.HeavyHitterDto;
+import ru.akbirov.petproject.dto.TopBreedsDto;
+import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.event.OwnerDeletedEvent;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.PetSnapshot;
+import ru.akbirov.petproject.repository.PetRepository;
+import ru.akbirov.petproject.repository.projection.BreedCountProjection;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Самые частые породы для каждого типа питомца без GROUP BY по всей таблице на каждый запрос.
+ * Скетчи Space-Saving обновляются событиями после коммита и периодически
+ * заменяются точным пересчетом top-N из базы данных.
+ */
+@Component
+@RequiredArgsConstructor
+public class BreedHeavyHitters {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BreedHeavyHitters.class);
+    
+    private final PetRepository petRepository;
+    private final StatisticsProperties properties;
+    private final Map<PetType, SpaceSavingSketch> sketches = new EnumMap<>(PetType.class);
+    private final AtomicInteger committing = new AtomicInteger();
+    private long generation;
+    private boolean initialized;
+    
+    /**
+     * Транзакция с изменением питомцев коммитится: ее строки уже могут попасть в пересчет,
+     * а событие еще не применено. Завершение (коммит или откат) наступает после AFTER_COMMIT.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT,
+            classes = {PetChangedEvent.class, OwnerDeletedEvent.class})
+    public void onCommitting() {
+        committing.incrementAndGet();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                committing.decrementAndGet();
+            }
+        });
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public synchronized void onPetChanged(PetChangedEvent event) {
+        PetSnapshot before = event.getBefore();
+        PetSnapshot after = event.getAfter();
+        if (before != null && after != null
+                && before.getType() == after.getType() && Objects.equals(before.getBreed(), after.getBreed())) {
+            return;
+        }
+        if (before != null) {
+            remove(before);
+        }
+        if (after != null) {
+            add(after);
+        }
+        generation++;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public synchronized void onOwnerDeleted(OwnerDeletedEvent event) {
+        event.getRemovedPets().forEach(this::remove);
+        generation++;
+    }
+    
+    public TopBreedsDto top(int limit) {
+        if (!isInitialized()) {
+            recount();
+        }
+        Map<String, List<HeavyHitterDto>> byType = new LinkedHashMap<>();
+        Map<String, Long> maxError = new LinkedHashMap<>();
+        synchronized (this) {
+            for (PetType type : PetType.values()) {
+                SpaceSavingSketch sketch = sketch(type);
+                byType.put(type.name(), sketch.top(limit).stream()
+                        .map(entry -> HeavyHitterDto.builder()
+                                .value(entry.getItem())
+                                .count(entry.getCount())
+                                .maxError(entry.getError())
+                                .guaranteedCount(entry.getCount() - entry.getError())
+                                .build())
+                        .toList());
+                maxError.put(type.name(), sketch.maxError());
+            }
+        }
+        return TopBreedsDto.builder()
+                .capacity(properties.getHeavyHitters().getCapacity())
+                .byType(byType)
+                .maxError(maxError)
+                .build();
+    }
+    
+    /**
+     * Точный пересчет top-N пород. Отбрасывается, если в начале или в конце пересчета были
+     * закоммиченные, но не примененные транзакции, или за время запроса применялись события:
+     * иначе питомец мог бы попасть и в точные значения, и в последующий инкремент.
+     * Первый пересчет проверяется так же; до его успеха top() повторяет попытку.
+     */
+    @Scheduled(fixedDelayString = "#{@statisticsProperties.heavyHitters.recountInterval.toMillis()}")
+    public void recount() {
+        int capacity = properties.getHeavyHitters().getCapacity();
+        long expectedGeneration;
+        synchronized (this) {
+            expectedGeneration = generation;
+        }
+        if (committing.get() != 0) {
+            logger.debug("Breed heavy hitters recount skipped: pet changes are committing");
+            return;
+        }
+        List<BreedCountProjection> rows = petRepository.topBreedsByType(capacity);
+        
+        Map<PetType, Map<String, Long>> exact = new EnumMap<>(PetType.class);
+        Map<PetType, Long> totals = new EnumMap<>(PetType.class);
+        Map<PetType, Boolean> complete = new EnumMap<>(PetType.class);
+        for (BreedCountProjection row : rows) {
+            PetType type = PetType.valueOf(row.getType());
+            exact.computeIfAbsent(type, t -> new HashMap<>()).put(row.getBreed(), row.getPetCount());
+            totals.put(type, row.getTypeTotal());
+            complete.put(type, row.getDistinctBreeds() <= capacity);
+        }
+        
+        synchronized (this) {
+            if (generation != expectedGeneration || committing.get() != 0) {
+                logger.debug("Breed heavy hitters recount skipped: pets changed during query");
+                return;
+            }
+            for (PetType type : PetType.values()) {
+                SpaceSavingSketch sketch = new SpaceSavingSketch(capacity);
+                sketch.reset(exact.getOrDefault(type, Map.of()), totals.getOrDefault(type, 0L),
+                        complete.getOrDefault(type, true));
+                sketches.put(type, sketch);
+            }
+            initialized = true;
+        }
+        logger.debug("Breed heavy hitters recounted from {} rows", rows.size());
+    }
+    
+    private synchronized boolean isInitialized() {
+        return initialized;
+    }
+    
+    private void add(PetSnapshot pet) {
+        if (pet.getType() != null && pet.getBreed() != null) {
+            sketch(pet.getType()).add(pet.getBreed());
+        }
+    }
+    
+    private void remove(PetSnapshot pet) {
+        if (pet.getType() != null && pet.getBreed() != null) {
+            sketch(pet.getType()).remove(pet.getBreed());
+        }
+    }
+    
+    private SpaceSavingSketch sketch(PetType type) {
+        return sketches.computeIfAbsent(type, t -> new SpaceSavingSketch(properties.getHeavyHitters().getCapacity()));
+    }
+}
@@ -0,0 +1,260 @@
+package ru.akbirov.petproject.statistics;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.entity.StatisticsSketch;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.PetSnapshot;
+import ru.akbirov.petproject.repository.PetRepository;
+import ru.akbirov.petproject.repository.StatisticsSketchRepository;
+import ru.akbirov.petproject.repository.projection.PetSketchProjection;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+/**
+ * Приближенное число различных пород, окрасов и владельцев с питомцами каждого типа (HyperLogLog).
+ *
+ * <p>Каждый узел копит добавления с последнего сброса в локальных скетчах и периодически сливает их
+ * в общие строки statistics_sketches под SELECT ... FOR UPDATE; в ответ узел получает
+ * объединенное состояние всех узлов. Слияние идемпотентно, поэтому повтор после сбоя безопасен.
+ *
+ * <p>События питомцев только кладутся в неблокирующую очередь. Работа с базой (сброс, перестроение,
+ * первая загрузка) идет под отдельной блокировкой, а монитор объекта берется лишь на время
+ * переноса очереди в скетчи и замены ссылок, поэтому ни запись, ни чтение оценок не ждут базу.
+ *
+ * <p>HyperLogLog не поддерживает удаление, поэтому после удаления питомцев оценки могут быть завышены
+ * до следующего полного перестроения скетчей из таблицы pets.
+ */
+@Component
+public class CardinalitySketches {
+    
+    static final String BREEDS = "breeds";
+    static final String COLORS = "colors";
+    static final String OWNERS_PREFIX = "owners:";
+    
+    private static final Logger logger = LoggerFactory.getLogger(CardinalitySketches.class);
+    
+    private final PetRepository petRepository;
+    private final StatisticsSketchRepository sketchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Queue<PetSnapshot> events = new ConcurrentLinkedQueue<>();
+    // Сериализует сброс, перестроение и первую загрузку; события и чтения ее не берут
+    private final Object persistLock = new Object();
+    // Поля ниже меняются под монитором объекта; опубликованные скетчи после публикации не изменяются
+    private Map<String, HyperLogLog> shared = emptySketches();
+    private Map<String, HyperLogLog> flushing = Map.of();
+    private Map<String, HyperLogLog> pending = emptySketches();
+    private volatile boolean loaded;
+    
+    public CardinalitySketches(PetRepository petRepository, StatisticsSketchRepository sketchRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.petRepository = petRepository;
+        this.sketchRepository = sketchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPetChanged(PetChangedEvent event) {
+        PetSnapshot pet = event.getAfter();
+        if (pet != null) {
+            events.add(pet);
+        }
+    }
+    
+    public long distinctBreeds() {
+        return estimate(BREEDS);
+    }
+    
+    public long distinctColors() {
+        return estimate(COLORS);
+    }
+    
+    public Map<String, Long> ownersByPetType() {
+        Map<String, Long> owners = new LinkedHashMap<>();
+        for (PetType type : PetType.values()) {
+            owners.put(type.name(), estimate(OWNERS_PREFIX + type.name()));
+        }
+        return owners;
+    }
+    
+    /**
+     * Сливает локальные добавления в общие скетчи и забирает объединенное состояние всех узлов.
+     * Если общие скетчи еще ни разу не строились, они перестраиваются из таблицы pets.
+     */
+    @Scheduled(fixedDelayString = "#{@statisticsProperties.sketches.flushInterval.toMillis()}")
+    public void flush() {
+        synchronized (persistLock) {
+            Map<String, HyperLogLog> delta;
+            synchronized (this) {
+                drainEvents();
+                delta = pending;
+                // До публикации результата отправляемые добавления учитываются в оценках отдельно
+                flushing = delta;
+                pending = emptySketches();
+            }
+            Map<String, HyperLogLog> merged;
+            try {
+                merged = transactionTemplate.execute(status -> mergeIntoShared(delta));
+            } catch (RuntimeException e) {
+                logger.warn("Failed to flush statistics sketches, will retry: {}", e.getMessage());
+                synchronized (this) {
+                    delta.forEach((name, sketch) -> pending.get(name).merge(sketch));
+                    flushing = Map.of();
+                }
+                return;
+            }
+            publish(merged);
+        }
+    }
+    
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+    
+    /**
+     * Полное перестроение скетчей из таблицы pets, убирает завышение после удалений
+     */
+    @Scheduled(fixedDelayString = "#{@statisticsProperties.sketches.rebuildInterval.toMillis()}",
+               initialDelayString = "#{@statisticsProperties.sketches.rebuildInterval.toMillis()}")
+    public void rebuild() {
+        synchronized (persistLock) {
+            publish(transactionTemplate.execute(status -> overwrite(lockSketches(), buildFromPets())));
+        }
+        logger.info("Statistics sketches rebuilt from pets table");
+    }
+    
+    private long estimate(String name) {
+        if (!loaded) {
+            loadInitial();
+        }
+        HyperLogLog sketch;
+        synchronized (this) {
+            drainEvents();
+            sketch = shared.get(name).copy();
+            HyperLogLog inFlight = flushing.get(name);
+            if (inFlight != null) {
+                sketch.merge(inFlight);
+            }
+            sketch.merge(pending.get(name));
+        }
+        return sketch.estimate();
+    }
+    
+    /**
+     * Первое чтение ждет загрузки общих скетчей; при ошибке оценка строится по локальным добавлениям
+     */
+    private void loadInitial() {
+        synchronized (persistLock) {
+            if (!loaded) {
+                flush();
+            }
+        }
+    }
+    
+    private Map<String, HyperLogLog> mergeIntoShared(Map<String, HyperLogLog> delta) {
+        List<StatisticsSketch> rows = lockSketches();
+        if (rows.stream().anyMatch(row -> row.getRebuiltAt() == null)) {
+            return overwrite(rows, buildFromPets());
+        }
+        Map<String, HyperLogLog> result = new HashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (StatisticsSketch row : rows) {
+            HyperLogLog sketch = HyperLogLog.fromBytes(row.getRegisters());
+            HyperLogLog local = delta.get(row.getName());
+            if (local != null && !local.isEmpty()) {
+                sketch.merge(local);
+                row.setRegisters(sketch.toBytes());
+                row.setUpdatedAt(now);
+            }
+            result.put(row.getName(), sketch);
+        }
+        return result;
+    }
+    
+    private synchronized void publish(Map<String, HyperLogLog> sketches) {
+        shared = sketches;
+        flushing = Map.of();
+        loaded = true;
+    }
+    
+    private void drainEvents() {
+        PetSnapshot pet;
+        while ((pet = events.poll()) != null) {
+            record(pending, pet.getType(), pet.getBreed(), pet.getColor(), pet.getOwnerId());
+        }
+    }
+    
+    private List<StatisticsSketch> lockSketches() {
+        byte[] empty = new HyperLogLog().toBytes();
+        for (String name : names()) {
+            sketchRepository.insertIfAbsent(name, empty);
+        }
+        return sketchRepository.findAllForUpdate(names());
+    }
+    
+    private Map<String, HyperLogLog> overwrite(List<StatisticsSketch> rows, Map<String, HyperLogLog> sketches) {
+        LocalDateTime now = LocalDateTime.now();
+        for (StatisticsSketch row : rows) {
+            row.setRegisters(sketches.get(row.getName()).toBytes());
+            row.setRebuiltAt(now);
+            row.setUpdatedAt(now);
+        }
+        return sketches;
+    }
+    
+    private Map<String, HyperLogLog> buildFromPets() {
+        Map<String, HyperLogLog> sketches = emptySketches();
+        try (Stream<PetSketchProjection> rows = petRepository.streamSketchRows()) {
+            rows.forEach(row -> record(sketches, row.getType(), row.getBreed(), row.getColor(), row.getOwnerId()));
+        }
+        return sketches;
+    }
+    
+    private static void record(Map<String, HyperLogLog> sketches, PetType type, String breed, String color,
+                               Long ownerId) {
+        if (breed != null && !breed.isBlank()) {
+            sketches.get(BREEDS).add(breed);
+        }
+        if (color != null && !color.isBlank()) {
+            sketches.get(COLORS).add(color);
+        }
+        if (type != null && ownerId != null) {
+            sketches.get(OWNERS_PREFIX + type.name()).add(ownerId);
+        }
+    }
+    
+    private static List<String> names() {
+        List<String> names = new ArrayList<>();
+        names.add(BREEDS);
+        names.add(COLORS);
+        for (PetType type : PetType.values()) {
+            names.add(OWNERS_PREFIX + type.name());
+        }
+        return names;
+    }
+    
+    private static Map<String, HyperLogLog> emptySketches() {
+        Map<String, HyperLogLog> sketches = new HashMap<>();
+        for (String name : names()) {
+            sketches.put(name, new HyperLogLog());
+        }
+        return sketches;
+    }
+}
@@ -0,0 +1,135 @@
+package ru.akbirov.petproject.statistics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog (Flajolet и др.) с 2^precision однобайтовыми регистрами.
+ * Скетчи с одинаковой точностью объединяются поэлементным максимумом регистров,
+ * поэтому объединение коммутативно и идемпотентно: скетчи разных узлов можно сливать в любом порядке
+ * и сколько угодно раз. Стандартная ошибка оценки 1.04 / sqrt(2^precision).
+ */
+class HyperLogLog {
+    
+    static final int DEFAULT_PRECISION = 12;
+    
+    private final int precision;
+    private final byte[] registers;
+    
+    HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+    
+    HyperLogLog(int precision) {
+        this(precision, new byte[1 << precision]);
+    }
+    
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+    
+    static HyperLogLog fromBytes(byte[] registers) {
+        int precision = Integer.numberOfTrailingZeros(registers.length);
+        if (registers.length == 0 || 1 << precision != registers.length) {
+            throw new IllegalArgumentException("Invalid HyperLogLog register count: " + registers.length);
+        }
+        return new HyperLogLog(precision, registers.clone());
+    }
+    
+    void add(String value) {
+        addHash(hash(value));
+    }
+    
+    void add(long value) {
+        addHash(fmix64(value));
+    }
+    
+    void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog sketches with different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+    
+    long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        // Поправка для малых мощностей: линейный подсчет по пустым регистрам
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+    
+    boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    HyperLogLog copy() {
+        return new HyperLogLog(precision, registers.clone());
+    }
+    
+    byte[] toBytes() {
+        return registers.clone();
+    }
+    
+    private void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long rest = hash << precision;
+        byte rank = (byte) Math.min(Long.numberOfLeadingZeros(rest) + 1, 64 - precision + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+    
+    /**
+     * 64-битный FNV-1a по байтам UTF-8 с финальным перемешиванием MurmurHash3
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return fmix64(hash);
+    }
+    
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HyperLogLog other && precision == other.precision
+                && Arrays.equals(registers, other.registers);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(registers);
+    }
+}
@@ -0,0 +1,162 @@
+package ru.akbirov.petproject.statistics;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица long -> int с открытой адресацией на двух примитивных массивах.
+ * В отличие от HashMap не создает объектов на запись, поэтому миллионы ключей не нагружают GC.
+ * Ключ Long.MIN_VALUE зарезервирован под пустую ячейку. Класс не потокобезопасен.
+ */
+final class LongIntHashMap {
+    
+    private static final long EMPTY = Long.MIN_VALUE;
+    
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    
+    LongIntHashMap(int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    int get(long key, int defaultValue) {
+        int slot = find(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+    
+    void put(long key, int value) {
+        int slot = insertionSlot(key);
+        values[slot] = value;
+    }
+    
+    void addTo(long key, int delta) {
+        int slot = insertionSlot(key);
+        values[slot] += delta;
+    }
+    
+    boolean remove(long key) {
+        int hole = find(key);
+        if (hole < 0) {
+            return false;
+        }
+        // Обратный сдвиг: следующие записи цепочки переносятся в дыру, если их домашняя ячейка не между ними
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        size--;
+        return true;
+    }
+    
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+    
+    /**
+     * Делает таблицу копией other; массивы переиспользуются, если размер таблиц совпадает
+     */
+    void copyFrom(LongIntHashMap other) {
+        if (keys.length != other.keys.length) {
+            allocate(other.keys.length);
+        }
+        System.arraycopy(other.keys, 0, keys, 0, keys.length);
+        System.arraycopy(other.values, 0, values, 0, values.length);
+        size = other.size;
+    }
+    
+    void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+    
+    private int find(long key) {
+        checkKey(key);
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            if (keys[slot] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+    
+    private int insertionSlot(long key) {
+        checkKey(key);
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = 0;
+        size++;
+        return slot;
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+    
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+    
+    private static int tableSize(int expectedSize) {
+        int minimum = Math.max(16, expectedSize * 2);
+        return Integer.highestOneBit(minimum - 1) << 1;
+    }
+    
+    private static void checkKey(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+    }
+    
+    @FunctionalInterface
+    interface EntryConsumer {
+        
+        void accept(long key, int value);
+    }
+}
@@ -0,0 +1,46 @@
+package ru.akbirov.petproject.statistics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.akbirov.petproject.entity.RollupMetric;
+import ru.akbirov.petproject.event.OwnerCreatedEvent;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.UserRegisteredEvent;
+import ru.akbirov.petproject.repository.MetricDailyRollupRepository;
+
+import java.time.LocalDate;
+
+/**
+ * Обновляет дневные роллапы в той же транзакции, что и исходное изменение (BEFORE_COMMIT),
+ * поэтому роллап не расходится с базовыми таблицами при откате.
+ * Дата берется из часов приложения, как и createdAt в @PrePersist сущностей.
+ */
+@Component
+@RequiredArgsConstructor
+public class MetricRollupUpdater {
+    
+    private final MetricDailyRollupRepository rollupRepository;
+    
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onUserRegistered(UserRegisteredEvent event) {
+        increment(RollupMetric.USERS_REGISTERED);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onOwnerCreated(OwnerCreatedEvent event) {
+        increment(RollupMetric.OWNERS_CREATED);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onPetChanged(PetChangedEvent event) {
+        if (event.getBefore() == null && event.getAfter() != null) {
+            increment(RollupMetric.PETS_CREATED);
+        }
+    }
+    
+    private void increment(RollupMetric metric) {
+        rollupRepository.increment(metric.name(), LocalDate.now(), 1);
+    }
+}
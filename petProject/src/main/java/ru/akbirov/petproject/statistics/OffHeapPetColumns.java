@@ -0,0 +1,173 @@
+package ru.akbirov.petproject.statistics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Столбцы питомцев в direct-буферах вне кучи: id и владелец как long, тип как byte,
+ * коды породы и окраса из словарей и дата рождения в днях от эпохи как int.
+ * Строка не является объектом, поэтому сканирование миллионов строк не создает нагрузки на GC.
+ * Удаление переносит последнюю строку на место удаленной, и столбцы остаются плотными.
+ * Очистка и копирование переиспользуют уже выделенные буферы, если их емкости хватает.
+ * Класс не потокобезопасен, доступ синхронизирует PetColumnStore.
+ */
+final class OffHeapPetColumns {
+    
+    static final int ROW_BYTES = Long.BYTES * 2 + Byte.BYTES + Integer.BYTES * 3;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / Long.BYTES;
+    
+    private final LongIntHashMap rowById;
+    private ByteBuffer ids;
+    private ByteBuffer ownerIds;
+    private ByteBuffer types;
+    private ByteBuffer breeds;
+    private ByteBuffer colors;
+    private ByteBuffer birthDays;
+    private int capacity;
+    private int rows;
+    private int minBirthDay = Integer.MAX_VALUE;
+    private int maxBirthDay = Integer.MIN_VALUE;
+    
+    OffHeapPetColumns(int initialCapacity) {
+        capacity = Math.max(16, initialCapacity);
+        rowById = new LongIntHashMap(capacity);
+        ids = allocate(Long.BYTES);
+        ownerIds = allocate(Long.BYTES);
+        types = allocate(Byte.BYTES);
+        breeds = allocate(Integer.BYTES);
+        colors = allocate(Integer.BYTES);
+        birthDays = allocate(Integer.BYTES);
+    }
+    
+    void upsert(long id, byte type, int breed, int color, int birthDay, long ownerId) {
+        int row = rowById.get(id, -1);
+        if (row < 0) {
+            if (rows == capacity) {
+                grow();
+            }
+            row = rows++;
+            rowById.put(id, row);
+            ids.putLong(row * Long.BYTES, id);
+        }
+        ownerIds.putLong(row * Long.BYTES, ownerId);
+        types.put(row, type);
+        breeds.putInt(row * Integer.BYTES, breed);
+        colors.putInt(row * Integer.BYTES, color);
+        birthDays.putInt(row * Integer.BYTES, birthDay);
+        // Границы только расширяются: они нужны для разбиения дат по годам, а не для точного min/max
+        minBirthDay = Math.min(minBirthDay, birthDay);
+        maxBirthDay = Math.max(maxBirthDay, birthDay);
+    }
+    
+    boolean remove(long id) {
+        int row = rowById.get(id, -1);
+        if (row < 0) {
+            return false;
+        }
+        rowById.remove(id);
+        int last = --rows;
+        if (row != last) {
+            long movedId = ids.getLong(last * Long.BYTES);
+            ids.putLong(row * Long.BYTES, movedId);
+            ownerIds.putLong(row * Long.BYTES, ownerIds.getLong(last * Long.BYTES));
+            types.put(row, types.get(last));
+            breeds.putInt(row * Integer.BYTES, breeds.getInt(last * Integer.BYTES));
+            colors.putInt(row * Integer.BYTES, colors.getInt(last * Integer.BYTES));
+            birthDays.putInt(row * Integer.BYTES, birthDays.getInt(last * Integer.BYTES));
+            rowById.put(movedId, row);
+        }
+        return true;
+    }
+    
+    void clear() {
+        rows = 0;
+        rowById.clear();
+        minBirthDay = Integer.MAX_VALUE;
+        maxBirthDay = Integer.MIN_VALUE;
+    }
+    
+    /**
+     * Делает столбцы копией other; новые буферы выделяются, только если строки other не помещаются
+     */
+    void copyFrom(OffHeapPetColumns other) {
+        if (capacity < other.rows) {
+            capacity = other.capacity;
+            ids = allocate(Long.BYTES);
+            ownerIds = allocate(Long.BYTES);
+            types = allocate(Byte.BYTES);
+            breeds = allocate(Integer.BYTES);
+            colors = allocate(Integer.BYTES);
+            birthDays = allocate(Integer.BYTES);
+        }
+        rows = other.rows;
+        ids.put(0, other.ids, 0, rows * Long.BYTES);
+        ownerIds.put(0, other.ownerIds, 0, rows * Long.BYTES);
+        types.put(0, other.types, 0, rows * Byte.BYTES);
+        breeds.put(0, other.breeds, 0, rows * Integer.BYTES);
+        colors.put(0, other.colors, 0, rows * Integer.BYTES);
+        birthDays.put(0, other.birthDays, 0, rows * Integer.BYTES);
+        rowById.copyFrom(other.rowById);
+        minBirthDay = other.minBirthDay;
+        maxBirthDay = other.maxBirthDay;
+    }
+    
+    int rows() {
+        return rows;
+    }
+    
+    long ownerId(int row) {
+        return ownerIds.getLong(row * Long.BYTES);
+    }
+    
+    byte type(int row) {
+        return types.get(row);
+    }
+    
+    int breed(int row) {
+        return breeds.getInt(row * Integer.BYTES);
+    }
+    
+    int color(int row) {
+        return colors.getInt(row * Integer.BYTES);
+    }
+    
+    int birthDay(int row) {
+        return birthDays.getInt(row * Integer.BYTES);
+    }
+    
+    int minBirthDay() {
+        return minBirthDay;
+    }
+    
+    int maxBirthDay() {
+        return maxBirthDay;
+    }
+    
+    long offHeapBytes() {
+        return (long) capacity * ROW_BYTES;
+    }
+    
+    private void grow() {
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("Pet column store is full: " + capacity + " rows");
+        }
+        capacity = (int) Math.min(MAX_CAPACITY, capacity * 2L);
+        ids = copy(ids, Long.BYTES);
+        ownerIds = copy(ownerIds, Long.BYTES);
+        types = copy(types, Byte.BYTES);
+        breeds = copy(breeds, Integer.BYTES);
+        colors = copy(colors, Integer.BYTES);
+        birthDays = copy(birthDays, Integer.BYTES);
+    }
+    
+    private ByteBuffer copy(ByteBuffer column, int width) {
+        ByteBuffer grown = allocate(width);
+        grown.put(0, column, 0, rows * width);
+        // Память старого буфера освобождается, когда GC соберет сам объект ByteBuffer
+        return grown;
+    }
+    
+    private ByteBuffer allocate(int width) {
+        return ByteBuffer.allocateDirect(capacity * width).order(ByteOrder.nativeOrder());
+    }
+}
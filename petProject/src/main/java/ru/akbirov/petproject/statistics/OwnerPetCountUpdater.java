@@ -0,0 +1,41 @@
+package ru.akbirov.petproject.statistics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.PetSnapshot;
+import ru.akbirov.petproject.repository.OwnerRepository;
+
+import java.util.Objects;
+
+/**
+ * Поддерживает owners.pet_count в той же транзакции, что и изменение питомца (BEFORE_COMMIT).
+ * Удаление владельца счетчик не трогает: строка удаляется вместе с его питомцами.
+ */
+@Component
+@RequiredArgsConstructor
+public class OwnerPetCountUpdater {
+    
+    private final OwnerRepository ownerRepository;
+    
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onPetChanged(PetChangedEvent event) {
+        Long beforeOwnerId = ownerId(event.getBefore());
+        Long afterOwnerId = ownerId(event.getAfter());
+        if (Objects.equals(beforeOwnerId, afterOwnerId)) {
+            return;
+        }
+        if (beforeOwnerId != null) {
+            ownerRepository.adjustPetCount(beforeOwnerId, -1);
+        }
+        if (afterOwnerId != null) {
+            ownerRepository.adjustPetCount(afterOwnerId, 1);
+        }
+    }
+    
+    private static Long ownerId(PetSnapshot pet) {
+        return pet == null ? null : pet.getOwnerId();
+    }
+}
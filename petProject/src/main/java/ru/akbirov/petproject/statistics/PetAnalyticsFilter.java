@@ -0,0 +1,22 @@
+package ru.akbirov.petproject.statistics;
+
+import lombok.Builder;
+import lombok.Value;
+import ru.akbirov.petproject.entity.PetType;
+
+import java.time.LocalDate;
+
+/**
+ * Условия аналитического запроса; незаданное поле не ограничивает выборку, даты включительно
+ */
+@Value
+@Builder
+public class PetAnalyticsFilter {
+    
+    PetType type;
+    String breed;
+    String color;
+    Long ownerId;
+    LocalDate bornFrom;
+    LocalDate bornTo;
+}
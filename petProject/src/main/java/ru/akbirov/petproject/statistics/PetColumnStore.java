@@ -0,0 +1,481 @@
+package ru.akbirov.petproject.statistics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.akbirov.petproject.config.StatisticsProperties;
+import ru.akbirov.petproject.dto.FacetValueDto;
+import ru.akbirov.petproject.dto.PetAnalyticsDto;
+import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.event.OwnerDeletedEvent;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.PetSnapshot;
+import ru.akbirov.petproject.repository.PetRepository;
+import ru.akbirov.petproject.repository.projection.PetColumnProjection;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Колоночная копия таблицы pets вне кучи для произвольных аналитических запросов без обращения к базе данных.
+ *
+ * <p>Фильтр один раз переводится в коды словарей, после чего запрос — плотный проход по столбцам
+ * {@link OffHeapPetColumns} со счетом групп в примитивных массивах.
+ *
+ * <p>Хранилище держит две копии столбцов (left-right): запросы без блокировок читают опубликованную,
+ * а события после коммита только кладутся в очередь. Поток применения переносит накопленные события
+ * в резервную копию, публикует ее, дожидается запросов, начатых по прежней копии, и применяет
+ * те же события к ней; она становится резервной. Поэтому ни запросы, ни коммиты не ждут друг друга.
+ *
+ * <p>Хранилище периодически перестраивается из таблицы pets в буферы резервной копии. События,
+ * пришедшие во время перестроения, остаются в очереди и применяются к новой копии перед публикацией:
+ * событие несет полное состояние питомца, поэтому повтор идемпотентен. Порядок слушателей разных
+ * транзакций не совпадает с порядком коммитов, поэтому удаленные id запоминаются и запоздавшее
+ * событие об изменении удаленного питомца не возвращает его; id не переиспользуются.
+ */
+@Component
+public class PetColumnStore {
+
+    static final String OFF_HEAP_METRIC = "statistics.analytics.offheap.bytes";
+    static final String UNKNOWN_COLOR = "UNKNOWN";
+
+    private static final Logger logger = LoggerFactory.getLogger(PetColumnStore.class);
+    private static final PetType[] TYPES = PetType.values();
+    private static final byte ANY_TYPE = -1;
+    private static final int ANY_CODE = -2;
+    private static final long READERS_WAIT_NANOS = 50_000;
+
+    private final PetRepository petRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor applyExecutor;
+    private final Queue<PetChangedEvent> events = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean applyScheduled = new AtomicBoolean();
+    // Применение событий и публикация копий; запросы эту блокировку не берут
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile Columns columns;
+    private volatile boolean loaded;
+    // Поля ниже меняются под writeLock
+    private Columns standby;
+    private boolean rebuilding;
+    // Удаленные id за текущий и прошлый интервал перестроения
+    private Set<Long> deletedIds = new HashSet<>();
+    private Set<Long> previouslyDeletedIds = new HashSet<>();
+
+    public PetColumnStore(PetRepository petRepository, StatisticsProperties properties,
+                          PlatformTransactionManager transactionManager, TaskScheduler taskScheduler,
+                          MeterRegistry meterRegistry) {
+        this.petRepository = petRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.applyExecutor = task -> taskScheduler.schedule(task, Instant.now());
+        this.columns = new Columns(properties.getAnalytics().getInitialCapacity());
+        this.standby = new Columns(properties.getAnalytics().getInitialCapacity());
+        Gauge.builder(OFF_HEAP_METRIC, this, PetColumnStore::offHeapBytes)
+                .description("Direct memory reserved by the pet column store")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPetChanged(PetChangedEvent event) {
+        events.add(event);
+        scheduleApply();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOwnerDeleted(OwnerDeletedEvent event) {
+        event.getRemovedPets().forEach(pet -> events.add(PetChangedEvent.deleted(pet)));
+        scheduleApply();
+    }
+
+    /**
+     * Полное перестроение из таблицы pets; запросы во время него читают текущую копию.
+     * Первое построение выполняет первый запрос.
+     */
+    @Scheduled(fixedDelayString = "#{@statisticsProperties.analytics.rebuildInterval.toMillis()}",
+               initialDelayString = "#{@statisticsProperties.analytics.rebuildInterval.toMillis()}")
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            doRebuild();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    public PetAnalyticsDto query(AnalyticsDimension groupBy, PetAnalyticsFilter filter, int limit) {
+        ensureLoaded();
+        long started = System.nanoTime();
+        Columns current = acquire();
+        try {
+            return scan(current, groupBy, filter, limit, started);
+        } finally {
+            current.readers.decrementAndGet();
+        }
+    }
+
+    long offHeapBytes() {
+        writeLock.lock();
+        try {
+            return columns.data.offHeapBytes() + standby.data.offHeapBytes();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Регистрирует запрос в опубликованной копии; если копию успели заменить, берет новую
+     */
+    private Columns acquire() {
+        while (true) {
+            Columns current = columns;
+            current.readers.incrementAndGet();
+            if (current == columns) {
+                return current;
+            }
+            current.readers.decrementAndGet();
+        }
+    }
+
+    private void scheduleApply() {
+        if (applyScheduled.compareAndSet(false, true)) {
+            applyExecutor.execute(this::applyEvents);
+        }
+    }
+
+    private void applyEvents() {
+        applyScheduled.set(false);
+        writeLock.lock();
+        try {
+            if (rebuilding) {
+                // События дождутся конца перестроения и будут применены к новой копии
+                return;
+            }
+            List<PetChangedEvent> batch = drainEvents();
+            if (batch.isEmpty()) {
+                return;
+            }
+            Columns next = standby;
+            batch.forEach(next::apply);
+            next.builtAt = columns.builtAt;
+            Columns retired = publish(next);
+            batch.forEach(retired::apply);
+            standby = retired;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Публикует копию и ждет завершения запросов, начатых по прежней; после этого прежнюю можно менять
+     */
+    private Columns publish(Columns next) {
+        Columns retired = columns;
+        columns = next;
+        while (retired.readers.get() > 0) {
+            LockSupport.parkNanos(READERS_WAIT_NANOS);
+        }
+        return retired;
+    }
+
+    /**
+     * Забирает накопленные события, отбрасывая запоздавшие изменения уже удаленных питомцев
+     */
+    private List<PetChangedEvent> drainEvents() {
+        List<PetChangedEvent> batch = new ArrayList<>();
+        PetChangedEvent event;
+        while ((event = events.poll()) != null) {
+            PetSnapshot after = event.getAfter();
+            if (after == null) {
+                if (event.getBefore() != null) {
+                    deletedIds.add(event.getBefore().getId());
+                    batch.add(event);
+                }
+            } else if (!deletedIds.contains(after.getId()) && !previouslyDeletedIds.contains(after.getId())) {
+                batch.add(event);
+            }
+        }
+        return batch;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        rebuildLock.lock();
+        try {
+            if (!loaded) {
+                doRebuild();
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void doRebuild() {
+        Columns target;
+        writeLock.lock();
+        try {
+            rebuilding = true;
+            target = standby;
+        } finally {
+            writeLock.unlock();
+        }
+        boolean built = false;
+        try {
+            // Резервную копию никто не читает, поэтому она заполняется заново в своих же буферах
+            target.clear();
+            transactionTemplate.executeWithoutResult(status -> load(target));
+            built = true;
+        } finally {
+            writeLock.lock();
+            try {
+                if (built) {
+                    drainEvents().forEach(target::apply);
+                    target.builtAt = LocalDateTime.now();
+                    Columns retired = publish(target);
+                    retired.copyFrom(target);
+                    standby = retired;
+                    previouslyDeletedIds = deletedIds;
+                    deletedIds = new HashSet<>();
+                    loaded = true;
+                } else {
+                    target.copyFrom(columns);
+                }
+                rebuilding = false;
+            } finally {
+                writeLock.unlock();
+            }
+            scheduleApply();
+        }
+        logger.debug("Pet column store rebuilt: {} rows, {} bytes off-heap",
+                target.data.rows(), target.data.offHeapBytes());
+    }
+
+    private void load(Columns loading) {
+        try (Stream<PetColumnProjection> rows = petRepository.streamColumnRows()) {
+            rows.forEach(row -> loading.upsert(row.getId(), row.getType(), row.getBreed(), row.getColor(),
+                    row.getDateOfBirth(), row.getOwnerId()));
+        }
+    }
+
+    private static PetAnalyticsDto scan(Columns current, AnalyticsDimension groupBy, PetAnalyticsFilter filter,
+                                        int limit, long started) {
+        OffHeapPetColumns data = current.data;
+        int rows = data.rows();
+
+        // Значение, которого нет в словаре, получает код NO_CODE и не совпадает ни с одной строкой
+        byte type = filter.getType() == null ? ANY_TYPE : (byte) filter.getType().ordinal();
+        int breed = filter.getBreed() == null ? ANY_CODE : current.breeds.code(filter.getBreed());
+        int color = filter.getColor() == null ? ANY_CODE : current.colors.code(colorValue(filter.getColor()));
+        boolean anyOwner = filter.getOwnerId() == null;
+        long ownerId = anyOwner ? 0 : filter.getOwnerId();
+        int bornFrom = filter.getBornFrom() == null ? Integer.MIN_VALUE : (int) filter.getBornFrom().toEpochDay();
+        int bornTo = filter.getBornTo() == null ? Integer.MAX_VALUE : (int) filter.getBornTo().toEpochDay();
+
+        int firstYear = rows == 0 ? 0 : LocalDate.ofEpochDay(data.minBirthDay()).getYear();
+        int[] yearStarts = groupBy == AnalyticsDimension.BIRTH_YEAR ? yearStarts(data, firstYear) : null;
+        long[] dense = null;
+        LongIntHashMap sparse = null;
+        if (groupBy != null) {
+            switch (groupBy) {
+                case TYPE -> dense = new long[TYPES.length];
+                case BREED -> dense = new long[current.breeds.size()];
+                case COLOR -> dense = new long[current.colors.size()];
+                case BIRTH_YEAR -> dense = new long[yearStarts.length];
+                case OWNER -> sparse = new LongIntHashMap(1024);
+            }
+        }
+
+        long matched = 0;
+        for (int row = 0; row < rows; row++) {
+            if (type != ANY_TYPE && data.type(row) != type
+                    || breed != ANY_CODE && data.breed(row) != breed
+                    || color != ANY_CODE && data.color(row) != color
+                    || !anyOwner && data.ownerId(row) != ownerId) {
+                continue;
+            }
+            int birthDay = data.birthDay(row);
+            if (birthDay < bornFrom || birthDay > bornTo) {
+                continue;
+            }
+            matched++;
+            if (groupBy != null) {
+                switch (groupBy) {
+                    case TYPE -> dense[data.type(row)]++;
+                    case BREED -> dense[data.breed(row)]++;
+                    case COLOR -> dense[data.color(row)]++;
+                    case BIRTH_YEAR -> dense[yearIndex(yearStarts, birthDay)]++;
+                    case OWNER -> sparse.addTo(data.ownerId(row), 1);
+                }
+            }
+        }
+
+        PetAnalyticsDto.PetAnalyticsDtoBuilder result = PetAnalyticsDto.builder()
+                .matched(matched)
+                .scannedRows((long) rows)
+                .builtAt(current.builtAt);
+        if (groupBy != null) {
+            TopGroups top = new TopGroups(limit, label(groupBy, current, firstYear),
+                    groupBy == AnalyticsDimension.BREED || groupBy == AnalyticsDimension.COLOR);
+            if (dense != null) {
+                for (int key = 0; key < dense.length; key++) {
+                    top.offer(key, dense[key]);
+                }
+            } else {
+                sparse.forEach(top::offer);
+            }
+            result.groupBy(groupBy.name())
+                    .groupCount(top.groupCount)
+                    .groups(top.result());
+        }
+        return result.elapsedMicros((System.nanoTime() - started) / 1000).build();
+    }
+
+    private static int[] yearStarts(OffHeapPetColumns data, int firstYear) {
+        if (data.rows() == 0) {
+            return new int[0];
+        }
+        int lastYear = LocalDate.ofEpochDay(data.maxBirthDay()).getYear();
+        int[] starts = new int[lastYear - firstYear + 1];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = (int) LocalDate.of(firstYear + i, 1, 1).toEpochDay();
+        }
+        return starts;
+    }
+
+    private static int yearIndex(int[] yearStarts, int birthDay) {
+        int index = Arrays.binarySearch(yearStarts, birthDay);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private static LongFunction<String> label(AnalyticsDimension groupBy, Columns current, int firstYear) {
+        return switch (groupBy) {
+            case TYPE -> key -> TYPES[(int) key].name();
+            case BREED -> key -> current.breeds.value((int) key);
+            case COLOR -> key -> current.colors.value((int) key);
+            case BIRTH_YEAR -> key -> String.valueOf(firstYear + key);
+            case OWNER -> String::valueOf;
+        };
+    }
+
+    private static String colorValue(String color) {
+        return color == null || color.isBlank() ? UNKNOWN_COLOR : color;
+    }
+
+    /**
+     * Словари и столбцы одной копии хранилища; запросы учитываются в readers, пока читают копию
+     */
+    private static final class Columns {
+
+        final OffHeapPetColumns data;
+        final ValueDictionary breeds = new ValueDictionary();
+        final ValueDictionary colors = new ValueDictionary();
+        final AtomicInteger readers = new AtomicInteger();
+        volatile LocalDateTime builtAt;
+
+        Columns(int initialCapacity) {
+            data = new OffHeapPetColumns(initialCapacity);
+        }
+
+        void clear() {
+            data.clear();
+            breeds.clear();
+            colors.clear();
+        }
+
+        void copyFrom(Columns other) {
+            data.copyFrom(other.data);
+            breeds.copyFrom(other.breeds);
+            colors.copyFrom(other.colors);
+            builtAt = other.builtAt;
+        }
+
+        void apply(PetChangedEvent event) {
+            PetSnapshot after = event.getAfter();
+            if (after != null) {
+                upsert(after.getId(), after.getType(), after.getBreed(), after.getColor(),
+                        after.getDateOfBirth(), after.getOwnerId());
+            } else if (event.getBefore() != null) {
+                data.remove(event.getBefore().getId());
+            }
+        }
+
+        void upsert(Long id, PetType type, String breed, String color, LocalDate dateOfBirth, Long ownerId) {
+            data.upsert(id, (byte) type.ordinal(), breeds.encode(breed), colors.encode(colorValue(color)),
+                    (int) dateOfBirth.toEpochDay(), ownerId);
+        }
+    }
+
+    /**
+     * Лучшие группы по убыванию числа строк; в куче держится не больше limit групп
+     */
+    private static final class TopGroups {
+
+        private final int limit;
+        private final LongFunction<String> label;
+        private final Comparator<long[]> order;
+        private final PriorityQueue<long[]> heap;
+        private int groupCount;
+
+        TopGroups(int limit, LongFunction<String> label, boolean tieByLabel) {
+            this.limit = limit;
+            this.label = label;
+            Comparator<long[]> byCount = Comparator.comparingLong(entry -> -entry[1]);
+            this.order = tieByLabel
+                    ? byCount.thenComparing(entry -> label.apply(entry[0]))
+                    : byCount.thenComparingLong(entry -> entry[0]);
+            this.heap = new PriorityQueue<>(order.reversed());
+        }
+
+        void offer(long key, long count) {
+            if (count == 0) {
+                return;
+            }
+            groupCount++;
+            long[] entry = {key, count};
+            if (heap.size() < limit) {
+                heap.add(entry);
+            } else if (order.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        List<FacetValueDto> result() {
+            return heap.stream()
+                    .sorted(order)
+                    .map(entry -> FacetValueDto.builder()
+                            .value(label.apply(entry[0]))
+                            .count(entry[1])
+                            .build())
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.akbirov.petproject.statistics;
+
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Хранит последний вычисленный снимок и отдает его читателям без ожидания (stale-while-revalidate).
+ * Одновременно выполняется не более одного обновления; если снимок старше допустимого,
+ * читатель получает текущий снимок, а обновление запускается в фоне.
+ * Синхронно вычисляется только самый первый снимок.
+ */
+public class SnapshotHolder<T> {
+    
+    // Страховка от пропущенного notifyAll; обычно ожидание прерывает завершение обновления
+    private static final long INITIAL_LOAD_POLL_MILLIS = 100;
+    
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotHolder.class);
+    
+    private final Supplier<T> loader;
+    private final Duration maxStaleness;
+    private final Executor refreshExecutor;
+    private final Clock clock;
+    private final Consumer<Snapshot<T>> onRefreshed;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile boolean refreshRequested;
+    private volatile Snapshot<T> current;
+    
+    public SnapshotHolder(Supplier<T> loader, Duration maxStaleness, Executor refreshExecutor, Clock clock) {
+        this(loader, maxStaleness, refreshExecutor, clock, snapshot -> { });
+    }
+    
+    /**
+     * @param onRefreshed вызывается после публикации каждого обновленного снимка в потоке обновления
+     */
+    public SnapshotHolder(Supplier<T> loader, Duration maxStaleness, Executor refreshExecutor, Clock clock,
+                          Consumer<Snapshot<T>> onRefreshed) {
+        this.loader = loader;
+        this.maxStaleness = maxStaleness;
+        this.refreshExecutor = refreshExecutor;
+        this.clock = clock;
+        this.onRefreshed = onRefreshed;
+    }
+    
+    public Snapshot<T> get() {
+        Snapshot<T> snapshot = current;
+        if (snapshot == null) {
+            return loadInitial();
+        }
+        if (snapshot.age(clock.instant()).compareTo(maxStaleness) > 0 && !refreshing.get()) {
+            logger.debug("Snapshot is stale ({}), scheduling background refresh", snapshot.age(clock.instant()));
+            refreshExecutor.execute(this::refresh);
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Вычисляет новый снимок. Если обновление уже выполняется, запрос не теряется: выполняющий поток
+     * после завершения вычислит снимок еще раз, и onRefreshed получит данные не старше запроса.
+     * При ошибке остается предыдущий снимок.
+     *
+     * @return true, если снимок обновлен в этом вызове
+     */
+    public boolean refresh() {
+        refreshRequested = true;
+        boolean refreshed = false;
+        while (refreshRequested && refreshing.compareAndSet(false, true)) {
+            refreshRequested = false;
+            Snapshot<T> snapshot;
+            try {
+                snapshot = new Snapshot<>(loader.get(), clock.instant());
+                current = snapshot;
+            } catch (RuntimeException e) {
+                logger.warn("Snapshot refresh failed, keeping previous snapshot: {}", e.getMessage());
+                continue;
+            } finally {
+                finishRefresh();
+            }
+            refreshed = true;
+            onRefreshed.accept(snapshot);
+        }
+        return refreshed;
+    }
+    
+    /**
+     * Первый снимок вычисляется под тем же флагом, что и фоновое обновление, поэтому два вычисления
+     * не идут одновременно и более старый результат не перезапишет более новый. Если фоновое
+     * обновление уже выполняется, читатель дожидается его результата.
+     */
+    private synchronized Snapshot<T> loadInitial() {
+        while (current == null) {
+            if (refreshing.compareAndSet(false, true)) {
+                try {
+                    // Ошибка первой загрузки передается читателю: отдать ему нечего
+                    current = new Snapshot<>(loader.get(), clock.instant());
+                } finally {
+                    finishRefresh();
+                }
+                if (refreshRequested) {
+                    // Обновление запрошено во время первой загрузки и могло не увидеть ее результат
+                    refreshExecutor.execute(this::refresh);
+                }
+            } else {
+                try {
+                    wait(INITIAL_LOAD_POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the first snapshot", e);
+                }
+            }
+        }
+        return current;
+    }
+    
+    private void finishRefresh() {
+        refreshing.set(false);
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+    
+    @Value
+    public static class Snapshot<T> {
+        
+        T value;
+        Instant computedAt;
+        
+        public Duration age(Instant now) {
+            return Duration.between(computedAt, now);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ru.akbirov.petproject.statistics;
+
+import lombok.Value;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Алгоритм Space-Saving (Metwally, Agrawal, El Abbadi): частые элементы потока в памяти O(capacity).
+ * Для каждого отслеживаемого элемента хранится оценка count и ошибка error,
+ * истинная частота лежит в [count - error, count]. Ошибка не превышает total / capacity,
+ * поэтому любой элемент с частотой больше total / capacity гарантированно отслеживается.
+ *
+ * <p>Удаления поддерживаются так: у отслеживаемого элемента уменьшается оценка,
+ * а для неотслеживаемых хранится верхняя граница частоты {@code unmonitoredBound}
+ * (максимальная оценка вытесненного элемента). Новый элемент получает ошибку, равную этой границе,
+ * поэтому интервал [count - error, count] остается верным и при удалениях.
+ * Удаления неотслеживаемых элементов границу не уменьшают — это исправляет точный пересчет.
+ *
+ * <p>Класс не потокобезопасен.
+ */
+class SpaceSavingSketch {
+    
+    private final int capacity;
+    private final Map<String, Counter> counters = new HashMap<>();
+    private long total;
+    private long unmonitoredBound;
+    
+    SpaceSavingSketch(int capacity) {
+        this.capacity = capacity;
+    }
+    
+    void add(String item) {
+        total++;
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            counter.count++;
+            return;
+        }
+        if (counters.size() >= capacity) {
+            Counter evicted = counters.values().stream()
+                    .min(Comparator.comparingLong((Counter c) -> c.count))
+                    .orElseThrow();
+            counters.remove(evicted.item);
+            unmonitoredBound = Math.max(unmonitoredBound, evicted.count);
+        }
+        counters.put(item, new Counter(item, unmonitoredBound + 1, unmonitoredBound));
+    }
+    
+    void remove(String item) {
+        total = Math.max(0, total - 1);
+        Counter counter = counters.get(item);
+        if (counter == null) {
+            return;
+        }
+        counter.count--;
+        counter.error = Math.min(counter.error, counter.count);
+        if (counter.count <= 0) {
+            counters.remove(item);
+        }
+    }
+    
+    /**
+     * Заменяет состояние точными частотами.
+     *
+     * @param exact       точные частоты top-N элементов (N не больше capacity)
+     * @param total       общее число элементов
+     * @param complete    true, если exact содержит все различные элементы
+     */
+    void reset(Map<String, Long> exact, long total, boolean complete) {
+        counters.clear();
+        exact.forEach((item, count) -> counters.put(item, new Counter(item, count, 0)));
+        this.total = total;
+        // Неотслеживаемые элементы по рангу ниже любого из top-N
+        this.unmonitoredBound = complete ? 0 : exact.values().stream().mapToLong(Long::longValue).min().orElse(0);
+    }
+    
+    List<Entry> top(int limit) {
+        return counters.values().stream()
+                .sorted(Comparator.comparingLong((Counter c) -> c.count).reversed()
+                        .thenComparing(c -> c.item))
+                .limit(limit)
+                .map(c -> new Entry(c.item, c.count, c.error))
+                .toList();
+    }
+    
+    long total() {
+        return total;
+    }
+    
+    /**
+     * Максимально возможная ошибка оценки любого элемента; без удалений не превышает total / capacity
+     */
+    long maxError() {
+        return unmonitoredBound;
+    }
+    
+    @Value
+    static class Entry {
+        
+        String item;
+        long count;
+        long error;
+    }
+    
+    private static final class Counter {
+        
+        private final String item;
+        private long count;
+        private long error;
+        
+        private Counter(String item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
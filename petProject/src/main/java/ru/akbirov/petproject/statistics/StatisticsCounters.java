@@ -0,0 +1,166 @@
+package ru.akbirov.petproject.statistics;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.event.OwnerCreatedEvent;
+import ru.akbirov.petproject.event.OwnerDeletedEvent;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.PetSnapshot;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Счетчики владельцев и питомцев, которые поддерживаются инкрементально по событиям после коммита.
+ * Обновления выполняются под общей read-блокировкой и не мешают друг другу,
+ * write-блокировку берет только сверка с базой данных ({@link #reset}).
+ *
+ * <p>Между коммитом транзакции и применением ее события счетчики отстают от базы, поэтому такие
+ * транзакции учитываются как незавершенные: сверка применяется, только когда их нет.
+ */
+@Component
+public class StatisticsCounters {
+    
+    private final LongAdder totalOwners = new LongAdder();
+    private final LongAdder totalPets = new LongAdder();
+    private final EnumMap<PetType, LongAdder> petsByType = new EnumMap<>(PetType.class);
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicInteger committing = new AtomicInteger();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean initialized;
+    
+    public StatisticsCounters() {
+        for (PetType type : PetType.values()) {
+            petsByType.put(type, new LongAdder());
+        }
+    }
+    
+    /**
+     * Транзакция с изменением счетчиков коммитится: до ее завершения строки уже могут быть видны
+     * в базе, а событие еще не применено. Завершение (коммит или откат) наступает после AFTER_COMMIT.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT,
+            classes = {PetChangedEvent.class, OwnerCreatedEvent.class, OwnerDeletedEvent.class})
+    public void onCommitting() {
+        committing.incrementAndGet();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                committing.decrementAndGet();
+            }
+        });
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPetChanged(PetChangedEvent event) {
+        update(() -> {
+            if (event.getBefore() != null) {
+                removePet(event.getBefore());
+            }
+            if (event.getAfter() != null) {
+                addPet(event.getAfter());
+            }
+        });
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOwnerCreated(OwnerCreatedEvent event) {
+        update(totalOwners::increment);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOwnerDeleted(OwnerDeletedEvent event) {
+        update(() -> {
+            totalOwners.decrement();
+            event.getRemovedPets().forEach(this::removePet);
+        });
+    }
+    
+    public boolean isInitialized() {
+        return initialized;
+    }
+    
+    /**
+     * Номер версии счетчиков; меняется при каждом примененном событии
+     */
+    public long generation() {
+        return generation.get();
+    }
+    
+    /**
+     * Заменяет значения счетчиков точными значениями из базы данных.
+     * Значения отбрасываются, если с момента, когда была взята версия expectedGeneration, применялись
+     * события или сейчас есть закоммиченные, но еще не примененные транзакции: тогда чтение из базы
+     * и счетчики могли учесть разный набор изменений.
+     *
+     * @param force применить без проверки (первая загрузка, когда счетчики иначе остались бы пустыми)
+     * @return true, если значения применены
+     */
+    public boolean reset(long expectedGeneration, long owners, Map<PetType, Long> pets, boolean force) {
+        lock.writeLock().lock();
+        try {
+            if (!force && (generation.get() != expectedGeneration || committing.get() != 0)) {
+                return false;
+            }
+            totalOwners.reset();
+            totalOwners.add(owners);
+            totalPets.reset();
+            for (PetType type : PetType.values()) {
+                long count = pets.getOrDefault(type, 0L);
+                LongAdder adder = petsByType.get(type);
+                adder.reset();
+                adder.add(count);
+                totalPets.add(count);
+            }
+            initialized = true;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public long totalOwners() {
+        return totalOwners.sum();
+    }
+    
+    public long totalPets() {
+        return totalPets.sum();
+    }
+    
+    public long pets(PetType type) {
+        return petsByType.get(type).sum();
+    }
+    
+    private void update(Runnable change) {
+        lock.readLock().lock();
+        try {
+            change.run();
+            generation.incrementAndGet();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private void addPet(PetSnapshot pet) {
+        totalPets.increment();
+        if (pet.getType() != null) {
+            petsByType.get(pet.getType()).increment();
+        }
+    }
+    
+    private void removePet(PetSnapshot pet) {
+        totalPets.decrement();
+        if (pet.getType() != null) {
+            petsByType.get(pet.getType()).decrement();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package ru.akbirov.petproject.statistics;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.akbirov.petproject.config.StatisticsProperties;
+import ru.akbirov.petproject.dto.StatisticsDeltaDto;
+import ru.akbirov.petproject.dto.StatisticsDto;
+import ru.akbirov.petproject.event.OwnerCreatedEvent;
+import ru.akbirov.petproject.event.OwnerDeletedEvent;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.StatisticsRefreshedEvent;
+import ru.akbirov.petproject.service.StatisticsService;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Рассылает изменения статистики подписчикам SSE.
+ * Изменения владельцев и питомцев только помечают статистику устаревшей; не чаще раза за интервал
+ * запрашивается пересчет, а разница с предыдущим событием вычисляется по его завершении,
+ * сериализуется один раз, и одна и та же строка отправляется всем подписчикам.
+ *
+ * <p>Новый подписчик сначала получает событие snapshot с последним разосланным состоянием,
+ * поэтому следующие события delta всегда применяются к согласованной базе.
+ *
+ * <p>Под блокировкой события только ставятся в очереди подписчиков; блокирующая отправка идет
+ * в отдельных потоках, по одной задаче на подписчика. В очередь попадает неизменяемое событие,
+ * а SseEventBuilder создается при каждой отправке: build() меняет сам построитель, поэтому
+ * один экземпляр нельзя отдавать нескольким подписчикам. Подписчик, у которого накопилось
+ * stream.max-pending-events неотправленных событий, считается медленным и отключается.
+ */
+@Component
+public class StatisticsStreamBroadcaster {
+    
+    static final String SNAPSHOT_EVENT = "snapshot";
+    static final String DELTA_EVENT = "delta";
+    
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsStreamBroadcaster.class);
+    
+    private final StatisticsService statisticsService;
+    private final StatisticsProperties properties;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService sendExecutor;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private StatisticsDto lastBroadcast;
+    
+    public StatisticsStreamBroadcaster(StatisticsService statisticsService, StatisticsProperties properties,
+                                       ObjectMapper objectMapper) {
+        this.statisticsService = statisticsService;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sendExecutor = Executors.newFixedThreadPool(properties.getStream().getSendThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "statistics-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(properties.getStream().getEmitterTimeout().toMillis()));
+    }
+    
+    SseEmitter subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        
+        // Первый подсчет идет вне блокировки, чтобы не задерживать рассылку
+        StatisticsDto initial = currentBaseline() == null ? statisticsService.getStatistics() : null;
+        synchronized (this) {
+            if (lastBroadcast == null) {
+                lastBroadcast = initial;
+            }
+            subscriber.offer(StreamEvent.data(SNAPSHOT_EVENT, lastBroadcast));
+            subscribers.add(subscriber);
+        }
+        logger.debug("Statistics stream subscriber added, subscribers: {}", subscribers.size());
+        return emitter;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPetChanged(PetChangedEvent event) {
+        dirty.set(true);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOwnerCreated(OwnerCreatedEvent event) {
+        dirty.set(true);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOwnerDeleted(OwnerDeletedEvent event) {
+        dirty.set(true);
+    }
+    
+    /**
+     * Объединяет все изменения за интервал в один запрос пересчета; событие delta отправляется
+     * по его завершении, даже если пересчет уже выполнялся в другом потоке
+     */
+    @Scheduled(fixedDelayString = "#{@statisticsProperties.stream.pushInterval.toMillis()}")
+    public void push() {
+        if (subscribers.isEmpty() || !dirty.getAndSet(false)) {
+            return;
+        }
+        statisticsService.refreshStatistics();
+    }
+    
+    @EventListener
+    public void onStatisticsRefreshed(StatisticsRefreshedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        StatisticsDto current = statisticsService.getStatistics();
+        synchronized (this) {
+            StatisticsDeltaDto delta = delta(lastBroadcast, current);
+            lastBroadcast = current;
+            if (delta == null) {
+                return;
+            }
+            String payload;
+            try {
+                payload = objectMapper.writeValueAsString(delta);
+            } catch (JsonProcessingException e) {
+                logger.error("Failed to serialize statistics delta", e);
+                return;
+            }
+            broadcast(StreamEvent.data(DELTA_EVENT, payload));
+        }
+    }
+    
+    /**
+     * Комментарий-heartbeat держит соединения через прокси и выявляет отключившихся клиентов
+     */
+    @Scheduled(fixedDelayString = "#{@statisticsProperties.stream.heartbeatInterval.toMillis()}")
+    public synchronized void heartbeat() {
+        if (!subscribers.isEmpty()) {
+            broadcast(StreamEvent.comment("heartbeat"));
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+    }
+    
+    int subscriberCount() {
+        return subscribers.size();
+    }
+    
+    private synchronized StatisticsDto currentBaseline() {
+        return lastBroadcast;
+    }
+    
+    /**
+     * Только ставит событие в очереди подписчиков, поэтому безопасна под блокировкой
+     */
+    private void broadcast(StreamEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.offer(event)) {
+                subscribers.remove(subscriber);
+                logger.warn("Statistics stream subscriber dropped: {} events pending",
+                        properties.getStream().getMaxPendingEvents());
+            }
+        }
+    }
+    
+    static StatisticsDeltaDto delta(StatisticsDto previous, StatisticsDto current) {
+        if (previous == null) {
+            previous = new StatisticsDto();
+        }
+        StatisticsDeltaDto delta = StatisticsDeltaDto.builder()
+                .totalOwners(changed(previous.getTotalOwners(), current.getTotalOwners()))
+                .totalPets(changed(previous.getTotalPets(), current.getTotalPets()))
+                .petsByType(changed(previous.getPetsByType(), current.getPetsByType()))
+                .averagePetsPerOwner(changed(previous.getAveragePetsPerOwner(), current.getAveragePetsPerOwner()))
+                .distinctBreeds(changed(previous.getDistinctBreeds(), current.getDistinctBreeds()))
+                .distinctColors(changed(previous.getDistinctColors(), current.getDistinctColors()))
+                .ownersByPetType(changed(previous.getOwnersByPetType(), current.getOwnersByPetType()))
+                .build();
+        if (delta.equals(new StatisticsDeltaDto())) {
+            return null;
+        }
+        delta.setComputedAt(current.getComputedAt());
+        return delta;
+    }
+    
+    private static <T> T changed(T previous, T current) {
+        return Objects.equals(previous, current) ? null : current;
+    }
+    
+    private static Map<String, Long> changed(Map<String, Long> previous, Map<String, Long> current) {
+        if (current == null) {
+            return null;
+        }
+        Map<String, Long> changes = new LinkedHashMap<>();
+        current.forEach((key, value) -> {
+            if (previous == null || !Objects.equals(previous.get(key), value)) {
+                changes.put(key, value);
+            }
+        });
+        return changes.isEmpty() ? null : changes;
+    }
+    
+    /**
+     * Событие в очередях подписчиков; построитель SSE создается из него заново для каждой отправки
+     */
+    private record StreamEvent(String name, Object data, String comment) {
+        
+        static StreamEvent data(String name, Object data) {
+            return new StreamEvent(name, data, null);
+        }
+        
+        static StreamEvent comment(String comment) {
+            return new StreamEvent(null, null, comment);
+        }
+        
+        SseEmitter.SseEventBuilder toBuilder() {
+            return comment != null
+                    ? SseEmitter.event().comment(comment)
+                    : SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON);
+        }
+    }
+    
+    /**
+     * Очередь неотправленных событий одного подписчика; события отправляются по порядку одной задачей
+     */
+    private class Subscriber {
+        
+        private final SseEmitter emitter;
+        private final Queue<StreamEvent> pending = new ArrayDeque<>();
+        private boolean sending;
+        private boolean closed;
+        
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+        
+        /**
+         * @return false, если подписчик не успевает за рассылкой и отключен
+         */
+        synchronized boolean offer(StreamEvent event) {
+            if (closed) {
+                return false;
+            }
+            if (pending.size() >= properties.getStream().getMaxPendingEvents()) {
+                close();
+                return false;
+            }
+            pending.add(event);
+            if (!sending) {
+                sending = true;
+                sendExecutor.execute(this::drain);
+            }
+            return true;
+        }
+        
+        private void drain() {
+            while (true) {
+                StreamEvent event;
+                synchronized (this) {
+                    event = pending.poll();
+                    if (event == null || closed) {
+                        sending = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(event.toBuilder());
+                } catch (IOException | IllegalStateException e) {
+                    disconnect();
+                    logger.debug("Statistics stream subscriber disconnected: {}", e.getMessage());
+                    return;
+                } catch (RuntimeException e) {
+                    // Иначе задача умрет с sending = true, и подписчик больше не получит событий
+                    disconnect();
+                    emitter.completeWithError(e);
+                    logger.warn("Statistics stream send failed, subscriber dropped", e);
+                    return;
+                }
+            }
+        }
+        
+        private void disconnect() {
+            subscribers.remove(this);
+            synchronized (this) {
+                closed = true;
+                pending.clear();
+                sending = false;
+            }
+        }
+        
+        private void close() {
+            closed = true;
+            pending.clear();
+            // complete ждет завершения текущей отправки, поэтому выполняется в потоке рассылки
+            sendExecutor.execute(emitter::complete);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.akbirov.petproject.statistics;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Интервал агрегации временного ряда; начала интервалов совпадают с date_trunc в PostgreSQL
+ */
+public enum TimeGranularity {
+    DAY,
+    WEEK,
+    MONTH;
+    
+    public LocalDate truncate(LocalDate date) {
+        return switch (this) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+    
+    public LocalDate next(LocalDate bucket) {
+        return switch (this) {
+            case DAY -> bucket.plusDays(1);
+            case WEEK -> bucket.plusWeeks(1);
+            case MONTH -> bucket.plusMonths(1);
+        };
+    }
+    
+    public String sqlUnit() {
+        return name().toLowerCase();
+    }
+}
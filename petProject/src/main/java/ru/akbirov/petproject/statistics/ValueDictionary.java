@@ -0,0 +1,48 @@
+package ru.akbirov.petproject.statistics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Словарное кодирование строкового столбца: каждое различное значение хранится один раз,
+ * а строки столбца хранят его int-код. Коды только добавляются и сбрасываются перестроением.
+ */
+final class ValueDictionary {
+    
+    static final int NO_CODE = -1;
+    
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    
+    int encode(String value) {
+        return codes.computeIfAbsent(value, v -> {
+            values.add(v);
+            return values.size() - 1;
+        });
+    }
+    
+    int code(String value) {
+        return codes.getOrDefault(value, NO_CODE);
+    }
+    
+    String value(int code) {
+        return values.get(code);
+    }
+    
+    int size() {
+        return values.size();
+    }
+    
+    void clear() {
+        codes.clear();
+        values.clear();
+    }
+    
+    void copyFrom(ValueDictionary other) {
+        clear();
+        codes.putAll(other.codes);
+        values.addAll(other.values);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.akbirov.petproject.util;
+
+public class PhoneUtils {
+    
+    private static final int RUSSIAN_PHONE_LENGTH = 11;
+    
+    /**
+     * Приводит номер телефона к каноническому виду из одних цифр: 7XXXXXXXXXX.
+     * Правила совпадают с normalizePhoneNumber из frontend/src/utils/phoneUtils.ts:
+     * ведущая 8 заменяется на 7, к десятизначному номеру добавляется 7
+     */
+    public static String normalize(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        String digits = digitsOnly(phone);
+        if (digits.length() == RUSSIAN_PHONE_LENGTH && digits.startsWith("8")) {
+            return "7" + digits.substring(1);
+        }
+        if (digits.length() == RUSSIAN_PHONE_LENGTH - 1) {
+            return "7" + digits;
+        }
+        return digits;
+    }
+    
+    /**
+     * Приводит начало номера к виду, пригодному для поиска по префиксу нормализованного номера:
+     * ведущая 8 заменяется на 7, а к началу без кода страны (не с 7 и не с 8) добавляется 7,
+     * как к десятизначному номеру в {@link #normalize}
+     */
+    public static String normalizePrefix(String prefix) {
+        if (prefix == null) {
+            return "";
+        }
+        String digits = digitsOnly(prefix);
+        if (digits.isEmpty() || digits.startsWith("7")) {
+            return digits;
+        }
+        if (digits.startsWith("8")) {
+            return "7" + digits.substring(1);
+        }
+        return "7" + digits;
+    }
+    
+    private static String digitsOnly(String value) {
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+}
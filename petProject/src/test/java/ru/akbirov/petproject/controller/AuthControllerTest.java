@@ -10,6 +10,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import ru.akbirov.petproject.dto.AuthResponseDto;
 import ru.akbirov.petproject.dto.LoginDto;
 import ru.akbirov.petproject.dto.RegisterDto;
+import ru.akbirov.petproject.security.LoginThrottle;
 import ru.akbirov.petproject.service.AuthService;
 
 import java.util.Set;
@@ -31,6 +32,9 @@ class AuthControllerTest {
     @MockBean
     private AuthService authService;
 
+    @MockBean
+    private LoginThrottle loginThrottle;
+
     @Test
     void testRegister_Success() throws Exception {
         // Given
@@ -4,6 +4,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -12,11 +13,14 @@ import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import ru.akbirov.petproject.dto.ErrorResponseDto;
 import ru.akbirov.petproject.exception.EmailAlreadyExistsException;
+import ru.akbirov.petproject.exception.InvalidRequestParameterException;
 import ru.akbirov.petproject.exception.OwnerNotFoundException;
+import ru.akbirov.petproject.exception.PasswordHashingBusyException;
 import ru.akbirov.petproject.exception.PetNotFoundException;
 import ru.akbirov.petproject.exception.UserNotFoundException;
 import ru.akbirov.petproject.exception.UsernameAlreadyExistsException;
 
+import java.time.Duration;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -185,5 +189,33 @@ class GlobalExceptionHandlerTest {
         assertNotNull(response.getBody());
         assertEquals("Internal server error", response.getBody().getMessage());
     }
-}
 
+    @Test
+    void testHandleInvalidRequestParameterException() {
+        // Given
+        InvalidRequestParameterException ex = new InvalidRequestParameterException("Parameter 'from' must not be after 'to'");
+
+        // When
+        ResponseEntity<ErrorResponseDto> response = exceptionHandler.handleBadRequestException(ex, request);
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals("Parameter 'from' must not be after 'to'", response.getBody().getMessage());
+    }
+
+    @Test
+    void testHandlePasswordHashingBusyException() {
+        // Given
+        PasswordHashingBusyException ex = new PasswordHashingBusyException(Duration.ofSeconds(2));
+
+        // When
+        ResponseEntity<ErrorResponseDto> response = exceptionHandler.handlePasswordHashingBusyException(ex, request);
+
+        // Then
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("2", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertNotNull(response.getBody());
+        assertEquals("Service Unavailable", response.getBody().getError());
+    }
+}
@@ -1,6 +1,7 @@
 package ru.akbirov.petproject.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -10,6 +11,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import ru.akbirov.petproject.dto.OwnerRequestDto;
 import ru.akbirov.petproject.dto.OwnerResponseDto;
 import ru.akbirov.petproject.dto.PetResponseDto;
@@ -20,6 +23,7 @@ import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -39,6 +43,15 @@ class OwnerControllerTest {
     @MockBean
     private OwnerService ownerService;
 
+    @MockBean
+    private SearchQueryGuard searchQueryGuard;
+
+    @BeforeEach
+    void setUpSearchQueryGuard() {
+        when(searchQueryGuard.execute(anyString(), any())).thenAnswer(invocation ->
+                new WebAsyncTask<>(invocation.<Callable<Object>>getArgument(1)));
+    }
+
     private Authentication createAdminAuthentication() {
         Authentication auth = mock(Authentication.class);
         GrantedAuthority authority = mock(GrantedAuthority.class);
@@ -177,8 +190,12 @@ class OwnerControllerTest {
         when(ownerService.search("John")).thenReturn(List.of(owner));
 
         // When & Then
-        mockMvc.perform(get("/api/owners")
+        MvcResult asyncResult = mockMvc.perform(get("/api/owners")
                         .param("search", "John"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(asyncResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(1))
                 .andExpect(jsonPath("$[0].firstName").value("John"));
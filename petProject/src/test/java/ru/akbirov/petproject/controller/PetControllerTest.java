@@ -1,24 +1,31 @@
 package ru.akbirov.petproject.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import ru.akbirov.petproject.dto.PetRequestDto;
 import ru.akbirov.petproject.dto.PetResponseDto;
+import ru.akbirov.petproject.dto.PetSearchFacetsDto;
 import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.exception.AccessDeniedException;
+import ru.akbirov.petproject.security.AuthenticatedUser;
 import ru.akbirov.petproject.service.PetService;
 
 import java.time.LocalDate;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -38,26 +45,27 @@ class PetControllerTest {
     @MockBean
     private PetService petService;
 
+    @MockBean
+    private SearchQueryGuard searchQueryGuard;
+
+    @BeforeEach
+    void setUpSearchQueryGuard() {
+        when(searchQueryGuard.execute(anyString(), any())).thenAnswer(invocation ->
+                new WebAsyncTask<>(invocation.<Callable<Object>>getArgument(1)));
+    }
+
     private Authentication createAdminAuthentication() {
-        Authentication auth = mock(Authentication.class);
-        GrantedAuthority authority = mock(GrantedAuthority.class);
-        when(authority.getAuthority()).thenReturn("ROLE_ADMIN");
-        java.util.List<GrantedAuthority> authoritiesList = Collections.singletonList(authority);
-        when(auth.getAuthorities()).thenAnswer(invocation -> authoritiesList);
-        when(auth.getName()).thenReturn("admin");
-        when(auth.isAuthenticated()).thenReturn(true);
-        return auth;
+        return authenticationOf(new AuthenticatedUser("admin", "", true,
+                List.of(new SimpleGrantedAuthority("ROLE_ADMIN")), 100L, null));
+    }
+
+    private Authentication createUserAuthentication(String username, Long ownerId) {
+        return authenticationOf(new AuthenticatedUser(username, "", true,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")), 10L, ownerId));
     }
 
-    private Authentication createUserAuthentication(String username) {
-        Authentication auth = mock(Authentication.class);
-        GrantedAuthority authority = mock(GrantedAuthority.class);
-        when(authority.getAuthority()).thenReturn("ROLE_USER");
-        java.util.List<GrantedAuthority> authoritiesList = Collections.singletonList(authority);
-        when(auth.getAuthorities()).thenAnswer(invocation -> authoritiesList);
-        when(auth.getName()).thenReturn(username);
-        when(auth.isAuthenticated()).thenReturn(true);
-        return auth;
+    private static Authentication authenticationOf(AuthenticatedUser principal) {
+        return UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities());
     }
 
     @Test
@@ -133,11 +141,11 @@ class PetControllerTest {
                 .ownerName("Test User")
                 .build();
 
-        when(petService.getMyPets("testuser")).thenReturn(List.of(pet));
+        when(petService.getMyPets(1L)).thenReturn(List.of(pet));
 
         // When & Then
         mockMvc.perform(get("/api/pets/my")
-                        .with(authentication(createUserAuthentication("testuser"))))
+                        .with(authentication(createUserAuthentication("testuser", 1L))))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(1))
                 .andExpect(jsonPath("$[0].name").value("Max"));
@@ -213,13 +221,39 @@ class PetControllerTest {
         when(petService.search("Max")).thenReturn(List.of(pet));
 
         // When & Then
-        mockMvc.perform(get("/api/pets")
+        MvcResult asyncResult = mockMvc.perform(get("/api/pets")
                         .param("search", "Max"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(asyncResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(1))
                 .andExpect(jsonPath("$[0].name").value("Max"));
     }
 
+    @Test
+    void testGetSearchFacets_Success() throws Exception {
+        // Given
+        PetSearchFacetsDto facets = PetSearchFacetsDto.builder()
+                .search("Max")
+                .totalMatches(1L)
+                .byType(java.util.Map.of("DOG", 1L))
+                .topBreeds(List.of())
+                .colors(List.of())
+                .ageBuckets(java.util.Map.of("1-3", 1L))
+                .build();
+
+        when(petService.searchFacets("Max", 10)).thenReturn(facets);
+
+        // When & Then
+        mockMvc.perform(get("/api/pets/facets")
+                        .param("search", "Max"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalMatches").value(1))
+                .andExpect(jsonPath("$.byType.DOG").value(1));
+    }
+
     @Test
     @WithMockUser(roles = "ADMIN")
     void testUpdatePet_AsAdmin_Success() throws Exception {
@@ -243,7 +277,6 @@ class PetControllerTest {
                 .build();
 
         when(petService.updatePet(eq(1L), any(PetRequestDto.class))).thenReturn(responseDto);
-        when(petService.isPetOwner(1L, "admin")).thenReturn(false);
 
         // When & Then
         mockMvc.perform(put("/api/pets/1")
@@ -276,12 +309,11 @@ class PetControllerTest {
                 .ownerName("Owner")
                 .build();
 
-        when(petService.updatePet(eq(1L), any(PetRequestDto.class))).thenReturn(responseDto);
-        when(petService.isPetOwner(1L, "owner")).thenReturn(true);
+        when(petService.updateOwnPet(eq(1L), eq(1L), any(PetRequestDto.class))).thenReturn(responseDto);
 
         // When & Then
         mockMvc.perform(put("/api/pets/1")
-                        .with(authentication(createUserAuthentication("owner")))
+                        .with(authentication(createUserAuthentication("owner", 1L)))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(requestDto)))
                 .andExpect(status().isOk())
@@ -300,11 +332,12 @@ class PetControllerTest {
                 .ownerId(1L)
                 .build();
 
-        when(petService.isPetOwner(1L, "otheruser")).thenReturn(false);
+        when(petService.updateOwnPet(eq(1L), eq(2L), any(PetRequestDto.class)))
+                .thenThrow(new AccessDeniedException("Access denied. You can only edit/delete your own pets."));
 
         // When & Then
         mockMvc.perform(put("/api/pets/1")
-                        .with(authentication(createUserAuthentication("otheruser")))
+                        .with(authentication(createUserAuthentication("otheruser", 2L)))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(requestDto)))
                 .andExpect(status().isForbidden());
@@ -315,7 +348,6 @@ class PetControllerTest {
     void testDeletePet_AsAdmin_Success() throws Exception {
         // Given
         doNothing().when(petService).deletePet(1L);
-        when(petService.isPetOwner(1L, "admin")).thenReturn(false);
 
         // When & Then
         mockMvc.perform(delete("/api/pets/1")
@@ -329,15 +361,15 @@ class PetControllerTest {
     @WithMockUser(username = "owner")
     void testDeletePet_AsOwner_Success() throws Exception {
         // Given
-        doNothing().when(petService).deletePet(1L);
-        when(petService.isPetOwner(1L, "owner")).thenReturn(true);
+        doNothing().when(petService).deleteOwnPet(1L, 1L);
 
         // When & Then
         mockMvc.perform(delete("/api/pets/1")
-                        .with(authentication(createUserAuthentication("owner"))))
+                        .with(authentication(createUserAuthentication("owner", 1L))))
                 .andExpect(status().isNoContent());
 
-        verify(petService, times(1)).deletePet(1L);
+        verify(petService, times(1)).deleteOwnPet(1L, 1L);
+        verify(petService, never()).deletePet(anyLong());
     }
 }
 
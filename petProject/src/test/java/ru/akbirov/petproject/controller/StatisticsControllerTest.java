@@ -7,6 +7,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.akbirov.petproject.dto.StatisticsDto;
 import ru.akbirov.petproject.service.StatisticsService;
+import ru.akbirov.petproject.statistics.StatisticsStreamBroadcaster;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -24,6 +25,9 @@ class StatisticsControllerTest {
     @MockBean
     private StatisticsService statisticsService;
 
+    @MockBean
+    private StatisticsStreamBroadcaster streamBroadcaster;
+
     @Test
     void testGetStatistics_Success() throws Exception {
         // Given
@@ -35,7 +39,7 @@ class StatisticsControllerTest {
         StatisticsDto statisticsDto = StatisticsDto.builder()
                 .totalOwners(10L)
                 .totalPets(10L)
-                .averagePetsPerOwner(1L)
+                .averagePetsPerOwner(1.0)
                 .petsByType(petsByType)
                 .build();
 
@@ -46,7 +50,7 @@ class StatisticsControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.totalOwners").value(10L))
                 .andExpect(jsonPath("$.totalPets").value(10L))
-                .andExpect(jsonPath("$.averagePetsPerOwner").value(1L))
+                .andExpect(jsonPath("$.averagePetsPerOwner").value(1.0))
                 .andExpect(jsonPath("$.petsByType.DOG").value(5L))
                 .andExpect(jsonPath("$.petsByType.CAT").value(3L))
                 .andExpect(jsonPath("$.petsByType.BIRD").value(2L));
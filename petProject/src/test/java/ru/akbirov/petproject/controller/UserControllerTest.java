@@ -6,19 +6,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.akbirov.petproject.dto.ChangePasswordDto;
 import ru.akbirov.petproject.dto.UpdateProfileDto;
 import ru.akbirov.petproject.dto.UserProfileDto;
+import ru.akbirov.petproject.security.AuthenticatedUser;
 import ru.akbirov.petproject.service.UserService;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -47,21 +52,22 @@ class UserControllerTest {
                 .updatedAt(LocalDateTime.now())
                 .build();
 
-        when(userService.getCurrentUserProfile(anyString())).thenReturn(profileDto);
+        when(userService.getCurrentUserProfile(1L, 5L)).thenReturn(profileDto);
 
         // When & Then
         mockMvc.perform(get("/api/users/me")
-                        .param("username", "testuser"))
+                        .with(user(principal())))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.username").value("testuser"))
                 .andExpect(jsonPath("$.email").value("test@example.com"));
     }
 
     @Test
-    void testGetCurrentUser_UsernameMissing() throws Exception {
+    void testGetCurrentUser_NotAuthenticated() throws Exception {
         // When & Then
-        mockMvc.perform(get("/api/users/me"))
-                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/users/me")
+                        .param("username", "testuser"))
+                .andExpect(status().isForbidden());
     }
 
     @Test
@@ -81,11 +87,11 @@ class UserControllerTest {
                 .updatedAt(LocalDateTime.now())
                 .build();
 
-        when(userService.updateUserProfile(anyString(), any(UpdateProfileDto.class))).thenReturn(profileDto);
+        when(userService.updateUserProfile(eq(1L), eq(5L), any(UpdateProfileDto.class))).thenReturn(profileDto);
 
         // When & Then
         mockMvc.perform(put("/api/users/me")
-                        .param("username", "testuser")
+                        .with(user(principal()))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(updateDto)))
                 .andExpect(status().isOk())
@@ -100,15 +106,19 @@ class UserControllerTest {
                 .newPassword("newPassword")
                 .build();
 
-        doNothing().when(userService).changePassword(anyString(), anyString(), anyString());
+        doNothing().when(userService).changePassword(eq(1L), anyString(), anyString());
 
         // When & Then
         mockMvc.perform(put("/api/users/me/password")
-                        .param("username", "testuser")
+                        .with(user(principal()))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(changePasswordDto)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.message").value("Password changed successfully"));
     }
-}
 
+    private static AuthenticatedUser principal() {
+        return new AuthenticatedUser("testuser", "", true,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")), 1L, 5L);
+    }
+}
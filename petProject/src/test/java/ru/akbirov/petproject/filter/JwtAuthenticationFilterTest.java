@@ -1,5 +1,6 @@
 package ru.akbirov.petproject.filter;
 
+import io.jsonwebtoken.security.SignatureException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,18 +10,28 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import ru.akbirov.petproject.security.JwtService;
+import ru.akbirov.petproject.config.JwtProperties;
+import ru.akbirov.petproject.security.AuthenticatedUser;
+import ru.akbirov.petproject.security.OwnerIdCache;
+import ru.akbirov.petproject.security.TokenRevocationList;
+import ru.akbirov.petproject.security.UserStateCache;
+import ru.akbirov.petproject.security.VerifiedJwt;
+import ru.akbirov.petproject.security.VerifiedTokenCache;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.Collections;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -28,11 +39,23 @@ import static org.mockito.Mockito.*;
 class JwtAuthenticationFilterTest {
 
     @Mock
-    private JwtService jwtService;
+    private VerifiedTokenCache verifiedTokenCache;
 
     @Mock
     private UserDetailsService userDetailsService;
 
+    @Mock
+    private UserStateCache userStateCache;
+
+    @Mock
+    private OwnerIdCache ownerIdCache;
+
+    @Mock
+    private TokenRevocationList tokenRevocationList;
+
+    @Spy
+    private JwtProperties jwtProperties = new JwtProperties();
+
     @Mock
     private HttpServletRequest request;
 
@@ -68,7 +91,7 @@ class JwtAuthenticationFilterTest {
 
         // Then
         verify(filterChain, times(1)).doFilter(request, response);
-        verify(jwtService, never()).extractUsername(anyString());
+        verify(verifiedTokenCache, never()).verify(anyString());
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
 
@@ -83,7 +106,7 @@ class JwtAuthenticationFilterTest {
 
         // Then
         verify(filterChain, times(1)).doFilter(request, response);
-        verify(jwtService, never()).extractUsername(anyString());
+        verify(verifiedTokenCache, never()).verify(anyString());
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
 
@@ -92,38 +115,53 @@ class JwtAuthenticationFilterTest {
         // Given
         String token = "valid.jwt.token";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtService.extractUsername(token)).thenReturn("testuser");
+        when(verifiedTokenCache.verify(token)).thenReturn(verifiedJwt("testuser"));
         when(userDetailsService.loadUserByUsername("testuser")).thenReturn(userDetails);
-        when(jwtService.validateToken(token, userDetails)).thenReturn(true);
 
         // When
         jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
 
         // Then
-        verify(jwtService, times(1)).extractUsername(token);
+        verify(verifiedTokenCache, times(1)).verify(token);
         verify(userDetailsService, times(1)).loadUserByUsername("testuser");
-        verify(jwtService, times(1)).validateToken(token, userDetails);
         verify(filterChain, times(1)).doFilter(request, response);
         assertNotNull(SecurityContextHolder.getContext().getAuthentication());
         assertEquals("testuser", SecurityContextHolder.getContext().getAuthentication().getName());
     }
 
+    @Test
+    void testDoFilterInternal_LegacyTokenPrincipalGetsOwnerId() throws ServletException, IOException {
+        // Given
+        String token = "legacy.jwt.token";
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(verifiedTokenCache.verify(token)).thenReturn(verifiedJwt("testuser"));
+        when(userDetailsService.loadUserByUsername("testuser")).thenReturn(new AuthenticatedUser(
+                "testuser", "password", true, userDetails.getAuthorities(), 1L, null));
+        when(ownerIdCache.find(1L)).thenReturn(5L);
+
+        // When
+        jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        AuthenticatedUser principal =
+                (AuthenticatedUser) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        assertEquals(1L, principal.getUserId());
+        assertEquals(5L, principal.getOwnerId());
+    }
+
     @Test
     void testDoFilterInternal_InvalidToken() throws ServletException, IOException {
         // Given
         String token = "invalid.jwt.token";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtService.extractUsername(token)).thenReturn("testuser");
-        when(userDetailsService.loadUserByUsername("testuser")).thenReturn(userDetails);
-        when(jwtService.validateToken(token, userDetails)).thenReturn(false);
+        when(verifiedTokenCache.verify(token)).thenThrow(new SignatureException("JWT signature does not match"));
 
         // When
         jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
 
         // Then
-        verify(jwtService, times(1)).extractUsername(token);
-        verify(userDetailsService, times(1)).loadUserByUsername("testuser");
-        verify(jwtService, times(1)).validateToken(token, userDetails);
+        verify(verifiedTokenCache, times(1)).verify(token);
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
         verify(filterChain, times(1)).doFilter(request, response);
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
@@ -138,7 +176,7 @@ class JwtAuthenticationFilterTest {
 
         // Then
         verify(filterChain, times(1)).doFilter(request, response);
-        verify(jwtService, never()).extractUsername(anyString());
+        verify(verifiedTokenCache, never()).verify(anyString());
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
 
@@ -147,7 +185,7 @@ class JwtAuthenticationFilterTest {
         // Given
         String token = "valid.jwt.token";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtService.extractUsername(token)).thenThrow(new RuntimeException("Token parsing error"));
+        when(verifiedTokenCache.verify(token)).thenThrow(new RuntimeException("Token parsing error"));
 
         // When
         jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
@@ -162,7 +200,7 @@ class JwtAuthenticationFilterTest {
         // Given
         String token = "valid.jwt.token";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtService.extractUsername(token)).thenReturn("testuser");
+        when(verifiedTokenCache.verify(token)).thenReturn(verifiedJwt("testuser"));
         
         // Set authentication in context
         org.springframework.security.core.Authentication existingAuth = 
@@ -174,10 +212,97 @@ class JwtAuthenticationFilterTest {
         jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
 
         // Then
-        verify(jwtService, times(1)).extractUsername(token);
+        verify(verifiedTokenCache, times(1)).verify(token);
         verify(userDetailsService, never()).loadUserByUsername(anyString());
         verify(filterChain, times(1)).doFilter(request, response);
         assertNotNull(SecurityContextHolder.getContext().getAuthentication());
     }
-}
 
+    @Test
+    void testDoFilterInternal_StatelessTokenSkipsUserLookup() throws ServletException, IOException {
+        // Given
+        String token = "stateless.jwt.token";
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(verifiedTokenCache.verify(token)).thenReturn(statelessJwt("testuser", 0));
+        when(userStateCache.isCurrent(1L, 0)).thenReturn(true);
+        when(ownerIdCache.find(1L)).thenReturn(5L);
+
+        // When
+        jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain, times(1)).doFilter(request, response);
+        assertEquals("testuser", SecurityContextHolder.getContext().getAuthentication().getName());
+        assertTrue(SecurityContextHolder.getContext().getAuthentication().getAuthorities()
+                .contains(new SimpleGrantedAuthority("ROLE_USER")));
+        AuthenticatedUser principal =
+                (AuthenticatedUser) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        assertEquals(1L, principal.getUserId());
+        assertEquals(5L, principal.getOwnerId());
+    }
+
+    @Test
+    void testDoFilterInternal_StatelessTokenWithStaleVersionRejected() throws ServletException, IOException {
+        // Given
+        String token = "stateless.jwt.token";
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(verifiedTokenCache.verify(token)).thenReturn(statelessJwt("testuser", 0));
+        when(userStateCache.isCurrent(1L, 0)).thenReturn(false);
+
+        // When
+        jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain, times(1)).doFilter(request, response);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void testDoFilterInternal_NonStatelessTokenWithStaleVersionRejected() throws ServletException, IOException {
+        // Given: jwt.stateless=false, пароль сменен после выдачи токена
+        jwtProperties.setStateless(false);
+        String token = "stateful.jwt.token";
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(verifiedTokenCache.verify(token)).thenReturn(statelessJwt("testuser", 0));
+        when(userDetailsService.loadUserByUsername("testuser")).thenReturn(new AuthenticatedUser(
+                "testuser", "password", true, userDetails.getAuthorities(), 1L, null));
+        when(userStateCache.isCurrent(1L, 0)).thenReturn(false);
+
+        // When
+        jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(userDetailsService, times(1)).loadUserByUsername("testuser");
+        verify(filterChain, times(1)).doFilter(request, response);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void testDoFilterInternal_RevokedTokenRejected() throws ServletException, IOException {
+        // Given
+        String token = "revoked.jwt.token";
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(verifiedTokenCache.verify(token)).thenReturn(statelessJwt("testuser", 0));
+        when(tokenRevocationList.isRevoked("token-id")).thenReturn(true);
+
+        // When
+        jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(userStateCache, never()).isCurrent(any(), any());
+        verify(filterChain, times(1)).doFilter(request, response);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    private static VerifiedJwt verifiedJwt(String username) {
+        Instant now = Instant.now();
+        return new VerifiedJwt(username, now, now.plusSeconds(3600), null, null, null, null);
+    }
+
+    private static VerifiedJwt statelessJwt(String username, int tokenVersion) {
+        Instant now = Instant.now();
+        return new VerifiedJwt(username, now, now.plusSeconds(3600), "token-id", 1L, Set.of("USER"), tokenVersion);
+    }
+}
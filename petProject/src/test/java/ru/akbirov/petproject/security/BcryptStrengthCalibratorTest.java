@@ -0,0 +1,58 @@
+package ru.akbirov.petproject.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BcryptStrengthCalibratorTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    void testCalibrate_PicksLargestStrengthWithinTarget() {
+        // Given: 40 мс на стоимости 10, то есть ~80 на 11, ~160 на 12, ~320 на 13
+        Duration target = Duration.ofMillis(250);
+
+        // When
+        int strength = BcryptStrengthCalibrator.calibrate(target, 10, 14, cost -> 40 * MILLIS);
+
+        // Then
+        assertEquals(12, strength);
+    }
+
+    @Test
+    void testCalibrate_StaysWithinBounds() {
+        // When
+        int slowHost = BcryptStrengthCalibrator.calibrate(Duration.ofMillis(250), 10, 14, cost -> 500 * MILLIS);
+        int fastHost = BcryptStrengthCalibrator.calibrate(Duration.ofMillis(250), 10, 14, cost -> MILLIS);
+
+        // Then
+        assertEquals(10, slowHost);
+        assertEquals(14, fastHost);
+    }
+
+    @Test
+    void testCalibrate_UsesMedianSample() {
+        // Given: прогрев и один выброс не должны влиять на оценку
+        long[] samples = {900 * MILLIS, 900 * MILLIS, 40 * MILLIS, 900 * MILLIS, 40 * MILLIS};
+        int[] call = {0};
+
+        // When
+        int strength = BcryptStrengthCalibrator.calibrate(Duration.ofMillis(250), 10, 14,
+                cost -> samples[call[0]++]);
+
+        // Then
+        assertEquals(12, strength);
+    }
+
+    @Test
+    void testCalibrate_RejectsInvalidRange() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class,
+                () -> BcryptStrengthCalibrator.calibrate(Duration.ofMillis(250), 12, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> BcryptStrengthCalibrator.calibrate(Duration.ofMillis(250), 3, 10));
+    }
+}
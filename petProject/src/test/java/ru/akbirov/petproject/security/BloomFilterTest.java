@@ -0,0 +1,65 @@
+package ru.akbirov.petproject.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void testMightContain_NoFalseNegatives() {
+        // Given
+        BloomFilter bloomFilter = new BloomFilter(1_000, 0.01);
+        String[] values = new String[1_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = UUID.randomUUID().toString();
+            bloomFilter.add(values[i]);
+        }
+
+        // When & Then
+        for (String value : values) {
+            assertTrue(bloomFilter.mightContain(value));
+        }
+        assertFalse(bloomFilter.isSaturated());
+    }
+
+    @Test
+    void testMightContain_FalsePositiveRateWithinBound() {
+        // Given
+        BloomFilter bloomFilter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            bloomFilter.add(UUID.randomUUID().toString());
+        }
+
+        // When
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (bloomFilter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+
+        // Then
+        // Ожидается около 1%; запас вдвое, чтобы тест не зависел от случайных UUID
+        assertTrue(falsePositives < probes * 0.02, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void testIsSaturated_AfterExpectedInsertions() {
+        // Given
+        BloomFilter bloomFilter = new BloomFilter(2, 0.01);
+
+        // When
+        bloomFilter.add("a");
+        bloomFilter.add("b");
+        boolean full = bloomFilter.isSaturated();
+        bloomFilter.add("c");
+
+        // Then
+        assertFalse(full);
+        assertTrue(bloomFilter.isSaturated());
+    }
+}
@@ -0,0 +1,111 @@
+package ru.akbirov.petproject.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.akbirov.petproject.exception.PasswordHashingBusyException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SimpleMeterRegistry meterRegistry;
+    private BoundedPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, Duration.ofSeconds(2), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        encoder.shutdown();
+    }
+
+    @Test
+    void testMatches_RunsOnPoolAndRecordsTimers() {
+        // Given
+        release.countDown();
+
+        // When
+        boolean matches = encoder.matches("secret", "hashed:secret");
+        String encoded = encoder.encode("secret");
+
+        // Then
+        assertTrue(matches);
+        assertEquals("hashed:secret", encoded);
+        assertEquals(1, meterRegistry.get(BoundedPasswordEncoder.HASH_TIME_METRIC)
+                .tag("operation", "matches").timer().count());
+        assertEquals(1, meterRegistry.get(BoundedPasswordEncoder.QUEUE_WAIT_METRIC)
+                .tag("operation", "encode").timer().count());
+    }
+
+    @Test
+    void testEncode_RejectedWhenQueueFull() throws Exception {
+        // Given: один поток занят, одно место в очереди занято
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+        while (meterRegistry.get(BoundedPasswordEncoder.QUEUE_SIZE_METRIC).gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        // When
+        PasswordHashingBusyException rejected = assertThrows(PasswordHashingBusyException.class,
+                () -> encoder.encode("third"));
+
+        // Then
+        assertEquals(Duration.ofSeconds(2), rejected.getRetryAfter());
+        assertEquals(1.0, meterRegistry.get(BoundedPasswordEncoder.REJECTED_METRIC)
+                .tag("operation", "encode").counter().count());
+        release.countDown();
+        assertEquals("hashed:first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hashed:second", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testUpgradeEncoding_Delegates() {
+        // When
+        boolean weak = encoder.upgradeEncoding("weak:secret");
+        boolean current = encoder.upgradeEncoding("hashed:secret");
+
+        // Then
+        assertTrue(weak);
+        assertFalse(current);
+    }
+
+    private class BlockingEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hashed:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals(encode(rawPassword));
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return encodedPassword.startsWith("weak:");
+        }
+    }
+}
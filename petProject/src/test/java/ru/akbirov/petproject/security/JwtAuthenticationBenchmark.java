@@ -0,0 +1,103 @@
+package ru.akbirov.petproject.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.akbirov.petproject.config.JwtProperties;
+import ru.akbirov.petproject.entity.Role;
+import ru.akbirov.petproject.entity.User;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU на проверку токена в одном запросе: прежний путь фильтра (три разбора токена,
+ * ключ и парсер создаются заново на каждый) против одного разбора общим парсером
+ * и против кэша проверенных токенов.
+ *
+ * <p>Запуск после mvn test-compile:
+ * <pre>
+ * mvn -q dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     ru.akbirov.petproject.security.JwtAuthenticationBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtAuthenticationBenchmark {
+
+    private static final String SECRET = "your-256-bit-secret-key-must-be-at-least-32-characters-long";
+
+    private JwtService jwtService;
+    private VerifiedTokenCache verifiedTokenCache;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "expiration", 86400000L);
+        User user = User.builder()
+                .id(1L)
+                .username("testuser")
+                .tokenVersion(0)
+                .build();
+        user.getRoles().add(Role.USER);
+        token = jwtService.generateToken(user);
+        verifiedTokenCache = new VerifiedTokenCache(jwtService, new JwtProperties(), new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public boolean legacyThreeParses() {
+        // extractUsername, затем validateToken: extractUsername и extractExpiration
+        String username = legacyClaims(token).getSubject();
+        return legacyClaims(token).getSubject().equals(username)
+                && !legacyClaims(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public String singleParse() {
+        return jwtService.verify(token).getUsername();
+    }
+    
+    @Benchmark
+    public String cachedVerify() {
+        return verifiedTokenCache.verify(token).getUsername();
+    }
+
+    private static Claims legacyClaims(String token) {
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        return Jwts.parser()
+                .verifyWith(key)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtAuthenticationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -1,38 +1,47 @@
 package ru.akbirov.petproject.security;
 
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.test.util.ReflectionTestUtils;
+import ru.akbirov.petproject.entity.Role;
+import ru.akbirov.petproject.entity.User;
 
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Date;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class JwtServiceTest {
 
+    private static final String SECRET = "your-256-bit-secret-key-must-be-at-least-32-characters-long";
+
     private JwtService jwtService;
-    private UserDetails userDetails;
+    private User user;
 
     @BeforeEach
     void setUp() {
         jwtService = new JwtService();
-        ReflectionTestUtils.setField(jwtService, "secret", "your-256-bit-secret-key-must-be-at-least-32-characters-long");
+        ReflectionTestUtils.setField(jwtService, "secret", SECRET);
         ReflectionTestUtils.setField(jwtService, "expiration", 86400000L); // 24 hours
 
-        userDetails = User.builder()
+        user = User.builder()
+                .id(7L)
                 .username("testuser")
-                .password("password")
-                .authorities(Collections.emptyList())
+                .tokenVersion(3)
                 .build();
+        user.getRoles().add(Role.USER);
     }
 
     @Test
     void testGenerateToken() {
         // When
-        String token = jwtService.generateToken(userDetails);
+        String token = jwtService.generateToken(user);
 
         // Then
         assertNotNull(token);
@@ -40,46 +49,37 @@ class JwtServiceTest {
     }
 
     @Test
-    void testExtractUsername() {
-        // Given
-        String token = jwtService.generateToken(userDetails);
-
-        // When
-        String username = jwtService.extractUsername(token);
-
-        // Then
-        assertEquals("testuser", username);
-    }
-
-    @Test
-    void testValidateToken_ValidToken() {
+    void testVerify_ReturnsClaimsFromSingleParse() {
         // Given
-        String token = jwtService.generateToken(userDetails);
+        String token = jwtService.generateToken(user);
 
         // When
-        boolean isValid = jwtService.validateToken(token, userDetails);
+        VerifiedJwt verified = jwtService.verify(token);
 
         // Then
-        assertTrue(isValid);
+        assertEquals("testuser", verified.getUsername());
+        assertNotNull(verified.getIssuedAt());
+        assertTrue(verified.getExpiresAt().isAfter(Instant.now()));
+        assertTrue(verified.getExpiresAt().isAfter(verified.getIssuedAt()));
+        assertNotNull(verified.getTokenId());
+        assertNotEquals(verified.getTokenId(), jwtService.verify(jwtService.generateToken(user)).getTokenId());
     }
 
     @Test
-    void testValidateToken_InvalidToken() {
+    void testVerify_InvalidToken() {
         // Given
         String invalidToken = "invalid.token.here";
 
         // When & Then
-        assertThrows(Exception.class, () -> {
-            jwtService.validateToken(invalidToken, userDetails);
-        });
+        assertThrows(JwtException.class, () -> jwtService.verify(invalidToken));
     }
 
     @Test
-    void testValidateToken_ExpiredToken() {
+    void testVerify_ExpiredToken() {
         // Given
         // Set expiration to 1ms to create an expired token
         ReflectionTestUtils.setField(jwtService, "expiration", 1L);
-        String token = jwtService.generateToken(userDetails);
+        String token = jwtService.generateToken(user);
 
         // Wait a bit to ensure token is expired
         try {
@@ -88,36 +88,53 @@ class JwtServiceTest {
             Thread.currentThread().interrupt();
         }
 
-        // When
-        boolean isValid = jwtService.validateToken(token, userDetails);
+        // When & Then
+        assertThrows(ExpiredJwtException.class, () -> jwtService.verify(token));
+    }
 
-        // Then
-        assertFalse(isValid);
+    @Test
+    void testVerify_RejectsTokenSignedWithAnotherKey() {
+        // Given
+        JwtService otherService = new JwtService();
+        ReflectionTestUtils.setField(otherService, "secret", "another-256-bit-secret-key-of-at-least-32-characters");
+        ReflectionTestUtils.setField(otherService, "expiration", 86400000L);
+        String foreignToken = otherService.generateToken(user);
+
+        // When & Then
+        assertThrows(JwtException.class, () -> jwtService.verify(foreignToken));
     }
 
     @Test
-    void testExtractExpiration() {
+    void testVerify_ReadsAccountStateClaims() {
         // Given
-        String token = jwtService.generateToken(userDetails);
+        user.getRoles().add(Role.ADMIN);
 
         // When
-        Date expiration = jwtService.extractExpiration(token);
+        VerifiedJwt verified = jwtService.verify(jwtService.generateToken(user));
 
         // Then
-        assertNotNull(expiration);
-        assertTrue(expiration.after(new Date()));
+        assertTrue(verified.hasAccountState());
+        assertEquals(7L, verified.getUserId());
+        assertEquals(Set.of("USER", "ADMIN"), verified.getRoles());
+        assertEquals(3, verified.getTokenVersion());
     }
 
     @Test
-    void testExtractClaim() {
+    void testVerify_LegacyTokenHasNoAccountState() {
         // Given
-        String token = jwtService.generateToken(userDetails);
+        // Токен старого формата: только subject, без uid/roles/ver
+        String legacyToken = Jwts.builder()
+                .subject("testuser")
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + 86400000L))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
 
         // When
-        String subject = jwtService.extractClaim(token, claims -> claims.getSubject());
+        VerifiedJwt verified = jwtService.verify(legacyToken);
 
         // Then
-        assertEquals("testuser", subject);
+        assertEquals("testuser", verified.getUsername());
+        assertFalse(verified.hasAccountState());
     }
 }
-
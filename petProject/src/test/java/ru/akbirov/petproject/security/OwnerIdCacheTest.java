@@ -0,0 +1,77 @@
+package ru.akbirov.petproject.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.akbirov.petproject.config.JwtProperties;
+import ru.akbirov.petproject.event.OwnerDeletedEvent;
+import ru.akbirov.petproject.repository.OwnerRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OwnerIdCacheTest {
+
+    @Mock
+    private OwnerRepository ownerRepository;
+
+    private OwnerIdCache ownerIdCache;
+
+    @BeforeEach
+    void setUp() {
+        ownerIdCache = new OwnerIdCache(ownerRepository, new JwtProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testFind_FoundOwnerLoadedOnce() {
+        // Given
+        when(ownerRepository.findIdByUserId(1L)).thenReturn(Optional.of(5L));
+
+        // When
+        ownerIdCache.find(1L);
+        Long ownerId = ownerIdCache.find(1L);
+
+        // Then
+        assertEquals(5L, ownerId);
+        verify(ownerRepository, times(1)).findIdByUserId(1L);
+    }
+
+    @Test
+    void testFind_MissingOwnerNotCached() {
+        // Given
+        when(ownerRepository.findIdByUserId(1L))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(5L));
+
+        // When
+        Long missing = ownerIdCache.find(1L);
+        Long created = ownerIdCache.find(1L);
+
+        // Then
+        assertNull(missing);
+        assertEquals(5L, created);
+    }
+
+    @Test
+    void testOnOwnerDeleted_EvictsOwner() {
+        // Given
+        when(ownerRepository.findIdByUserId(1L))
+                .thenReturn(Optional.of(5L))
+                .thenReturn(Optional.empty());
+        ownerIdCache.find(1L);
+
+        // When
+        ownerIdCache.onOwnerDeleted(new OwnerDeletedEvent(5L, List.of()));
+
+        // Then
+        assertNull(ownerIdCache.find(1L));
+        verify(ownerRepository, times(2)).findIdByUserId(1L);
+    }
+}
@@ -0,0 +1,123 @@
+package ru.akbirov.petproject.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import ru.akbirov.petproject.config.JwtProperties;
+import ru.akbirov.petproject.entity.RefreshToken;
+import ru.akbirov.petproject.repository.RefreshTokenRepository;
+import ru.akbirov.petproject.security.RefreshTokenService.RefreshTokenGrant;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, new JwtProperties());
+    }
+
+    @Test
+    void testIssue_StoresOnlyHash() {
+        // When
+        String token = refreshTokenService.issue(1L);
+
+        // Then
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertEquals(RefreshTokenService.hash(token), saved.getValue().getTokenHash());
+        assertNotEquals(token, saved.getValue().getTokenHash());
+        assertEquals(1L, saved.getValue().getUserId());
+        assertTrue(saved.getValue().getExpiresAt().isAfter(LocalDateTime.now().plusDays(6)));
+    }
+
+    @Test
+    void testConsume_HotTokenRotatedWithoutSelect() {
+        // Given
+        String token = refreshTokenService.issue(1L, "family-1");
+        when(refreshTokenRepository.revoke(RefreshTokenService.hash(token))).thenReturn(1);
+
+        // When
+        RefreshTokenGrant grant = refreshTokenService.consume(token);
+
+        // Then
+        assertEquals(1L, grant.getUserId());
+        assertEquals("family-1", grant.getFamilyId());
+        verify(refreshTokenRepository, never()).findByTokenHash(anyString());
+        verify(refreshTokenRepository, never()).revokeFamily(anyString());
+    }
+
+    @Test
+    void testConsume_ReusedTokenRevokesFamily() {
+        // Given
+        String token = refreshTokenService.issue(1L, "family-1");
+        String tokenHash = RefreshTokenService.hash(token);
+        when(refreshTokenRepository.revoke(tokenHash)).thenReturn(1, 0);
+        when(refreshTokenRepository.findByTokenHash(tokenHash)).thenReturn(Optional.of(RefreshToken.builder()
+                .tokenHash(tokenHash)
+                .familyId("family-1")
+                .userId(1L)
+                .expiresAt(LocalDateTime.now().plusDays(1))
+                .revoked(true)
+                .build()));
+        refreshTokenService.consume(token);
+
+        // When & Then
+        assertThrows(BadCredentialsException.class, () -> refreshTokenService.consume(token));
+        verify(refreshTokenRepository, times(1)).revokeFamily("family-1");
+    }
+
+    @Test
+    void testConsume_UnknownOrExpiredTokenRejected() {
+        // Given
+        when(refreshTokenRepository.findByTokenHash(RefreshTokenService.hash("unknown"))).thenReturn(Optional.empty());
+        when(refreshTokenRepository.findByTokenHash(RefreshTokenService.hash("expired"))).thenReturn(Optional.of(
+                RefreshToken.builder()
+                        .familyId("family-2")
+                        .userId(2L)
+                        .expiresAt(LocalDateTime.now().minusMinutes(1))
+                        .build()));
+
+        // When & Then
+        assertThrows(BadCredentialsException.class, () -> refreshTokenService.consume("unknown"));
+        assertThrows(BadCredentialsException.class, () -> refreshTokenService.consume("expired"));
+        verify(refreshTokenRepository, never()).revoke(anyString());
+        verify(refreshTokenRepository, never()).save(any(RefreshToken.class));
+    }
+
+    @Test
+    void testRevoke_RevokesFamilyAndIgnoresUnknownToken() {
+        // Given
+        String token = refreshTokenService.issue(1L, "family-1");
+        when(refreshTokenRepository.findByTokenHash(RefreshTokenService.hash(token))).thenReturn(Optional.of(
+                RefreshToken.builder()
+                        .familyId("family-1")
+                        .userId(1L)
+                        .expiresAt(LocalDateTime.now().plusDays(1))
+                        .build()));
+        when(refreshTokenRepository.findByTokenHash(RefreshTokenService.hash("unknown"))).thenReturn(Optional.empty());
+
+        // When
+        refreshTokenService.revoke(token);
+        refreshTokenService.revoke("unknown");
+
+        // Then
+        verify(refreshTokenRepository, times(1)).revokeFamily("family-1");
+    }
+}
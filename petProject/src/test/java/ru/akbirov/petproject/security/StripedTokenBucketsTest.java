@@ -0,0 +1,56 @@
+package ru.akbirov.petproject.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedTokenBucketsTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void testTryAcquire_BurstThenRefill() {
+        // Given: 3 попытки подряд, одна восстанавливается за 10 секунд
+        StripedTokenBuckets buckets = new StripedTokenBuckets(4, 100, 3, 10 * SECOND);
+
+        // When & Then
+        assertEquals(0, buckets.tryAcquire("alice", 0));
+        assertEquals(0, buckets.tryAcquire("alice", 0));
+        assertEquals(0, buckets.tryAcquire("alice", 0));
+        assertEquals(10 * SECOND, buckets.tryAcquire("alice", 0));
+        assertEquals(4 * SECOND, buckets.tryAcquire("alice", 6 * SECOND));
+        assertEquals(0, buckets.tryAcquire("alice", 10 * SECOND));
+        assertEquals(0, buckets.tryAcquire("bob", 10 * SECOND));
+    }
+
+    @Test
+    void testTryAcquire_MemoryBoundedByLruEviction() {
+        // Given
+        StripedTokenBuckets buckets = new StripedTokenBuckets(2, 10, 1, SECOND);
+
+        // When
+        for (int i = 0; i < 1_000; i++) {
+            buckets.tryAcquire("attacker-" + i, 0);
+        }
+
+        // Then
+        assertTrue(buckets.size() <= 10);
+    }
+
+    @Test
+    void testEvictIdle_RemovesOnlyFullBuckets() {
+        // Given
+        StripedTokenBuckets buckets = new StripedTokenBuckets(4, 100, 2, SECOND);
+        buckets.tryAcquire("idle", 0);
+        buckets.tryAcquire("active", 5 * SECOND);
+
+        // When
+        int evicted = buckets.evictIdle(5 * SECOND);
+
+        // Then
+        assertEquals(1, evicted);
+        assertEquals(1, buckets.size());
+    }
+}
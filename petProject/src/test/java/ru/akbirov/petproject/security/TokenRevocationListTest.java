@@ -0,0 +1,124 @@
+package ru.akbirov.petproject.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.akbirov.petproject.config.JwtProperties;
+import ru.akbirov.petproject.entity.RevokedToken;
+import ru.akbirov.petproject.event.AccessTokenRevokedEvent;
+import ru.akbirov.petproject.repository.RevokedTokenRepository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationListTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private final List<Object> publishedEvents = new ArrayList<>();
+
+    private TokenRevocationList tokenRevocationList;
+
+    @BeforeEach
+    void setUp() {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.getRevocation().setExpectedTokens(4);
+        tokenRevocationList = new TokenRevocationList(revokedTokenRepository, jwtProperties,
+                publishedEvents::add, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testRevoke_AppliedLocallyAfterCommitAndStored() {
+        // When
+        tokenRevocationList.revoke("token-1", 1L, Instant.now().plusSeconds(900));
+
+        // Then: до коммита отзыв в памяти не виден
+        assertFalse(tokenRevocationList.isRevoked("token-1"));
+        commit();
+        assertTrue(tokenRevocationList.isRevoked("token-1"));
+        assertFalse(tokenRevocationList.isRevoked("token-2"));
+        assertFalse(tokenRevocationList.isRevoked(null));
+        verify(revokedTokenRepository, times(1))
+                .insertIfAbsent(eq("token-1"), eq(1L), any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testRefresh_LoadsAllThenOnlyNewRows() {
+        // Given
+        when(revokedTokenRepository.findByExpiresAtAfter(any(LocalDateTime.class)))
+                .thenReturn(List.of(revokedToken("token-1", LocalDateTime.now().plusMinutes(10))));
+        when(revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(List.of(revokedToken("token-2", LocalDateTime.now().plusMinutes(10))));
+        tokenRevocationList.refresh();
+
+        // When
+        tokenRevocationList.refresh();
+
+        // Then
+        verify(revokedTokenRepository, times(1)).findByExpiresAtAfter(any(LocalDateTime.class));
+        assertTrue(tokenRevocationList.isRevoked("token-1"));
+        assertTrue(tokenRevocationList.isRevoked("token-2"));
+    }
+
+    @Test
+    void testRefresh_DropsExpiredTokens() {
+        // Given
+        when(revokedTokenRepository.findByExpiresAtAfter(any(LocalDateTime.class))).thenReturn(List.of());
+        when(revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(List.of());
+        tokenRevocationList.refresh();
+        tokenRevocationList.revoke("expired", 1L, Instant.now().minusSeconds(1));
+        tokenRevocationList.revoke("active", 1L, Instant.now().plusSeconds(900));
+        commit();
+
+        // When
+        tokenRevocationList.refresh();
+
+        // Then
+        assertFalse(tokenRevocationList.isRevoked("expired"));
+        assertTrue(tokenRevocationList.isRevoked("active"));
+    }
+
+    @Test
+    void testRevoke_GrowsBeyondExpectedTokens() {
+        // When
+        for (int i = 0; i < 20; i++) {
+            tokenRevocationList.revoke("token-" + i, 1L, Instant.now().plusSeconds(900));
+        }
+        commit();
+
+        // Then
+        for (int i = 0; i < 20; i++) {
+            assertTrue(tokenRevocationList.isRevoked("token-" + i));
+        }
+    }
+
+    /**
+     * Доставляет события так, как это делает слушатель после коммита
+     */
+    private void commit() {
+        publishedEvents.forEach(event -> tokenRevocationList.onAccessTokenRevoked((AccessTokenRevokedEvent) event));
+        publishedEvents.clear();
+    }
+
+    private static RevokedToken revokedToken(String tokenId, LocalDateTime expiresAt) {
+        return RevokedToken.builder()
+                .tokenId(tokenId)
+                .userId(1L)
+                .expiresAt(expiresAt)
+                .revokedAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -1,22 +1,24 @@
 package ru.akbirov.petproject.security;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import ru.akbirov.petproject.config.JwtProperties;
 import ru.akbirov.petproject.entity.Role;
 import ru.akbirov.petproject.entity.User;
+import ru.akbirov.petproject.event.UserAccountChangedEvent;
 import ru.akbirov.petproject.repository.UserRepository;
 
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class UserDetailsServiceImplTest {
@@ -24,13 +26,15 @@ class UserDetailsServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
-    @InjectMocks
+    private SimpleMeterRegistry meterRegistry;
     private UserDetailsServiceImpl userDetailsService;
 
     private User user;
 
     @BeforeEach
     void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userDetailsService = new UserDetailsServiceImpl(userRepository, new JwtProperties(), meterRegistry);
         user = User.builder()
                 .id(1L)
                 .username("testuser")
@@ -100,5 +104,38 @@ class UserDetailsServiceImplTest {
         assertTrue(userDetails.getAuthorities().stream()
                 .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN")));
     }
-}
 
+    @Test
+    void testLoadUserByUsername_CachedUntilAccountChanged() {
+        // Given
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        userDetailsService.loadUserByUsername("testuser");
+        userDetailsService.loadUserByUsername("testuser");
+
+        // When
+        user.setPassword("newEncodedPassword");
+        userDetailsService.onUserAccountChanged(new UserAccountChangedEvent("testuser", 1L));
+        UserDetails reloaded = userDetailsService.loadUserByUsername("testuser");
+
+        // Then
+        verify(userRepository, times(2)).findByUsername("testuser");
+        assertEquals("newEncodedPassword", reloaded.getPassword());
+        assertEquals(1.0, meterRegistry.get("cache.gets")
+                .tag("cache", UserDetailsServiceImpl.CACHE_NAME).tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void testLoadUserByUsername_ReturnsCopyOfCachedUser() {
+        // Given
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        UserDetails first = userDetailsService.loadUserByUsername("testuser");
+
+        // When
+        ((org.springframework.security.core.userdetails.User) first).eraseCredentials();
+        UserDetails second = userDetailsService.loadUserByUsername("testuser");
+
+        // Then
+        assertEquals("encodedPassword", second.getPassword());
+    }
+}
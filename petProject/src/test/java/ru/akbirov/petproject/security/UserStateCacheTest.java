@@ -0,0 +1,124 @@
+package ru.akbirov.petproject.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.akbirov.petproject.config.JwtProperties;
+import ru.akbirov.petproject.event.UserAccountChangedEvent;
+import ru.akbirov.petproject.repository.UserRepository;
+import ru.akbirov.petproject.repository.projection.UserStateProjection;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserStateCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserStateCache userStateCache;
+
+    @BeforeEach
+    void setUp() {
+        userStateCache = new UserStateCache(userRepository, new JwtProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testIsCurrent_ServedFromCacheAfterRefresh() {
+        // Given
+        when(userRepository.findAllStates()).thenReturn(List.of(state(1L, true, 0), state(2L, false, 0)));
+        userStateCache.refresh();
+
+        // When
+        boolean current = userStateCache.isCurrent(1L, 0);
+        boolean disabled = userStateCache.isCurrent(2L, 0);
+        boolean staleVersion = userStateCache.isCurrent(1L, 1);
+
+        // Then
+        assertTrue(current);
+        assertFalse(disabled);
+        assertFalse(staleVersion);
+        verify(userRepository, never()).findStateById(any());
+    }
+
+    @Test
+    void testRefresh_AppliesOnlyChangedRowsAfterFirstLoad() {
+        // Given
+        when(userRepository.findAllStates()).thenReturn(List.of(state(1L, true, 0)));
+        when(userRepository.findStatesUpdatedSince(any(LocalDateTime.class))).thenReturn(List.of(state(1L, true, 1)));
+        userStateCache.refresh();
+
+        // When
+        userStateCache.refresh();
+
+        // Then
+        verify(userRepository, times(1)).findAllStates();
+        assertFalse(userStateCache.isCurrent(1L, 0));
+        assertTrue(userStateCache.isCurrent(1L, 1));
+    }
+
+    @Test
+    void testIsCurrent_UnknownUserLoadedOnce() {
+        // Given
+        when(userRepository.findStateById(5L)).thenReturn(Optional.of(state(5L, true, 2)));
+        when(userRepository.findStateById(6L)).thenReturn(Optional.empty());
+
+        // When
+        boolean first = userStateCache.isCurrent(5L, 2);
+        boolean second = userStateCache.isCurrent(5L, 2);
+        boolean missing = userStateCache.isCurrent(6L, 0);
+        boolean missingAgain = userStateCache.isCurrent(6L, 0);
+
+        // Then: отсутствие пользователя тоже кэшируется
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(missing);
+        assertFalse(missingAgain);
+        verify(userRepository, times(1)).findStateById(5L);
+        verify(userRepository, times(1)).findStateById(6L);
+    }
+
+    @Test
+    void testOnUserAccountChanged_ReloadsUserState() {
+        // Given
+        when(userRepository.findStateById(1L))
+                .thenReturn(Optional.of(state(1L, true, 0)))
+                .thenReturn(Optional.of(state(1L, true, 1)));
+        userStateCache.isCurrent(1L, 0);
+
+        // When
+        userStateCache.onUserAccountChanged(new UserAccountChangedEvent("testuser", 1L));
+
+        // Then
+        assertFalse(userStateCache.isCurrent(1L, 0));
+        verify(userRepository, times(2)).findStateById(1L);
+    }
+
+    private static UserStateProjection state(Long id, boolean enabled, int tokenVersion) {
+        return new UserStateProjection() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            @Override
+            public Integer getTokenVersion() {
+                return tokenVersion;
+            }
+        };
+    }
+}
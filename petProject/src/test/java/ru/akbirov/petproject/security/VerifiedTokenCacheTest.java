@@ -0,0 +1,77 @@
+package ru.akbirov.petproject.security;
+
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.akbirov.petproject.config.JwtProperties;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VerifiedTokenCacheTest {
+
+    @Mock
+    private JwtService jwtService;
+
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @BeforeEach
+    void setUp() {
+        verifiedTokenCache = new VerifiedTokenCache(jwtService, new JwtProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testVerify_RepeatedTokenVerifiedOnce() {
+        // Given
+        VerifiedJwt verified = verifiedJwt(Instant.now().plusSeconds(3600));
+        when(jwtService.verify("token-a")).thenReturn(verified);
+        when(jwtService.verify("token-b")).thenReturn(verified);
+
+        // When
+        verifiedTokenCache.verify("token-a");
+        verifiedTokenCache.verify("token-a");
+        VerifiedJwt result = verifiedTokenCache.verify("token-b");
+
+        // Then
+        assertSame(verified, result);
+        verify(jwtService, times(1)).verify("token-a");
+        verify(jwtService, times(1)).verify("token-b");
+    }
+
+    @Test
+    void testVerify_ExpiredEntryNotServed() {
+        // Given
+        when(jwtService.verify("token"))
+                .thenReturn(verifiedJwt(Instant.now().minusSeconds(1)))
+                .thenThrow(new SignatureException("expired"));
+
+        // When
+        verifiedTokenCache.verify("token");
+
+        // Then
+        assertThrows(SignatureException.class, () -> verifiedTokenCache.verify("token"));
+        verify(jwtService, times(2)).verify("token");
+    }
+
+    @Test
+    void testVerify_InvalidTokenNotCached() {
+        // Given
+        when(jwtService.verify("bad")).thenThrow(new SignatureException("JWT signature does not match"));
+
+        // When & Then
+        assertThrows(SignatureException.class, () -> verifiedTokenCache.verify("bad"));
+        assertThrows(SignatureException.class, () -> verifiedTokenCache.verify("bad"));
+        verify(jwtService, times(2)).verify("bad");
+    }
+
+    private static VerifiedJwt verifiedJwt(Instant expiresAt) {
+        return new VerifiedJwt("testuser", Instant.now(), expiresAt, null, null, null, null);
+    }
+}
@@ -3,11 +3,17 @@ package ru.akbirov.petproject.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.hibernate.exception.ConstraintViolationException;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.akbirov.petproject.dto.AuthResponseDto;
 import ru.akbirov.petproject.dto.LoginDto;
 import ru.akbirov.petproject.dto.RegisterDto;
@@ -15,16 +21,33 @@ import ru.akbirov.petproject.entity.Owner;
 import ru.akbirov.petproject.entity.Role;
 import ru.akbirov.petproject.entity.User;
 import ru.akbirov.petproject.exception.EmailAlreadyExistsException;
+import ru.akbirov.petproject.exception.PhoneAlreadyExistsException;
 import ru.akbirov.petproject.exception.UsernameAlreadyExistsException;
 import ru.akbirov.petproject.repository.OwnerRepository;
 import ru.akbirov.petproject.repository.UserRepository;
+import ru.akbirov.petproject.dto.RefreshTokenRequestDto;
+import ru.akbirov.petproject.security.JwtService;
+import ru.akbirov.petproject.security.RefreshTokenService;
+import ru.akbirov.petproject.security.RefreshTokenService.RefreshTokenGrant;
+import ru.akbirov.petproject.security.TokenRevocationList;
+import ru.akbirov.petproject.security.VerifiedJwt;
 import ru.akbirov.petproject.service.impl.AuthServiceImpl;
 
+import io.jsonwebtoken.ExpiredJwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,6 +62,24 @@ class AuthServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private JwtService jwtService;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private TokenRevocationList tokenRevocationList;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private AuthServiceImpl authService;
 
@@ -48,6 +89,10 @@ class AuthServiceTest {
 
     @BeforeEach
     void setUp() {
+        // Транзакция выполняется сразу в потоке теста
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
         registerDto = RegisterDto.builder()
                 .username("testuser")
                 .email("test@example.com")
@@ -75,10 +120,10 @@ class AuthServiceTest {
     @Test
     void testRegister_Success() {
         // Given
-        when(userRepository.existsByUsername(anyString())).thenReturn(false);
-        when(userRepository.existsByEmail(anyString())).thenReturn(false);
         when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
         when(userRepository.save(any(User.class))).thenReturn(user);
+        when(jwtService.generateToken(user)).thenReturn("jwt-token");
+        when(refreshTokenService.issue(1L)).thenReturn("refresh-token");
         when(ownerRepository.save(any(Owner.class))).thenAnswer(invocation -> {
             Owner owner = invocation.getArgument(0);
             owner.setId(1L);
@@ -94,8 +139,8 @@ class AuthServiceTest {
         assertEquals("testuser", response.getUsername());
         assertEquals("test@example.com", response.getEmail());
         assertTrue(response.getRoles().contains("USER"));
-        verify(userRepository, times(1)).existsByUsername("testuser");
-        verify(userRepository, times(1)).existsByEmail("test@example.com");
+        verify(userRepository, never()).existsByUsername(anyString());
+        verify(userRepository, never()).existsByEmail(anyString());
         verify(userRepository, times(1)).save(any(User.class));
         verify(ownerRepository, times(1)).save(any(Owner.class));
         verify(passwordEncoder, times(1)).encode("password123");
@@ -104,29 +149,56 @@ class AuthServiceTest {
     @Test
     void testRegister_UsernameAlreadyExists() {
         // Given
-        when(userRepository.existsByUsername(anyString())).thenReturn(true);
+        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
+        when(userRepository.save(any(User.class))).thenThrow(uniqueViolation("users_username_key"));
 
         // When & Then
         assertThrows(UsernameAlreadyExistsException.class, () -> {
             authService.register(registerDto);
         });
-        verify(userRepository, times(1)).existsByUsername("testuser");
-        verify(userRepository, never()).save(any(User.class));
+        verify(ownerRepository, never()).save(any(Owner.class));
+        verify(refreshTokenService, never()).issue(anyLong());
     }
 
     @Test
     void testRegister_EmailAlreadyExists() {
         // Given
-        when(userRepository.existsByUsername(anyString())).thenReturn(false);
-        when(userRepository.existsByEmail(anyString())).thenReturn(true);
+        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
+        when(userRepository.save(any(User.class))).thenThrow(uniqueViolation("users_email_key"));
 
         // When & Then
         assertThrows(EmailAlreadyExistsException.class, () -> {
             authService.register(registerDto);
         });
-        verify(userRepository, times(1)).existsByUsername("testuser");
-        verify(userRepository, times(1)).existsByEmail("test@example.com");
-        verify(userRepository, never()).save(any(User.class));
+        verify(ownerRepository, never()).save(any(Owner.class));
+    }
+
+    @Test
+    void testRegister_PhoneAlreadyExists() {
+        // Given
+        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
+        when(userRepository.save(any(User.class))).thenReturn(user);
+        when(ownerRepository.save(any(Owner.class))).thenThrow(uniqueViolation("idx_owners_phone_normalized"));
+
+        // When & Then
+        assertThrows(PhoneAlreadyExistsException.class, () -> {
+            authService.register(registerDto);
+        });
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void testRegister_OtherIntegrityViolationIsRethrown() {
+        // Given
+        DataIntegrityViolationException violation = uniqueViolation("owners_user_id_fkey");
+        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
+        when(userRepository.save(any(User.class))).thenThrow(violation);
+
+        // When & Then
+        DataIntegrityViolationException thrown = assertThrows(DataIntegrityViolationException.class, () -> {
+            authService.register(registerDto);
+        });
+        assertSame(violation, thrown);
     }
 
     @Test
@@ -134,6 +206,8 @@ class AuthServiceTest {
         // Given
         when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
         when(passwordEncoder.matches(anyString(), anyString())).thenReturn(true);
+        when(jwtService.generateToken(user)).thenReturn("jwt-token");
+        when(refreshTokenService.issue(1L)).thenReturn("refresh-token");
 
         // When
         AuthResponseDto response = authService.login(loginDto);
@@ -146,6 +220,47 @@ class AuthServiceTest {
         assertTrue(response.getRoles().contains("USER"));
         verify(userRepository, times(1)).findByUsername("testuser");
         verify(passwordEncoder, times(1)).matches("password123", "encodedPassword");
+        verify(passwordEncoder, never()).encode(anyString());
+    }
+
+    @Test
+    void testLogin_UpgradesWeakPasswordHash() {
+        // Given
+        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        when(passwordEncoder.matches(anyString(), anyString())).thenReturn(true);
+        when(passwordEncoder.upgradeEncoding("encodedPassword")).thenReturn(true);
+        when(passwordEncoder.encode("password123")).thenReturn("strongerPassword");
+        when(userRepository.replacePasswordHash(eq(1L), eq("encodedPassword"), eq("strongerPassword"),
+                any(LocalDateTime.class))).thenReturn(1);
+        when(jwtService.generateToken(user)).thenReturn("jwt-token");
+        when(refreshTokenService.issue(1L)).thenReturn("refresh-token");
+
+        // When
+        authService.login(loginDto);
+
+        // Then: новый хеш записывается условно, версия токенов не меняется
+        verify(userRepository, never()).save(any(User.class));
+        verify(eventPublisher, never()).publishEvent(any());
+        assertEquals(1.0, meterRegistry.get("auth.password.upgrades").counter().count());
+    }
+
+    @Test
+    void testLogin_ConcurrentlyChangedHashNotCountedAsUpgrade() {
+        // Given: хеш сменили между чтением и заменой
+        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        when(passwordEncoder.matches(anyString(), anyString())).thenReturn(true);
+        when(passwordEncoder.upgradeEncoding("encodedPassword")).thenReturn(true);
+        when(passwordEncoder.encode("password123")).thenReturn("strongerPassword");
+        when(userRepository.replacePasswordHash(eq(1L), eq("encodedPassword"), eq("strongerPassword"),
+                any(LocalDateTime.class))).thenReturn(0);
+        when(jwtService.generateToken(user)).thenReturn("jwt-token");
+        when(refreshTokenService.issue(1L)).thenReturn("refresh-token");
+
+        // When
+        authService.login(loginDto);
+
+        // Then
+        assertNull(meterRegistry.find("auth.password.upgrades").counter());
     }
 
     @Test
@@ -189,5 +304,72 @@ class AuthServiceTest {
         verify(userRepository, times(1)).findByUsername("testuser");
         verify(passwordEncoder, times(1)).matches("password123", "encodedPassword");
     }
-}
 
+    @Test
+    void testRefresh_RotatesWithinFamily() {
+        // Given
+        when(refreshTokenService.consume("old-refresh"))
+                .thenReturn(new RefreshTokenGrant(1L, "family-1", LocalDateTime.now().plusDays(1)));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(refreshTokenService.issue(1L, "family-1")).thenReturn("new-refresh");
+        when(jwtService.generateToken(user)).thenReturn("jwt-token");
+
+        // When
+        AuthResponseDto response = authService.refresh(new RefreshTokenRequestDto("old-refresh"));
+
+        // Then
+        assertEquals("jwt-token", response.getToken());
+        assertEquals("new-refresh", response.getRefreshToken());
+        assertEquals("testuser", response.getUsername());
+        verify(passwordEncoder, never()).matches(anyString(), anyString());
+    }
+
+    @Test
+    void testRefresh_UserDisabled() {
+        // Given
+        user.setEnabled(false);
+        when(refreshTokenService.consume("old-refresh"))
+                .thenReturn(new RefreshTokenGrant(1L, "family-1", LocalDateTime.now().plusDays(1)));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        // When & Then
+        assertThrows(BadCredentialsException.class, () ->
+                authService.refresh(new RefreshTokenRequestDto("old-refresh")));
+        verify(refreshTokenService, never()).issue(anyLong(), anyString());
+        verify(jwtService, never()).generateToken(any(User.class));
+    }
+
+    @Test
+    void testLogout_RevokesAccessTokenAndRefreshFamily() {
+        // Given
+        Instant expiresAt = Instant.now().plusSeconds(900);
+        when(jwtService.verify("jwt-token")).thenReturn(
+                new VerifiedJwt("testuser", Instant.now(), expiresAt, "token-id", 1L, Set.of("USER"), 0));
+
+        // When
+        authService.logout("jwt-token", "refresh-token");
+
+        // Then
+        verify(tokenRevocationList, times(1)).revoke("token-id", 1L, expiresAt);
+        verify(refreshTokenService, times(1)).revoke("refresh-token");
+    }
+
+    @Test
+    void testLogout_InvalidAccessTokenStillRevokesRefreshToken() {
+        // Given
+        when(jwtService.verify("expired-token")).thenThrow(new ExpiredJwtException(null, null, "JWT expired"));
+
+        // When
+        authService.logout("expired-token", "refresh-token");
+
+        // Then
+        verify(tokenRevocationList, never()).revoke(anyString(), anyLong(), any(Instant.class));
+        verify(refreshTokenService, times(1)).revoke("refresh-token");
+    }
+
+    private static DataIntegrityViolationException uniqueViolation(String constraintName) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("duplicate key value violates unique constraint",
+                        new SQLException("duplicate key", "23505"), constraintName));
+    }
+}
@@ -3,20 +3,28 @@ package ru.akbirov.petproject.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import ru.akbirov.petproject.dto.OwnerLeaderboardEntryDto;
 import ru.akbirov.petproject.dto.OwnerRequestDto;
 import ru.akbirov.petproject.dto.OwnerResponseDto;
 import ru.akbirov.petproject.dto.PetResponseDto;
 import ru.akbirov.petproject.entity.Owner;
 import ru.akbirov.petproject.entity.Pet;
 import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.event.OwnerDeletedEvent;
 import ru.akbirov.petproject.exception.EmailAlreadyExistsException;
+import ru.akbirov.petproject.exception.InvalidRequestParameterException;
 import ru.akbirov.petproject.exception.OwnerNotFoundException;
+import ru.akbirov.petproject.exception.PhoneAlreadyExistsException;
 import ru.akbirov.petproject.mapper.OwnerMapper;
 import ru.akbirov.petproject.mapper.PetMapper;
 import ru.akbirov.petproject.repository.OwnerRepository;
+import ru.akbirov.petproject.repository.projection.OwnerPetCountProjection;
 import ru.akbirov.petproject.service.impl.OwnerServiceImpl;
 
 import java.time.LocalDate;
@@ -42,6 +50,9 @@ class OwnerServiceTest {
     @Mock
     private PetMapper petMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private OwnerServiceImpl ownerService;
 
@@ -232,28 +243,31 @@ class OwnerServiceTest {
     @Test
     void testDeleteOwner_Success() {
         // Given
-        when(ownerRepository.existsById(1L)).thenReturn(true);
-        doNothing().when(ownerRepository).deleteById(1L);
+        owner.getPets().add(pet);
+        when(ownerRepository.findById(1L)).thenReturn(Optional.of(owner));
 
         // When
         ownerService.deleteOwner(1L);
 
         // Then
-        verify(ownerRepository, times(1)).existsById(1L);
-        verify(ownerRepository, times(1)).deleteById(1L);
+        ArgumentCaptor<OwnerDeletedEvent> event = ArgumentCaptor.forClass(OwnerDeletedEvent.class);
+        verify(ownerRepository, times(1)).delete(owner);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertEquals(1L, event.getValue().getOwnerId());
+        assertEquals(PetType.DOG, event.getValue().getRemovedPets().get(0).getType());
     }
 
     @Test
     void testDeleteOwner_NotFound() {
         // Given
-        when(ownerRepository.existsById(1L)).thenReturn(false);
+        when(ownerRepository.findById(1L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(OwnerNotFoundException.class, () -> {
             ownerService.deleteOwner(1L);
         });
-        verify(ownerRepository, times(1)).existsById(1L);
-        verify(ownerRepository, never()).deleteById(anyLong());
+        verify(ownerRepository, times(1)).findById(1L);
+        verify(ownerRepository, never()).delete(any(Owner.class));
     }
 
     @Test
@@ -305,5 +319,60 @@ class OwnerServiceTest {
         assertEquals(1, result.size());
         verify(ownerRepository, times(1)).search("John");
     }
-}
 
+    @Test
+    void testFindByPhonePrefix_UsesNormalizedPrefix() {
+        // Given
+        when(ownerRepository.findTop20ByPhoneNormalizedStartingWithOrderByPhoneNormalizedAsc("7999"))
+                .thenReturn(List.of(owner));
+        when(ownerMapper.toResponseDto(any(Owner.class))).thenReturn(ownerResponseDto);
+
+        // When
+        List<OwnerResponseDto> result = ownerService.findByPhonePrefix("8 (999)");
+
+        // Then
+        assertEquals(1, result.size());
+        verify(ownerRepository, times(1)).findTop20ByPhoneNormalizedStartingWithOrderByPhoneNormalizedAsc("7999");
+    }
+
+    @Test
+    void testCreateOwner_PhoneAlreadyExists() {
+        // Given
+        when(ownerRepository.existsByEmail(ownerRequestDto.getEmail())).thenReturn(false);
+        when(ownerRepository.existsByPhoneNormalized("71234567890")).thenReturn(true);
+
+        // When & Then
+        assertThrows(PhoneAlreadyExistsException.class, () -> ownerService.createOwner(ownerRequestDto));
+        verify(ownerRepository, never()).save(any(Owner.class));
+    }
+
+    @Test
+    void testGetLeaderboard_RanksRowsInRepositoryOrder() {
+        // Given
+        OwnerPetCountProjection first = mock(OwnerPetCountProjection.class);
+        when(first.getId()).thenReturn(2L);
+        when(first.getPetCount()).thenReturn(5);
+        OwnerPetCountProjection second = mock(OwnerPetCountProjection.class);
+        when(second.getId()).thenReturn(1L);
+        when(second.getPetCount()).thenReturn(3);
+        when(ownerRepository.findLeaderboard(PageRequest.of(0, 2))).thenReturn(List.of(first, second));
+
+        // When
+        List<OwnerLeaderboardEntryDto> result = ownerService.getLeaderboard(2);
+
+        // Then
+        assertEquals(2, result.size());
+        assertEquals(1, result.get(0).getRank());
+        assertEquals(2L, result.get(0).getOwnerId());
+        assertEquals(5, result.get(0).getPetCount());
+        assertEquals(2, result.get(1).getRank());
+        assertEquals(1L, result.get(1).getOwnerId());
+    }
+
+    @Test
+    void testGetLeaderboard_RejectsLimitOutOfRange() {
+        assertThrows(InvalidRequestParameterException.class, () -> ownerService.getLeaderboard(0));
+        assertThrows(InvalidRequestParameterException.class, () -> ownerService.getLeaderboard(101));
+        verify(ownerRepository, never()).findLeaderboard(any());
+    }
+}
@@ -6,22 +6,28 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import ru.akbirov.petproject.dto.PetRequestDto;
 import ru.akbirov.petproject.dto.PetResponseDto;
+import ru.akbirov.petproject.dto.PetSearchFacetsDto;
 import ru.akbirov.petproject.entity.Owner;
 import ru.akbirov.petproject.entity.Pet;
 import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.exception.AccessDeniedException;
 import ru.akbirov.petproject.exception.OwnerNotFoundException;
 import ru.akbirov.petproject.exception.PetNotFoundException;
 import ru.akbirov.petproject.mapper.PetMapper;
 import ru.akbirov.petproject.repository.OwnerRepository;
 import ru.akbirov.petproject.repository.PetRepository;
+import ru.akbirov.petproject.repository.projection.PetFacetProjection;
 import ru.akbirov.petproject.service.impl.PetServiceImpl;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -39,6 +45,9 @@ class PetServiceTest {
     @Mock
     private PetMapper petMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private PetServiceImpl petService;
 
@@ -216,8 +225,7 @@ class PetServiceTest {
                 .ownerId(1L)
                 .build();
 
-        when(petRepository.findById(1L)).thenReturn(Optional.of(pet));
-        when(ownerRepository.findById(1L)).thenReturn(Optional.of(owner));
+        when(petRepository.findWithOwnerById(1L)).thenReturn(Optional.of(pet));
         when(petRepository.save(any(Pet.class))).thenReturn(pet);
         when(petMapper.toResponseDto(any(Pet.class))).thenReturn(petResponseDto);
 
@@ -226,64 +234,117 @@ class PetServiceTest {
 
         // Then
         assertNotNull(result);
-        verify(petRepository, times(1)).findById(1L);
-        verify(ownerRepository, times(1)).findById(1L);
+        verify(petRepository, times(1)).findWithOwnerById(1L);
+        verify(ownerRepository, never()).findById(any());
         verify(petRepository, times(1)).save(any(Pet.class));
     }
 
     @Test
     void testUpdatePet_PetNotFound() {
         // Given
-        when(petRepository.findById(1L)).thenReturn(Optional.empty());
+        when(petRepository.findWithOwnerById(1L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(PetNotFoundException.class, () -> {
             petService.updatePet(1L, petRequestDto);
         });
-        verify(petRepository, times(1)).findById(1L);
+        verify(petRepository, times(1)).findWithOwnerById(1L);
         verify(petRepository, never()).save(any(Pet.class));
     }
 
     @Test
     void testUpdatePet_OwnerNotFound() {
         // Given
-        when(petRepository.findById(1L)).thenReturn(Optional.of(pet));
-        when(ownerRepository.findById(1L)).thenReturn(Optional.empty());
+        petRequestDto.setOwnerId(2L);
+        when(petRepository.findWithOwnerById(1L)).thenReturn(Optional.of(pet));
+        when(ownerRepository.findById(2L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(OwnerNotFoundException.class, () -> {
             petService.updatePet(1L, petRequestDto);
         });
-        verify(petRepository, times(1)).findById(1L);
-        verify(ownerRepository, times(1)).findById(1L);
+        verify(petRepository, times(1)).findWithOwnerById(1L);
+        verify(ownerRepository, times(1)).findById(2L);
         verify(petRepository, never()).save(any(Pet.class));
     }
 
     @Test
     void testDeletePet_Success() {
         // Given
-        when(petRepository.existsById(1L)).thenReturn(true);
-        doNothing().when(petRepository).deleteById(1L);
+        when(petRepository.findWithOwnerById(1L)).thenReturn(Optional.of(pet));
 
         // When
         petService.deletePet(1L);
 
         // Then
-        verify(petRepository, times(1)).existsById(1L);
-        verify(petRepository, times(1)).deleteById(1L);
+        verify(petRepository, times(1)).findWithOwnerById(1L);
+        verify(petRepository, times(1)).delete(pet);
+        verify(eventPublisher, times(1)).publishEvent(any(PetChangedEvent.class));
     }
 
     @Test
     void testDeletePet_NotFound() {
         // Given
-        when(petRepository.existsById(1L)).thenReturn(false);
+        when(petRepository.findWithOwnerById(1L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(PetNotFoundException.class, () -> {
             petService.deletePet(1L);
         });
-        verify(petRepository, times(1)).existsById(1L);
-        verify(petRepository, never()).deleteById(anyLong());
+        verify(petRepository, times(1)).findWithOwnerById(1L);
+        verify(petRepository, never()).delete(any(Pet.class));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testUpdateOwnPet_Success() {
+        // Given
+        when(petRepository.findWithOwnerById(1L)).thenReturn(Optional.of(pet));
+        when(petRepository.save(any(Pet.class))).thenReturn(pet);
+        when(petMapper.toResponseDto(any(Pet.class))).thenReturn(petResponseDto);
+
+        // When
+        PetResponseDto result = petService.updateOwnPet(1L, 1L, petRequestDto);
+
+        // Then
+        assertNotNull(result);
+        verify(petRepository, times(1)).findWithOwnerById(1L);
+        verify(petRepository, never()).findById(any());
+        verifyNoInteractions(ownerRepository);
+    }
+
+    @Test
+    void testUpdateOwnPet_NotOwner() {
+        // Given
+        when(petRepository.findWithOwnerById(1L)).thenReturn(Optional.of(pet));
+
+        // When & Then
+        assertThrows(AccessDeniedException.class, () -> petService.updateOwnPet(1L, 2L, petRequestDto));
+        verify(petRepository, never()).save(any(Pet.class));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testDeleteOwnPet_Success() {
+        // Given
+        when(petRepository.findWithOwnerById(1L)).thenReturn(Optional.of(pet));
+
+        // When
+        petService.deleteOwnPet(1L, 1L);
+
+        // Then
+        verify(petRepository, times(1)).delete(pet);
+        verify(eventPublisher, times(1)).publishEvent(any(PetChangedEvent.class));
+    }
+
+    @Test
+    void testDeleteOwnPet_NotOwner() {
+        // Given
+        when(petRepository.findWithOwnerById(1L)).thenReturn(Optional.of(pet));
+
+        // When & Then
+        assertThrows(AccessDeniedException.class, () -> petService.deleteOwnPet(1L, 2L));
+        verify(petRepository, never()).delete(any(Pet.class));
     }
 
     @Test
@@ -301,5 +362,78 @@ class PetServiceTest {
         assertEquals(1, result.size());
         verify(petRepository, times(1)).search("Buddy");
     }
-}
 
+    @Test
+    void testSearchFacets_CountsAllFacetsInOnePass() {
+        // Given
+        when(petRepository.streamSearchFacets("a")).thenReturn(Stream.of(
+                facetRow(PetType.DOG, "Labrador", "Black", LocalDate.now().minusMonths(6)),
+                facetRow(PetType.DOG, "Labrador", "Golden", LocalDate.now().minusYears(2)),
+                facetRow(PetType.CAT, "Siamese", null, LocalDate.now().minusYears(13))
+        ));
+
+        // When
+        PetSearchFacetsDto result = petService.searchFacets("a", 1);
+
+        // Then
+        assertEquals(3L, result.getTotalMatches());
+        assertEquals(2L, result.getByType().get("DOG"));
+        assertEquals(1L, result.getByType().get("CAT"));
+        assertEquals(0L, result.getByType().get("FISH"));
+        assertEquals(1, result.getTopBreeds().size());
+        assertEquals("Labrador", result.getTopBreeds().get(0).getValue());
+        assertEquals(2L, result.getTopBreeds().get(0).getCount());
+        assertEquals(3, result.getColors().size());
+        assertEquals(1L, result.getAgeBuckets().get("0-1"));
+        assertEquals(1L, result.getAgeBuckets().get("1-3"));
+        assertEquals(1L, result.getAgeBuckets().get("12+"));
+        verify(petRepository, times(1)).streamSearchFacets("a");
+        verify(petRepository, never()).search(anyString());
+    }
+
+    @Test
+    void testGetMyPets_QueriesPetsByOwnerIdOnly() {
+        // Given
+        when(petRepository.findWithOwnerByOwnerId(1L)).thenReturn(List.of(pet));
+        when(petMapper.toResponseDto(pet)).thenReturn(petResponseDto);
+
+        // When
+        List<PetResponseDto> result = petService.getMyPets(1L);
+
+        // Then
+        assertEquals(1, result.size());
+        verify(petRepository, times(1)).findWithOwnerByOwnerId(1L);
+        verifyNoInteractions(ownerRepository);
+    }
+
+    @Test
+    void testGetMyPets_NoOwnerProfile() {
+        // When & Then
+        assertThrows(OwnerNotFoundException.class, () -> petService.getMyPets(null));
+        verifyNoInteractions(petRepository);
+    }
+
+    private PetFacetProjection facetRow(PetType type, String breed, String color, LocalDate dateOfBirth) {
+        return new PetFacetProjection() {
+            @Override
+            public PetType getType() {
+                return type;
+            }
+
+            @Override
+            public String getBreed() {
+                return breed;
+            }
+
+            @Override
+            public String getColor() {
+                return color;
+            }
+
+            @Override
+            public LocalDate getDateOfBirth() {
+                return dateOfBirth;
+            }
+        };
+    }
+}
@@ -1,18 +1,37 @@
 package ru.akbirov.petproject.service;
 
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.TaskScheduler;
+import ru.akbirov.petproject.config.StatisticsProperties;
+import ru.akbirov.petproject.dto.AgeDistributionDto;
+import ru.akbirov.petproject.dto.AgeStatsDto;
 import ru.akbirov.petproject.dto.StatisticsDto;
-import ru.akbirov.petproject.entity.Pet;
+import ru.akbirov.petproject.dto.TimeSeriesDto;
 import ru.akbirov.petproject.entity.PetType;
-import ru.akbirov.petproject.repository.OwnerRepository;
+import ru.akbirov.petproject.entity.RollupMetric;
+import ru.akbirov.petproject.event.OwnerCreatedEvent;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.PetSnapshot;
+import ru.akbirov.petproject.exception.InvalidRequestParameterException;
+import ru.akbirov.petproject.repository.MetricDailyRollupRepository;
 import ru.akbirov.petproject.repository.PetRepository;
+import ru.akbirov.petproject.repository.projection.PetAgeCountProjection;
+import ru.akbirov.petproject.repository.projection.PetTypeCountProjection;
+import ru.akbirov.petproject.repository.projection.TimeSeriesPointProjection;
 import ru.akbirov.petproject.service.impl.StatisticsServiceImpl;
+import ru.akbirov.petproject.statistics.BreedHeavyHitters;
+import ru.akbirov.petproject.statistics.CardinalitySketches;
+import ru.akbirov.petproject.statistics.PetColumnStore;
+import ru.akbirov.petproject.statistics.StatisticsCounters;
+import ru.akbirov.petproject.statistics.TimeGranularity;
 
+import java.time.LocalDate;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -22,33 +41,42 @@ import static org.mockito.Mockito.*;
 class StatisticsServiceTest {
 
     @Mock
-    private OwnerRepository ownerRepository;
+    private PetRepository petRepository;
 
     @Mock
-    private PetRepository petRepository;
+    private MetricDailyRollupRepository rollupRepository;
+
+    @Mock
+    private BreedHeavyHitters breedHeavyHitters;
+
+    @Mock
+    private CardinalitySketches cardinalitySketches;
+
+    @Mock
+    private PetColumnStore petColumnStore;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private StatisticsProperties statisticsProperties = new StatisticsProperties();
+
+    @Spy
+    private StatisticsCounters counters = new StatisticsCounters();
 
     @InjectMocks
     private StatisticsServiceImpl statisticsService;
 
-    @BeforeEach
-    void setUp() {
-        // Setup common mocks
-    }
-
     @Test
     void testGetStatistics_Success() {
         // Given
-        when(ownerRepository.count()).thenReturn(10L);
-        when(petRepository.count()).thenReturn(25L);
-        when(petRepository.findByType(PetType.DOG)).thenReturn(List.of(
-                Pet.builder().id(1L).type(PetType.DOG).build(),
-                Pet.builder().id(2L).type(PetType.DOG).build()
-        ));
-        when(petRepository.findByType(PetType.CAT)).thenReturn(List.of(
-                Pet.builder().id(3L).type(PetType.CAT).build()
+        when(petRepository.countPetsByType()).thenReturn(List.of(
+                row(10L, "DOG", 15L),
+                row(10L, "CAT", 10L)
         ));
-        when(petRepository.findByType(PetType.BIRD)).thenReturn(List.of());
-        when(petRepository.findByType(PetType.OTHER)).thenReturn(List.of());
 
         // When
         StatisticsDto result = statisticsService.getStatistics();
@@ -57,21 +85,35 @@ class StatisticsServiceTest {
         assertNotNull(result);
         assertEquals(10L, result.getTotalOwners());
         assertEquals(25L, result.getTotalPets());
-        assertEquals(2L, result.getPetsByType().get("DOG"));
-        assertEquals(1L, result.getPetsByType().get("CAT"));
+        assertEquals(15L, result.getPetsByType().get("DOG"));
+        assertEquals(10L, result.getPetsByType().get("CAT"));
         assertEquals(0L, result.getPetsByType().get("BIRD"));
         assertEquals(0L, result.getPetsByType().get("OTHER"));
-        assertEquals(2L, result.getAveragePetsPerOwner()); // 25 / 10 = 2
-        verify(ownerRepository, times(1)).count();
-        verify(petRepository, times(1)).count();
+        assertEquals(2.5, result.getAveragePetsPerOwner());
+        verify(petRepository, times(1)).countPetsByType();
+        verify(petRepository, never()).findByType(any());
+        verify(petRepository, never()).count();
+    }
+
+    @Test
+    void testGetStatistics_NoPets() {
+        // Given
+        when(petRepository.countPetsByType()).thenReturn(List.of(row(3L, null, 0L)));
+
+        // When
+        StatisticsDto result = statisticsService.getStatistics();
+
+        // Then
+        assertEquals(3L, result.getTotalOwners());
+        assertEquals(0L, result.getTotalPets());
+        assertEquals(0.0, result.getAveragePetsPerOwner());
+        assertEquals(7, result.getPetsByType().size());
     }
 
     @Test
     void testGetStatistics_NoOwners() {
         // Given
-        when(ownerRepository.count()).thenReturn(0L);
-        when(petRepository.count()).thenReturn(0L);
-        when(petRepository.findByType(any(PetType.class))).thenReturn(List.of());
+        when(petRepository.countPetsByType()).thenReturn(List.of(row(0L, null, 0L)));
 
         // When
         StatisticsDto result = statisticsService.getStatistics();
@@ -80,44 +122,209 @@ class StatisticsServiceTest {
         assertNotNull(result);
         assertEquals(0L, result.getTotalOwners());
         assertEquals(0L, result.getTotalPets());
-        assertEquals(0L, result.getAveragePetsPerOwner());
-        verify(ownerRepository, times(1)).count();
-        verify(petRepository, times(1)).count();
+        assertEquals(0.0, result.getAveragePetsPerOwner());
     }
 
     @Test
-    void testGetStatistics_AllPetTypes() {
+    void testGetStatistics_AverageIsRoundedDecimal() {
         // Given
-        when(ownerRepository.count()).thenReturn(5L);
-        when(petRepository.count()).thenReturn(10L);
-        when(petRepository.findByType(PetType.DOG)).thenReturn(List.of(
-                Pet.builder().id(1L).type(PetType.DOG).build(),
-                Pet.builder().id(2L).type(PetType.DOG).build(),
-                Pet.builder().id(3L).type(PetType.DOG).build()
-        ));
-        when(petRepository.findByType(PetType.CAT)).thenReturn(List.of(
-                Pet.builder().id(4L).type(PetType.CAT).build(),
-                Pet.builder().id(5L).type(PetType.CAT).build()
+        when(petRepository.countPetsByType()).thenReturn(List.of(
+                row(3L, "DOG", 1L),
+                row(3L, "FISH", 1L),
+                row(3L, "OTHER", 2L)
         ));
-        when(petRepository.findByType(PetType.BIRD)).thenReturn(List.of(
-                Pet.builder().id(6L).type(PetType.BIRD).build()
+
+        // When
+        StatisticsDto result = statisticsService.getStatistics();
+
+        // Then
+        assertEquals(4L, result.getTotalPets());
+        assertEquals(1.33, result.getAveragePetsPerOwner());
+    }
+
+    @Test
+    void testGetStatistics_ServedFromCountersAfterFirstLoad() {
+        // Given
+        when(petRepository.countPetsByType()).thenReturn(List.of(row(1L, "DOG", 1L)));
+        statisticsService.getStatistics();
+
+        // When
+        counters.onOwnerCreated(new OwnerCreatedEvent(2L));
+        counters.onPetChanged(PetChangedEvent.created(new PetSnapshot(2L, PetType.CAT, "Siamese", null, null, 2L)));
+        statisticsService.refreshSnapshot();
+        StatisticsDto result = statisticsService.getStatistics();
+
+        // Then
+        assertEquals(2L, result.getTotalOwners());
+        assertEquals(2L, result.getTotalPets());
+        assertEquals(1L, result.getPetsByType().get("CAT"));
+        verify(petRepository, times(1)).countPetsByType();
+    }
+
+    @Test
+    void testReconcile_FixesDrift() {
+        // Given
+        when(petRepository.countPetsByType())
+                .thenReturn(List.of(row(1L, "DOG", 1L)))
+                .thenReturn(List.of(row(1L, "DOG", 3L)));
+        statisticsService.reconcile();
+
+        // When
+        statisticsService.reconcile();
+
+        // Then
+        assertEquals(3L, counters.pets(PetType.DOG));
+        assertEquals(3L, statisticsService.getStatistics().getTotalPets());
+    }
+
+    @Test
+    void testReconcile_RetriedAndSkippedWhileCountersChange() {
+        // Given
+        when(petRepository.countPetsByType()).thenReturn(List.of(row(1L, "DOG", 1L)));
+        statisticsService.reconcile();
+        when(petRepository.countPetsByType()).thenAnswer(invocation -> {
+            // Каждое событие приходит между запросом и применением сверки
+            counters.onOwnerCreated(new OwnerCreatedEvent(2L));
+            return List.of(row(5L, "DOG", 9L));
+        });
+
+        // When
+        statisticsService.reconcile();
+
+        // Then
+        verify(petRepository, times(4)).countPetsByType();
+        assertEquals(4L, counters.totalOwners());
+        assertEquals(1L, counters.pets(PetType.DOG));
+    }
+
+    @Test
+    void testGetStatistics_CountersLiveEstimatesFromSnapshot() {
+        // Given
+        when(petRepository.countPetsByType()).thenReturn(List.of(row(1L, "DOG", 1L)));
+        when(cardinalitySketches.distinctBreeds()).thenReturn(1L);
+        statisticsService.getStatistics();
+
+        // When
+        counters.onPetChanged(PetChangedEvent.created(new PetSnapshot(2L, PetType.CAT, "Siamese", null, null, 1L)));
+        StatisticsDto second = statisticsService.getStatistics();
+
+        // Then
+        assertEquals(2L, second.getTotalPets());
+        assertEquals(1L, second.getPetsByType().get("CAT"));
+        assertEquals(1L, second.getDistinctBreeds());
+        assertNotNull(second.getSnapshotAgeMillis());
+        verify(cardinalitySketches, times(1)).distinctBreeds();
+        verifyNoInteractions(taskScheduler);
+    }
+
+    @Test
+    void testGetTimeSeries_FillsEmptyBucketsFromRollups() {
+        // Given
+        LocalDate from = LocalDate.of(2024, 1, 3);
+        LocalDate to = LocalDate.of(2024, 1, 20);
+        when(rollupRepository.sumByBucket("PETS_CREATED", "week", from, to)).thenReturn(List.of(
+                point(LocalDate.of(2024, 1, 1), 4L),
+                point(LocalDate.of(2024, 1, 15), 2L)
         ));
-        when(petRepository.findByType(PetType.OTHER)).thenReturn(List.of(
-                Pet.builder().id(7L).type(PetType.OTHER).build(),
-                Pet.builder().id(8L).type(PetType.OTHER).build(),
-                Pet.builder().id(9L).type(PetType.OTHER).build(),
-                Pet.builder().id(10L).type(PetType.OTHER).build()
+
+        // When
+        TimeSeriesDto result = statisticsService.getTimeSeries(RollupMetric.PETS_CREATED, TimeGranularity.WEEK, from, to);
+
+        // Then
+        assertEquals(3, result.getPoints().size());
+        assertEquals(LocalDate.of(2024, 1, 1), result.getPoints().get(0).getBucket());
+        assertEquals(4L, result.getPoints().get(0).getCount());
+        assertEquals(0L, result.getPoints().get(1).getCount());
+        assertEquals(2L, result.getPoints().get(2).getCount());
+        assertEquals(6L, result.getTotal());
+        verifyNoInteractions(petRepository);
+    }
+
+    @Test
+    void testGetTimeSeries_FromAfterTo() {
+        assertThrows(InvalidRequestParameterException.class, () -> statisticsService.getTimeSeries(
+                RollupMetric.OWNERS_CREATED, TimeGranularity.DAY, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1)));
+        verifyNoInteractions(rollupRepository);
+    }
+
+    @Test
+    void testGetAgeDistribution_PercentilesFromCumulativeCounts() {
+        // Given: 10 собак 1 года, 8 собак 3 лет, 2 собаки 12 лет, 1 кошка 5 лет
+        when(petRepository.countByTypeAndAge()).thenReturn(List.of(
+                ageRow("CAT", 5, 1L),
+                ageRow("DOG", 1, 10L),
+                ageRow("DOG", 3, 8L),
+                ageRow("DOG", 12, 2L)
         ));
 
         // When
-        StatisticsDto result = statisticsService.getStatistics();
+        AgeDistributionDto result = statisticsService.getAgeDistribution();
 
         // Then
-        assertNotNull(result);
-        assertEquals(3L, result.getPetsByType().get("DOG"));
-        assertEquals(2L, result.getPetsByType().get("CAT"));
-        assertEquals(1L, result.getPetsByType().get("BIRD"));
-        assertEquals(4L, result.getPetsByType().get("OTHER"));
+        AgeStatsDto dogs = result.getByType().get("DOG");
+        assertEquals(20L, dogs.getCount());
+        assertEquals(3, dogs.getHistogram().size());
+        assertEquals(1, dogs.getP50());
+        assertEquals(3, dogs.getP90());
+        assertEquals(12, dogs.getP99());
+        assertEquals(5, result.getByType().get("CAT").getP50());
+        assertNull(result.getByType().get("BIRD").getP50());
+        assertEquals(0L, result.getByType().get("BIRD").getCount());
+        assertEquals(21L, result.getAll().getCount());
+        assertEquals(4, result.getAll().getHistogram().size());
+        assertEquals(5, result.getAll().getP90());
+        verify(petRepository, never()).findAll();
     }
-}
 
+    private PetAgeCountProjection ageRow(String type, Integer ageYears, Long petCount) {
+        return new PetAgeCountProjection() {
+            @Override
+            public String getType() {
+                return type;
+            }
+
+            @Override
+            public Integer getAgeYears() {
+                return ageYears;
+            }
+
+            @Override
+            public Long getPetCount() {
+                return petCount;
+            }
+        };
+    }
+
+    private TimeSeriesPointProjection point(LocalDate bucket, Long total) {
+        return new TimeSeriesPointProjection() {
+            @Override
+            public LocalDate getBucket() {
+                return bucket;
+            }
+
+            @Override
+            public Long getTotal() {
+                return total;
+            }
+        };
+    }
+
+    private PetTypeCountProjection row(Long totalOwners, String type, Long petCount) {
+        return new PetTypeCountProjection() {
+            @Override
+            public Long getTotalOwners() {
+                return totalOwners;
+            }
+
+            @Override
+            public String getType() {
+                return type;
+            }
+
+            @Override
+            public Long getPetCount() {
+                return petCount;
+            }
+        };
+    }
+}
@@ -6,15 +6,22 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.akbirov.petproject.dto.UpdateProfileDto;
 import ru.akbirov.petproject.dto.UserProfileDto;
+import ru.akbirov.petproject.entity.Owner;
 import ru.akbirov.petproject.entity.Role;
 import ru.akbirov.petproject.entity.User;
+import ru.akbirov.petproject.event.UserAccountChangedEvent;
 import ru.akbirov.petproject.exception.EmailAlreadyExistsException;
 import ru.akbirov.petproject.exception.UserNotFoundException;
+import ru.akbirov.petproject.repository.OwnerRepository;
 import ru.akbirov.petproject.repository.UserRepository;
+import ru.akbirov.petproject.security.RefreshTokenService;
 import ru.akbirov.petproject.service.impl.UserServiceImpl;
 
 import java.time.LocalDateTime;
@@ -23,6 +30,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,9 +39,21 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private OwnerRepository ownerRepository;
+
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -42,6 +62,10 @@ class UserServiceTest {
 
     @BeforeEach
     void setUp() {
+        // Транзакция выполняется сразу в потоке теста
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
         user = User.builder()
                 .id(1L)
                 .username("testuser")
@@ -55,16 +79,19 @@ class UserServiceTest {
 
         updateProfileDto = UpdateProfileDto.builder()
                 .email("newemail@example.com")
+                .firstName("Test")
+                .lastName("User")
+                .phone("+7 900 000 00 00")
                 .build();
     }
 
     @Test
     void testGetCurrentUserProfile_Success() {
         // Given
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
 
         // When
-        UserProfileDto result = userService.getCurrentUserProfile("testuser");
+        UserProfileDto result = userService.getCurrentUserProfile(1L, null);
 
         // Then
         assertNotNull(result);
@@ -73,35 +100,59 @@ class UserServiceTest {
         assertEquals("test@example.com", result.getEmail());
         assertTrue(result.getRoles().contains("USER"));
         assertTrue(result.getEnabled());
-        verify(userRepository, times(1)).findByUsername("testuser");
+        verify(userRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void testGetCurrentUserProfile_LoadsOwnerById() {
+        // Given
+        Owner owner = Owner.builder()
+                .id(5L)
+                .firstName("Test")
+                .lastName("User")
+                .phone("+7 900 000 00 00")
+                .user(user)
+                .build();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(ownerRepository.findById(5L)).thenReturn(Optional.of(owner));
+
+        // When
+        UserProfileDto result = userService.getCurrentUserProfile(1L, 5L);
+
+        // Then
+        assertEquals("Test", result.getFirstName());
+        assertEquals("+7 900 000 00 00", result.getPhone());
+        verify(userRepository, never()).findByUsername(anyString());
+        verify(ownerRepository, never()).findByUserId(any());
     }
 
     @Test
     void testGetCurrentUserProfile_UserNotFound() {
         // Given
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.empty());
+        when(userRepository.findById(1L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(UserNotFoundException.class, () -> {
-            userService.getCurrentUserProfile("testuser");
+            userService.getCurrentUserProfile(1L, null);
         });
-        verify(userRepository, times(1)).findByUsername("testuser");
+        verify(userRepository, times(1)).findById(1L);
     }
 
     @Test
     void testUpdateUserProfile_Success() {
         // Given
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
         when(userRepository.existsByEmail(anyString())).thenReturn(false);
         when(userRepository.save(any(User.class))).thenReturn(user);
+        when(ownerRepository.save(any(Owner.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // When
-        UserProfileDto result = userService.updateUserProfile("testuser", updateProfileDto);
+        UserProfileDto result = userService.updateUserProfile(1L, null, updateProfileDto);
 
         // Then
         assertNotNull(result);
         assertEquals("testuser", result.getUsername());
-        verify(userRepository, times(1)).findByUsername("testuser");
+        verify(userRepository, times(1)).findById(1L);
         verify(userRepository, times(1)).existsByEmail("newemail@example.com");
         verify(userRepository, times(1)).save(any(User.class));
     }
@@ -109,27 +160,27 @@ class UserServiceTest {
     @Test
     void testUpdateUserProfile_UserNotFound() {
         // Given
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.empty());
+        when(userRepository.findById(1L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(UserNotFoundException.class, () -> {
-            userService.updateUserProfile("testuser", updateProfileDto);
+            userService.updateUserProfile(1L, null, updateProfileDto);
         });
-        verify(userRepository, times(1)).findByUsername("testuser");
+        verify(userRepository, times(1)).findById(1L);
         verify(userRepository, never()).save(any(User.class));
     }
 
     @Test
     void testUpdateUserProfile_EmailAlreadyExists() {
         // Given
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
         when(userRepository.existsByEmail(anyString())).thenReturn(true);
 
         // When & Then
         assertThrows(EmailAlreadyExistsException.class, () -> {
-            userService.updateUserProfile("testuser", updateProfileDto);
+            userService.updateUserProfile(1L, null, updateProfileDto);
         });
-        verify(userRepository, times(1)).findByUsername("testuser");
+        verify(userRepository, times(1)).findById(1L);
         verify(userRepository, times(1)).existsByEmail("newemail@example.com");
         verify(userRepository, never()).save(any(User.class));
     }
@@ -138,15 +189,16 @@ class UserServiceTest {
     void testUpdateUserProfile_SameEmail() {
         // Given
         updateProfileDto.setEmail("test@example.com");
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
         when(userRepository.save(any(User.class))).thenReturn(user);
+        when(ownerRepository.save(any(Owner.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // When
-        UserProfileDto result = userService.updateUserProfile("testuser", updateProfileDto);
+        UserProfileDto result = userService.updateUserProfile(1L, null, updateProfileDto);
 
         // Then
         assertNotNull(result);
-        verify(userRepository, times(1)).findByUsername("testuser");
+        verify(userRepository, times(1)).findById(1L);
         verify(userRepository, never()).existsByEmail(anyString());
         verify(userRepository, times(1)).save(any(User.class));
     }
@@ -154,48 +206,95 @@ class UserServiceTest {
     @Test
     void testChangePassword_Success() {
         // Given
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
         when(passwordEncoder.matches(anyString(), anyString())).thenReturn(true);
         when(passwordEncoder.encode(anyString())).thenReturn("newEncodedPassword");
-        when(userRepository.save(any(User.class))).thenReturn(user);
+        when(userRepository.changePassword(eq(1L), eq("encodedPassword"), eq("newEncodedPassword"),
+                any(LocalDateTime.class))).thenReturn(1);
 
         // When
-        userService.changePassword("testuser", "oldPassword", "newPassword");
+        userService.changePassword(1L, "oldPassword", "newPassword");
 
         // Then
-        verify(userRepository, times(1)).findByUsername("testuser");
+        verify(userRepository, times(1)).findById(1L);
         verify(passwordEncoder, times(1)).matches("oldPassword", "encodedPassword");
         verify(passwordEncoder, times(1)).encode("newPassword");
-        verify(userRepository, times(1)).save(any(User.class));
+        verify(userRepository, never()).save(any(User.class));
+        verify(eventPublisher, times(1)).publishEvent(new UserAccountChangedEvent("testuser", 1L));
+        // Выданные токены перестают приниматься: новая версия (в том же UPDATE) и отозванные refresh-токены
+        verify(refreshTokenService, times(1)).revokeAll(1L);
+    }
+
+    @Test
+    void testChangePassword_RehashedOnLoginMeanwhileStillChanged() {
+        // Given: после проверки вход с тем же паролем перехешировал его
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(passwordEncoder.matches("oldPassword", "encodedPassword")).thenReturn(true);
+        when(passwordEncoder.matches("oldPassword", "rehashedPassword")).thenReturn(true);
+        when(passwordEncoder.encode(anyString())).thenReturn("newEncodedPassword");
+        when(userRepository.changePassword(eq(1L), eq("encodedPassword"), eq("newEncodedPassword"),
+                any(LocalDateTime.class))).thenReturn(0);
+        when(userRepository.findPasswordHashById(1L)).thenReturn(Optional.of("rehashedPassword"));
+        when(userRepository.changePassword(eq(1L), eq("rehashedPassword"), eq("newEncodedPassword"),
+                any(LocalDateTime.class))).thenReturn(1);
+
+        // When
+        userService.changePassword(1L, "oldPassword", "newPassword");
+
+        // Then
+        verify(passwordEncoder, times(1)).encode("newPassword");
+        verify(refreshTokenService, times(1)).revokeAll(1L);
+        verify(eventPublisher, times(1)).publishEvent(new UserAccountChangedEvent("testuser", 1L));
+    }
+
+    @Test
+    void testChangePassword_ConcurrentChangeRejected() {
+        // Given: пароль сменили параллельно, старый пароль больше не подходит
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(passwordEncoder.matches("oldPassword", "encodedPassword")).thenReturn(true);
+        when(passwordEncoder.matches("oldPassword", "otherPassword")).thenReturn(false);
+        when(passwordEncoder.encode(anyString())).thenReturn("newEncodedPassword");
+        when(userRepository.changePassword(eq(1L), eq("encodedPassword"), eq("newEncodedPassword"),
+                any(LocalDateTime.class))).thenReturn(0);
+        when(userRepository.findPasswordHashById(1L)).thenReturn(Optional.of("otherPassword"));
+
+        // When & Then
+        assertThrows(BadCredentialsException.class, () -> {
+            userService.changePassword(1L, "oldPassword", "newPassword");
+        });
+        verify(userRepository, times(1)).changePassword(any(), any(), any(), any());
+        verify(refreshTokenService, never()).revokeAll(any());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
     }
 
     @Test
     void testChangePassword_UserNotFound() {
         // Given
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.empty());
+        when(userRepository.findById(1L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(UserNotFoundException.class, () -> {
-            userService.changePassword("testuser", "oldPassword", "newPassword");
+            userService.changePassword(1L, "oldPassword", "newPassword");
         });
-        verify(userRepository, times(1)).findByUsername("testuser");
+        verify(userRepository, times(1)).findById(1L);
         verify(passwordEncoder, never()).matches(anyString(), anyString());
     }
 
     @Test
     void testChangePassword_InvalidCurrentPassword() {
         // Given
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
         when(passwordEncoder.matches(anyString(), anyString())).thenReturn(false);
 
         // When & Then
         assertThrows(BadCredentialsException.class, () -> {
-            userService.changePassword("testuser", "wrongPassword", "newPassword");
+            userService.changePassword(1L, "wrongPassword", "newPassword");
         });
-        verify(userRepository, times(1)).findByUsername("testuser");
+        verify(userRepository, times(1)).findById(1L);
         verify(passwordEncoder, times(1)).matches("wrongPassword", "encodedPassword");
         verify(passwordEncoder, never()).encode(anyString());
         verify(userRepository, never()).save(any(User.class));
+        verify(refreshTokenService, never()).revokeAll(any());
     }
 }
 
@@ -0,0 +1,119 @@
+package ru.akbirov.petproject.statistics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.akbirov.petproject.config.StatisticsProperties;
+import ru.akbirov.petproject.dto.HeavyHitterDto;
+import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.PetSnapshot;
+import ru.akbirov.petproject.repository.PetRepository;
+import ru.akbirov.petproject.repository.projection.BreedCountProjection;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class BreedHeavyHittersTest {
+
+    private final PetRepository petRepository = mock(PetRepository.class);
+    private final BreedHeavyHitters heavyHitters = new BreedHeavyHitters(petRepository, new StatisticsProperties());
+
+    @BeforeEach
+    void setUp() {
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void testRecount_CommitBeforeQueryAppliedAfterRecountCountedOnce() {
+        // Given: транзакция коммитится во время запроса, ее питомец уже виден пересчету
+        when(petRepository.topBreedsByType(anyInt())).thenAnswer(invocation -> {
+            heavyHitters.onCommitting();
+            return List.of(row("Labrador", 1L));
+        });
+
+        // When: событие применяется уже после пересчета
+        heavyHitters.recount();
+        heavyHitters.onPetChanged(PetChangedEvent.created(dog("Labrador")));
+        completeCommit();
+
+        // Then: пересчет отброшен, top() повторяет его, когда незавершенных транзакций нет
+        assertEquals(1L, labradorCount());
+        verify(petRepository, times(2)).topBreedsByType(anyInt());
+    }
+
+    @Test
+    void testRecount_SkippedWhileCommitInFlightAtStart() {
+        // Given: первый пересчет прошел, затем транзакция начала коммит до следующего
+        when(petRepository.topBreedsByType(anyInt())).thenReturn(List.of(row("Labrador", 1L)));
+        heavyHitters.recount();
+        heavyHitters.onCommitting();
+        when(petRepository.topBreedsByType(anyInt())).thenReturn(List.of(row("Labrador", 2L)));
+
+        // When
+        heavyHitters.recount();
+        heavyHitters.onPetChanged(PetChangedEvent.created(dog("Labrador")));
+        completeCommit();
+
+        // Then
+        assertEquals(2L, labradorCount());
+        verify(petRepository, times(1)).topBreedsByType(anyInt());
+    }
+
+    private long labradorCount() {
+        return heavyHitters.top(10).getByType().get(PetType.DOG.name()).stream()
+                .filter(hitter -> hitter.getValue().equals("Labrador"))
+                .mapToLong(HeavyHitterDto::getCount)
+                .sum();
+    }
+
+    private static void completeCommit() {
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    private static PetSnapshot dog(String breed) {
+        return new PetSnapshot(1L, PetType.DOG, breed, null, null, 1L);
+    }
+
+    private static BreedCountProjection row(String breed, Long count) {
+        return new BreedCountProjection() {
+            @Override
+            public String getType() {
+                return PetType.DOG.name();
+            }
+
+            @Override
+            public String getBreed() {
+                return breed;
+            }
+
+            @Override
+            public Long getPetCount() {
+                return count;
+            }
+
+            @Override
+            public Long getTypeTotal() {
+                return count;
+            }
+
+            @Override
+            public Long getDistinctBreeds() {
+                return 1L;
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package ru.akbirov.petproject.statistics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.entity.StatisticsSketch;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.PetSnapshot;
+import ru.akbirov.petproject.repository.PetRepository;
+import ru.akbirov.petproject.repository.StatisticsSketchRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class CardinalitySketchesTest {
+
+    private final PetRepository petRepository = mock(PetRepository.class);
+    private final StatisticsSketchRepository sketchRepository = mock(StatisticsSketchRepository.class);
+    private final CardinalitySketches sketches = new CardinalitySketches(
+            petRepository, sketchRepository, mock(PlatformTransactionManager.class));
+
+    @BeforeEach
+    void setUp() {
+        when(sketchRepository.findAllForUpdate(anyCollection()))
+                .thenAnswer(invocation -> rows(invocation.getArgument(0)));
+    }
+
+    @Test
+    void testOnPetChanged_DoesNotWaitForFlush() throws Exception {
+        // Given: сброс держит блокировку строк скетчей
+        sketches.flush();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(sketchRepository.findAllForUpdate(anyCollection())).thenAnswer(invocation -> {
+            locked.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return rows(invocation.getArgument(0));
+        });
+        sketches.onPetChanged(PetChangedEvent.created(pet("Siamese")));
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(sketches::flush);
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        // When
+        sketches.onPetChanged(PetChangedEvent.created(pet("Persian")));
+        long duringFlush = sketches.distinctBreeds();
+        release.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+
+        // Then: отправляемые и новые добавления видны и во время, и после сброса
+        assertEquals(2, duringFlush);
+        assertEquals(2, sketches.distinctBreeds());
+    }
+
+    @Test
+    void testFlush_FailureKeepsLocalAdditions() {
+        // Given
+        sketches.flush();
+        sketches.onPetChanged(PetChangedEvent.created(pet("Siamese")));
+        when(sketchRepository.findAllForUpdate(anyCollection())).thenThrow(new IllegalStateException("db down"));
+
+        // When
+        sketches.flush();
+
+        // Then
+        assertEquals(1, sketches.distinctBreeds());
+    }
+
+    private static PetSnapshot pet(String breed) {
+        return new PetSnapshot(1L, PetType.CAT, breed, null, null, 1L);
+    }
+
+    private static List<StatisticsSketch> rows(Collection<String> names) {
+        return names.stream()
+                .map(name -> StatisticsSketch.builder()
+                        .name(name)
+                        .registers(new HyperLogLog().toBytes())
+                        .rebuiltAt(LocalDateTime.now())
+                        .build())
+                .toList();
+    }
+}
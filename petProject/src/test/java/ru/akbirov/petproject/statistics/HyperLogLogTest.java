@@ -0,0 +1,60 @@
+package ru.akbirov.petproject.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void testEstimate_SmallCardinalityIsExactEnough() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 3; i++) {
+            sketch.add("Labrador");
+            sketch.add("Poodle");
+            sketch.add("Beagle");
+        }
+
+        assertEquals(3, sketch.estimate());
+    }
+
+    @Test
+    void testEstimate_WithinErrorBound() {
+        HyperLogLog sketch = new HyperLogLog();
+        int distinct = 100_000;
+        for (int i = 0; i < distinct; i++) {
+            sketch.add("breed-" + i);
+        }
+
+        double relativeError = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+        assertTrue(relativeError < 0.05, "relative error " + relativeError);
+    }
+
+    @Test
+    void testMerge_EqualsSketchOfUnion() {
+        HyperLogLog nodeA = new HyperLogLog();
+        HyperLogLog nodeB = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (long ownerId = 0; ownerId < 5000; ownerId++) {
+            (ownerId % 2 == 0 ? nodeA : nodeB).add(ownerId);
+            union.add(ownerId);
+        }
+
+        nodeA.merge(nodeB);
+        nodeA.merge(nodeB);
+
+        assertEquals(union, nodeA);
+    }
+
+    @Test
+    void testFromBytes_RoundTrip() {
+        HyperLogLog sketch = new HyperLogLog();
+        sketch.add("Persian");
+
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+
+        assertEquals(sketch, restored);
+        assertEquals(1, restored.estimate());
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[100]));
+    }
+}
@@ -0,0 +1,272 @@
+package ru.akbirov.petproject.statistics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.akbirov.petproject.config.StatisticsProperties;
+import ru.akbirov.petproject.dto.FacetValueDto;
+import ru.akbirov.petproject.dto.PetAnalyticsDto;
+import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.event.OwnerDeletedEvent;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.PetSnapshot;
+import ru.akbirov.petproject.repository.PetRepository;
+import ru.akbirov.petproject.repository.projection.PetColumnProjection;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PetColumnStoreTest {
+
+    private static final PetAnalyticsFilter ALL = PetAnalyticsFilter.builder().build();
+
+    @Mock
+    private PetRepository petRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PetColumnStore store;
+
+    @BeforeEach
+    void setUp() {
+        StatisticsProperties properties = new StatisticsProperties();
+        properties.getAnalytics().setInitialCapacity(16);
+        meterRegistry = new SimpleMeterRegistry();
+        // События применяются сразу в потоке теста
+        lenient().when(taskScheduler.schedule(any(Runnable.class), any(Instant.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        });
+        store = new PetColumnStore(petRepository, properties, transactionManager, taskScheduler, meterRegistry);
+    }
+
+    @Test
+    void testQuery_LoadsOnceAndGroupsWithFilters() {
+        // Given
+        when(petRepository.streamColumnRows()).thenReturn(Stream.of(
+                row(1L, PetType.DOG, "Labrador", "Black", "2020-05-01", 10L),
+                row(2L, PetType.DOG, "Labrador", null, "2021-03-01", 10L),
+                row(3L, PetType.DOG, "Poodle", "White", "2021-07-15", 11L),
+                row(4L, PetType.CAT, "Siamese", "White", "2019-01-01", 11L)));
+
+        // When
+        PetAnalyticsDto breeds = store.query(AnalyticsDimension.BREED,
+                PetAnalyticsFilter.builder().type(PetType.DOG).build(), 10);
+        PetAnalyticsDto colors = store.query(AnalyticsDimension.COLOR, ALL, 10);
+        PetAnalyticsDto bornIn2021 = store.query(null, PetAnalyticsFilter.builder()
+                .bornFrom(LocalDate.parse("2021-01-01")).bornTo(LocalDate.parse("2021-12-31")).build(), 10);
+        PetAnalyticsDto unknownBreed = store.query(AnalyticsDimension.TYPE,
+                PetAnalyticsFilter.builder().breed("Husky").build(), 10);
+
+        // Then
+        verify(petRepository, times(1)).streamColumnRows();
+        assertEquals(3, breeds.getMatched());
+        assertEquals(4, breeds.getScannedRows());
+        assertEquals(List.of(group("Labrador", 2), group("Poodle", 1)), breeds.getGroups());
+        assertEquals(List.of(group("White", 2), group("Black", 1), group(PetColumnStore.UNKNOWN_COLOR, 1)),
+                colors.getGroups());
+        assertEquals(2, bornIn2021.getMatched());
+        assertNull(bornIn2021.getGroups());
+        assertEquals(0, unknownBreed.getMatched());
+        assertEquals(0, unknownBreed.getGroupCount());
+        assertTrue(meterRegistry.get(PetColumnStore.OFF_HEAP_METRIC).gauge().value() > 0);
+    }
+
+    @Test
+    void testEvents_UpdateMoveAndDeleteKeepColumnsConsistent() {
+        // Given
+        when(petRepository.streamColumnRows()).thenReturn(Stream.of(
+                row(1L, PetType.DOG, "Labrador", "Black", "2020-05-01", 10L),
+                row(2L, PetType.CAT, "Siamese", "White", "2018-02-01", 10L)));
+        store.rebuild();
+
+        // When
+        store.onPetChanged(PetChangedEvent.created(snapshot(3L, PetType.DOG, "Poodle", "2020-08-01", 11L)));
+        store.onPetChanged(PetChangedEvent.updated(snapshot(2L, PetType.CAT, "Siamese", "2018-02-01", 10L),
+                snapshot(2L, PetType.CAT, "Siamese", "2018-02-01", 11L)));
+        store.onOwnerDeleted(new OwnerDeletedEvent(10L,
+                List.of(snapshot(1L, PetType.DOG, "Labrador", "2020-05-01", 10L))));
+
+        // Then
+        PetAnalyticsDto owners = store.query(AnalyticsDimension.OWNER, ALL, 10);
+        assertEquals(2, owners.getScannedRows());
+        assertEquals(List.of(group("11", 2)), owners.getGroups());
+        PetAnalyticsDto years = store.query(AnalyticsDimension.BIRTH_YEAR, ALL, 10);
+        assertEquals(List.of(group("2018", 1), group("2020", 1)), years.getGroups());
+    }
+
+    @Test
+    void testRebuild_ReplaysEventsCommittedDuringLoad() {
+        // Given: питомец создан, пока перестроение читает таблицу
+        when(petRepository.streamColumnRows()).thenAnswer(invocation -> {
+            store.onPetChanged(PetChangedEvent.created(snapshot(2L, PetType.CAT, "Siamese", "2019-01-01", 10L)));
+            return Stream.of(row(1L, PetType.DOG, "Labrador", "Black", "2020-05-01", 10L));
+        });
+
+        // When
+        store.rebuild();
+
+        // Then
+        PetAnalyticsDto types = store.query(AnalyticsDimension.TYPE, ALL, 10);
+        assertEquals(List.of(group("DOG", 1), group("CAT", 1)), types.getGroups());
+    }
+
+    @Test
+    void testEvents_StaleUpdateAfterDeleteIgnored() {
+        // Given
+        when(petRepository.streamColumnRows()).thenReturn(Stream.of(
+                row(1L, PetType.DOG, "Labrador", "Black", "2020-05-01", 10L)));
+        store.rebuild();
+        PetSnapshot before = snapshot(1L, PetType.DOG, "Labrador", "2020-05-01", 10L);
+
+        // When: слушатель более ранней транзакции обновления отработал после удаления
+        store.onPetChanged(PetChangedEvent.deleted(before));
+        store.onPetChanged(PetChangedEvent.updated(before, snapshot(1L, PetType.DOG, "Labrador", "2020-05-01", 11L)));
+
+        // Then
+        assertEquals(0, store.query(null, ALL, 10).getScannedRows());
+    }
+
+    @Test
+    void testEvents_QueuedUntilApplyRuns() {
+        // Given
+        when(petRepository.streamColumnRows()).thenReturn(Stream.empty());
+        store.rebuild();
+        List<Runnable> tasks = new ArrayList<>();
+        when(taskScheduler.schedule(any(Runnable.class), any(Instant.class))).thenAnswer(invocation -> {
+            tasks.add(invocation.getArgument(0));
+            return null;
+        });
+
+        // When
+        store.onPetChanged(PetChangedEvent.created(snapshot(1L, PetType.DOG, "Poodle", "2020-08-01", 11L)));
+        store.onPetChanged(PetChangedEvent.created(snapshot(2L, PetType.CAT, "Siamese", "2019-01-01", 11L)));
+        long beforeApply = store.query(null, ALL, 10).getMatched();
+        tasks.forEach(Runnable::run);
+
+        // Then: одна задача применения на пачку событий
+        assertEquals(1, tasks.size());
+        assertEquals(0, beforeApply);
+        assertEquals(2, store.query(null, ALL, 10).getMatched());
+    }
+
+    @Test
+    void testRebuild_ReusesBuffers() {
+        // Given
+        when(petRepository.streamColumnRows()).thenAnswer(invocation -> Stream.of(
+                row(1L, PetType.DOG, "Labrador", "Black", "2020-05-01", 10L),
+                row(2L, PetType.CAT, "Siamese", "White", "2018-02-01", 10L)));
+        store.rebuild();
+        long offHeap = store.offHeapBytes();
+
+        // When
+        store.rebuild();
+        store.rebuild();
+
+        // Then
+        assertEquals(offHeap, store.offHeapBytes());
+        assertEquals(2, store.query(null, ALL, 10).getMatched());
+    }
+
+    @Test
+    void testRandomChanges_MatchExactCounts() {
+        // Given
+        when(petRepository.streamColumnRows()).thenReturn(Stream.empty());
+        store.rebuild();
+        Map<Long, Long> ownerByPet = new HashMap<>();
+        Set<Long> deleted = new HashSet<>();
+        Random random = new Random(42);
+
+        // When: id удаленных питомцев, как и в базе, не переиспользуются
+        for (int i = 0; i < 20_000; i++) {
+            long petId = random.nextInt(3_000) + 1;
+            Long ownerId = ownerByPet.get(petId);
+            if (deleted.contains(petId)) {
+                continue;
+            }
+            if (ownerId != null && random.nextInt(3) == 0) {
+                store.onPetChanged(PetChangedEvent.deleted(snapshot(petId, PetType.DOG, "Mix", "2020-01-01", ownerId)));
+                ownerByPet.remove(petId);
+                deleted.add(petId);
+            } else {
+                long newOwnerId = random.nextInt(50) + 1;
+                store.onPetChanged(PetChangedEvent.created(snapshot(petId, PetType.DOG, "Mix", "2020-01-01", newOwnerId)));
+                ownerByPet.put(petId, newOwnerId);
+            }
+        }
+
+        // Then
+        Map<String, Long> exact = new HashMap<>();
+        ownerByPet.values().forEach(ownerId -> exact.merge(String.valueOf(ownerId), 1L, Long::sum));
+        PetAnalyticsDto owners = store.query(AnalyticsDimension.OWNER, ALL, 1000);
+        assertEquals(ownerByPet.size(), owners.getMatched());
+        assertEquals(exact.size(), owners.getGroupCount());
+        owners.getGroups().forEach(entry -> assertEquals(exact.get(entry.getValue()), entry.getCount()));
+    }
+
+    private static FacetValueDto group(String value, long count) {
+        return FacetValueDto.builder().value(value).count(count).build();
+    }
+
+    private static PetSnapshot snapshot(long id, PetType type, String breed, String dateOfBirth, long ownerId) {
+        return new PetSnapshot(id, type, breed, null, LocalDate.parse(dateOfBirth), ownerId);
+    }
+
+    private static PetColumnProjection row(Long id, PetType type, String breed, String color,
+                                           String dateOfBirth, Long ownerId) {
+        return new PetColumnProjection() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public PetType getType() {
+                return type;
+            }
+
+            @Override
+            public String getBreed() {
+                return breed;
+            }
+
+            @Override
+            public String getColor() {
+                return color;
+            }
+
+            @Override
+            public LocalDate getDateOfBirth() {
+                return LocalDate.parse(dateOfBirth);
+            }
+
+            @Override
+            public Long getOwnerId() {
+                return ownerId;
+            }
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package ru.akbirov.petproject.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotHolderTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+    private final SnapshotHolder<Integer> holder =
+            new SnapshotHolder<>(loads::incrementAndGet, Duration.ofSeconds(60), scheduled::add, clock);
+
+    @Test
+    void testGet_FirstSnapshotLoadedSynchronously() {
+        assertEquals(1, holder.get().getValue());
+        assertEquals(1, holder.get().getValue());
+        assertEquals(1, loads.get());
+        assertTrue(scheduled.isEmpty());
+    }
+
+    @Test
+    void testGet_StaleSnapshotServedAndRefreshedInBackground() {
+        holder.get();
+        clock.advance(Duration.ofSeconds(61));
+
+        SnapshotHolder.Snapshot<Integer> stale = holder.get();
+
+        assertEquals(1, stale.getValue());
+        assertEquals(Duration.ofSeconds(61), stale.age(clock.instant()));
+        assertEquals(1, scheduled.size());
+        scheduled.get(0).run();
+        assertEquals(2, holder.get().getValue());
+    }
+
+    @Test
+    void testRefresh_OnlyOneRefreshAtATime() {
+        AtomicReference<Boolean> nested = new AtomicReference<>();
+        AtomicReference<SnapshotHolder<Integer>> self = new AtomicReference<>();
+        List<Integer> published = new ArrayList<>();
+        SnapshotHolder<Integer> reentrant = new SnapshotHolder<>(() -> {
+            int load = loads.incrementAndGet();
+            if (load == 1) {
+                nested.set(self.get().refresh());
+            }
+            return 40 + load;
+        }, Duration.ofSeconds(60), scheduled::add, clock, snapshot -> published.add(snapshot.getValue()));
+        self.set(reentrant);
+
+        assertTrue(reentrant.refresh());
+        assertFalse(nested.get());
+        // Запрос, пришедший во время обновления, выполняется сразу после него, а не теряется
+        assertEquals(List.of(41, 42), published);
+        assertEquals(42, reentrant.get().getValue());
+    }
+
+    @Test
+    void testGet_FirstReaderWaitsForRefreshInFlight() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        SnapshotHolder<Integer> slow = new SnapshotHolder<>(() -> {
+            calls.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return 5;
+        }, Duration.ofSeconds(60), scheduled::add, clock);
+        Thread background = new Thread(slow::refresh);
+        background.start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Integer> reader = CompletableFuture.supplyAsync(() -> slow.get().getValue());
+        Thread.sleep(50);
+        assertFalse(reader.isDone());
+        release.countDown();
+
+        assertEquals(5, reader.get(5, TimeUnit.SECONDS));
+        background.join();
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testRefresh_FailureKeepsPreviousSnapshot() {
+        AtomicInteger calls = new AtomicInteger();
+        SnapshotHolder<Integer> failing = new SnapshotHolder<>(() -> {
+            if (calls.incrementAndGet() > 1) {
+                throw new IllegalStateException("db down");
+            }
+            return 7;
+        }, Duration.ofSeconds(60), scheduled::add, clock);
+        failing.get();
+
+        assertFalse(failing.refresh());
+        assertEquals(7, failing.get().getValue());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
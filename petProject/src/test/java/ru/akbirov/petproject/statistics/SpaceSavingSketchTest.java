@@ -0,0 +1,93 @@
+package ru.akbirov.petproject.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingSketchTest {
+
+    @Test
+    void testTop_ExactWhileUnderCapacity() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(4);
+        add(sketch, "Labrador", 5);
+        add(sketch, "Poodle", 3);
+        add(sketch, "Beagle", 1);
+
+        List<SpaceSavingSketch.Entry> top = sketch.top(2);
+
+        assertEquals(2, top.size());
+        assertEquals("Labrador", top.get(0).getItem());
+        assertEquals(5, top.get(0).getCount());
+        assertEquals(0, top.get(0).getError());
+        assertEquals("Poodle", top.get(1).getItem());
+        assertEquals(0, sketch.maxError());
+    }
+
+    @Test
+    void testTop_FrequentItemsSurviveSkewedStream() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(10);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            String item = i % 3 == 0 ? "Labrador" : i % 7 == 0 ? "Poodle" : "breed-" + random.nextInt(500);
+            sketch.add(item);
+            exact.merge(item, 1L, Long::sum);
+        }
+
+        List<SpaceSavingSketch.Entry> top = sketch.top(2);
+
+        assertEquals("Labrador", top.get(0).getItem());
+        assertEquals("Poodle", top.get(1).getItem());
+        assertTrue(sketch.maxError() <= sketch.total() / 10);
+        for (SpaceSavingSketch.Entry entry : sketch.top(10)) {
+            long actual = exact.get(entry.getItem());
+            assertTrue(entry.getCount() >= actual, entry.getItem());
+            assertTrue(entry.getCount() - entry.getError() <= actual, entry.getItem());
+        }
+    }
+
+    @Test
+    void testRemove_KeepsBoundsValid() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(2);
+        add(sketch, "Labrador", 3);
+        add(sketch, "Poodle", 2);
+        sketch.add("Beagle"); // вытесняет Poodle с оценкой 2
+        sketch.remove("Labrador");
+        sketch.remove("Labrador");
+        sketch.remove("Labrador");
+        sketch.add("Poodle"); // истинная частота 3
+
+        SpaceSavingSketch.Entry poodle = sketch.top(2).stream()
+                .filter(entry -> entry.getItem().equals("Poodle"))
+                .findFirst()
+                .orElseThrow();
+        assertTrue(poodle.getCount() >= 3);
+        assertTrue(poodle.getCount() - poodle.getError() <= 3);
+    }
+
+    @Test
+    void testReset_UsesExactCounts() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(2);
+        add(sketch, "Siamese", 10);
+
+        sketch.reset(Map.of("Persian", 7L, "Sphynx", 4L), 12, false);
+
+        List<SpaceSavingSketch.Entry> top = sketch.top(5);
+        assertEquals(2, top.size());
+        assertEquals("Persian", top.get(0).getItem());
+        assertEquals(0, top.get(0).getError());
+        assertEquals(12, sketch.total());
+        assertEquals(4, sketch.maxError());
+    }
+
+    private static void add(SpaceSavingSketch sketch, String item, int times) {
+        for (int i = 0; i < times; i++) {
+            sketch.add(item);
+        }
+    }
+}
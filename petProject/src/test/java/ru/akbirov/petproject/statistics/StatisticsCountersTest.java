@@ -0,0 +1,77 @@
+package ru.akbirov.petproject.statistics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.akbirov.petproject.entity.PetType;
+import ru.akbirov.petproject.event.OwnerCreatedEvent;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatisticsCountersTest {
+
+    private final StatisticsCounters counters = new StatisticsCounters();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testReset_SkippedWhileCommitNotApplied() {
+        // Given: транзакция коммитится, ее строки уже видны запросу сверки, а событие еще не применено
+        TransactionSynchronizationManager.initSynchronization();
+        long generation = counters.generation();
+        counters.onCommitting();
+
+        // When
+        boolean duringCommit = counters.reset(generation, 5, Map.of(PetType.DOG, 7L), false);
+        counters.onOwnerCreated(new OwnerCreatedEvent(1L));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        boolean staleGeneration = counters.reset(generation, 5, Map.of(PetType.DOG, 7L), false);
+        boolean afterCommit = counters.reset(counters.generation(), 5, Map.of(PetType.DOG, 7L), false);
+
+        // Then
+        assertFalse(duringCommit);
+        assertFalse(staleGeneration);
+        assertTrue(afterCommit);
+        assertEquals(5, counters.totalOwners());
+        assertEquals(7, counters.totalPets());
+    }
+
+    @Test
+    void testReset_RolledBackCommitReleased() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+        counters.onCommitting();
+
+        // When
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        // Then
+        assertTrue(counters.reset(counters.generation(), 1, Map.of(), false));
+    }
+
+    @Test
+    void testReset_ForcedIgnoresConcurrentChanges() {
+        // Given
+        long generation = counters.generation();
+        counters.onOwnerCreated(new OwnerCreatedEvent(1L));
+
+        // When
+        boolean applied = counters.reset(generation, 3, Map.of(PetType.CAT, 2L), true);
+
+        // Then
+        assertTrue(applied);
+        assertTrue(counters.isInitialized());
+        assertEquals(3, counters.totalOwners());
+        assertEquals(2, counters.pets(PetType.CAT));
+    }
+}
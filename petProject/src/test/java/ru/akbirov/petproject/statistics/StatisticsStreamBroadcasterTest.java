@@ -0,0 +1,176 @@
+package ru.akbirov.petproject.statistics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.akbirov.petproject.config.StatisticsProperties;
+import ru.akbirov.petproject.dto.StatisticsDeltaDto;
+import ru.akbirov.petproject.dto.StatisticsDto;
+import ru.akbirov.petproject.event.OwnerCreatedEvent;
+import ru.akbirov.petproject.event.PetChangedEvent;
+import ru.akbirov.petproject.event.StatisticsRefreshedEvent;
+import ru.akbirov.petproject.service.StatisticsService;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StatisticsStreamBroadcasterTest {
+
+    @Mock
+    private StatisticsService statisticsService;
+
+    private StatisticsStreamBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new StatisticsStreamBroadcaster(statisticsService, new StatisticsProperties(),
+                new ObjectMapper().registerModule(new JavaTimeModule()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void testPush_OneComputationForAllSubscribersAndChanges() {
+        // Given
+        when(statisticsService.getStatistics()).thenReturn(statistics(1L, 2L, 1L), statistics(2L, 5L, 3L));
+        when(statisticsService.refreshStatistics()).thenAnswer(invocation -> {
+            broadcaster.onStatisticsRefreshed(new StatisticsRefreshedEvent(Instant.now()));
+            return null;
+        });
+        for (int i = 0; i < 100; i++) {
+            broadcaster.subscribe();
+        }
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            broadcaster.onPetChanged(PetChangedEvent.deleted(null));
+            broadcaster.onOwnerCreated(new OwnerCreatedEvent((long) i));
+        }
+        broadcaster.push();
+        broadcaster.push();
+
+        // Then
+        assertEquals(100, broadcaster.subscriberCount());
+        verify(statisticsService, times(2)).getStatistics();
+        verify(statisticsService, times(1)).refreshStatistics();
+    }
+
+    @Test
+    void testOnStatisticsRefreshed_PushesRefreshCompletedElsewhere() {
+        // Given: пересчет, запущенный не рассылкой, завершился с новыми данными
+        when(statisticsService.getStatistics()).thenReturn(statistics(1L, 2L, 1L), statistics(1L, 3L, 2L));
+        broadcaster.subscribe();
+
+        // When
+        broadcaster.onStatisticsRefreshed(new StatisticsRefreshedEvent(Instant.now()));
+        broadcaster.onStatisticsRefreshed(new StatisticsRefreshedEvent(Instant.now()));
+
+        // Then
+        assertEquals(1, broadcaster.subscriberCount());
+        verify(statisticsService, times(3)).getStatistics();
+        verify(statisticsService, never()).refreshStatistics();
+    }
+
+    @Test
+    void testOnStatisticsRefreshed_EverySubscriberGetsSameEvents() throws InterruptedException {
+        // Given: несколько потоков отправки и подписчиков
+        AtomicLong pets = new AtomicLong(1);
+        when(statisticsService.getStatistics()).thenAnswer(invocation -> statistics(1L, pets.incrementAndGet(), 1L));
+        List<RecordingEmitter> emitters = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            RecordingEmitter emitter = new RecordingEmitter();
+            emitters.add(emitter);
+            broadcaster.subscribe(emitter);
+        }
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            broadcaster.onStatisticsRefreshed(new StatisticsRefreshedEvent(Instant.now()));
+            broadcaster.heartbeat();
+        }
+
+        // Then: snapshot и 10 событий, текст каждого одинаков у всех подписчиков
+        for (RecordingEmitter emitter : emitters) {
+            emitter.awaitEvents(11);
+        }
+        assertEquals(20, broadcaster.subscriberCount());
+        List<String> expected = emitters.get(0).events;
+        assertEquals(":heartbeat\n\n", expected.get(2));
+        for (RecordingEmitter emitter : emitters) {
+            assertEquals(expected, emitter.events);
+        }
+    }
+
+    @Test
+    void testPush_NoSubscribersNoComputation() {
+        broadcaster.onPetChanged(PetChangedEvent.deleted(null));
+
+        broadcaster.push();
+
+        verifyNoInteractions(statisticsService);
+    }
+
+    @Test
+    void testDelta_OnlyChangedFields() {
+        StatisticsDeltaDto delta = StatisticsStreamBroadcaster.delta(statistics(2L, 4L, 2L), statistics(2L, 5L, 3L));
+
+        assertNull(delta.getTotalOwners());
+        assertEquals(5L, delta.getTotalPets());
+        assertEquals(Map.of("DOG", 3L), delta.getPetsByType());
+        assertEquals(2.5, delta.getAveragePetsPerOwner());
+    }
+
+    @Test
+    void testDelta_NothingChanged() {
+        assertNull(StatisticsStreamBroadcaster.delta(statistics(2L, 4L, 2L), statistics(2L, 4L, 2L)));
+    }
+
+    /**
+     * Запоминает текст каждого отправленного события так, как его записал бы сервлет
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder text = new StringBuilder();
+            builder.build().forEach(part -> text.append(part.getData()));
+            events.add(text.toString());
+        }
+
+        void awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(count, events.size());
+        }
+    }
+
+    private StatisticsDto statistics(Long owners, Long pets, Long dogs) {
+        return StatisticsDto.builder()
+                .totalOwners(owners)
+                .totalPets(pets)
+                .petsByType(Map.of("DOG", dogs, "CAT", pets - dogs))
+                .averagePetsPerOwner(pets / (double) owners)
+                .build();
+    }
+}
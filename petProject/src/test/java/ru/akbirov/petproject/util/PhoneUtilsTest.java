@@ -0,0 +1,41 @@
+package ru.akbirov.petproject.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhoneUtilsTest {
+
+    @Test
+    void testNormalize_EquivalentFormatsMatch() {
+        // When & Then
+        assertEquals("79372867888", PhoneUtils.normalize("+7 937 286 78 88"));
+        assertEquals("79372867888", PhoneUtils.normalize("+7-937-286-78-88"));
+        assertEquals("79372867888", PhoneUtils.normalize("89372867888"));
+        assertEquals("79372867888", PhoneUtils.normalize("9372867888"));
+    }
+
+    @Test
+    void testNormalize_KeepsOtherNumbersAsDigits() {
+        // When & Then
+        assertEquals("12345", PhoneUtils.normalize("12-345"));
+        assertNull(PhoneUtils.normalize(null));
+    }
+
+    @Test
+    void testNormalizePrefix() {
+        // When & Then
+        assertEquals("7937", PhoneUtils.normalizePrefix("8 937"));
+        assertEquals("7937", PhoneUtils.normalizePrefix("+7 (937"));
+        assertEquals("", PhoneUtils.normalizePrefix(null));
+        assertEquals("", PhoneUtils.normalizePrefix("+"));
+    }
+
+    @Test
+    void testNormalizePrefix_WithoutCountryCode() {
+        // When & Then: сохраненные номера начинаются с 7, поэтому код страны добавляется
+        assertEquals("7916", PhoneUtils.normalizePrefix("916"));
+        assertEquals("791612", PhoneUtils.normalizePrefix("(916) 12"));
+        assertEquals(PhoneUtils.normalize("9161234567"), PhoneUtils.normalizePrefix("916 123-45-67"));
+    }
+}